@@ -1,22 +1,37 @@
 package de.aittr.car_rent.controller;
 
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.BookingBatchRequestDto;
 import de.aittr.car_rent.domain.dto.BookingRequestDto;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
+import de.aittr.car_rent.domain.dto.ReservationHoldResponseDto;
 import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.service.BookingExportService;
 import de.aittr.car_rent.service.interfaces.BookingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.annotation.CurrentSecurityContext;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @RestController
 @RequestMapping("/bookings")
@@ -25,28 +40,117 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService bookingService;
+    private final BookingExportService bookingExportService;
 
     @PostMapping
     @Operation(summary = "Create a new booking", description = "Creates a new booking for a car")
     @PreAuthorize("isAuthenticated()")
     @SecurityRequirement(name = "bearerAuth")
     public BookingResponseDto createBooking(
-            @AuthenticationPrincipal
+            @CurrentSecurityContext(expression = "authentication")
             @Parameter(hidden = true)
-            String userEmail,
+            AuthInfo caller,
 
             @RequestBody
             @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Booking details")
             BookingRequestDto bookingDto) {
-        return bookingService.createBooking(bookingDto, userEmail);
+        return bookingService.createBooking(bookingDto, caller);
+    }
+
+    @PostMapping("/holds")
+    @Operation(
+            summary = "Hold a car during checkout",
+            description = "Temporarily reserves a car for the rental period so that other customers cannot book it until the hold expires")
+    @PreAuthorize("isAuthenticated()")
+    @SecurityRequirement(name = "bearerAuth")
+    public ReservationHoldResponseDto createHold(
+            @CurrentSecurityContext(expression = "authentication")
+            @Parameter(hidden = true)
+            AuthInfo caller,
+
+            @RequestBody
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Car and rental period to hold")
+            BookingRequestDto bookingDto) {
+        return bookingService.createHold(bookingDto, caller);
+    }
+
+    @PostMapping("/holds/{holdId}/confirm")
+    @Operation(summary = "Confirm a hold", description = "Creates a booking for the held car and period and releases the hold")
+    @PreAuthorize("isAuthenticated()")
+    @SecurityRequirement(name = "bearerAuth")
+    public BookingResponseDto confirmHold(
+            @PathVariable
+            @Parameter(description = "Reservation hold unique identifier")
+            String holdId,
+
+            @CurrentSecurityContext(expression = "authentication")
+            @Parameter(hidden = true)
+            AuthInfo caller) {
+        return bookingService.confirmHold(holdId, caller);
+    }
+
+    @DeleteMapping("/holds/{holdId}")
+    @Operation(summary = "Release a hold", description = "Releases the held car before the hold expires")
+    @PreAuthorize("isAuthenticated()")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<Void> releaseHold(
+            @PathVariable
+            @Parameter(description = "Reservation hold unique identifier")
+            String holdId,
+
+            @AuthenticationPrincipal
+            @Parameter(hidden = true)
+            String userEmail) {
+        bookingService.releaseHold(holdId, userEmail);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping
-    @Operation(summary = "Get all bookings existing in the database", description = "Returns all bookings from the database")
+    @Operation(
+            summary = "Get a page of all bookings existing in the database",
+            description = "Returns one page of bookings. Sortable by id, rentalStartDate, rentalEndDate, bookingStatus, "
+                    + "totalPrice, createBookingDate and updateBookingDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @SecurityRequirement(name = "bearerAuth")
-    public List<BookingResponseDto> getAllBookings() {
-        return bookingService.getAllBookings();
+    public PageResponseDto<BookingResponseDto> getAllBookings(
+            @ParameterObject
+            @PageableDefault(sort = "id")
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal) {
+        return bookingService.getAllBookings(pageable, withTotal);
+    }
+
+    @GetMapping("/export")
+    @Operation(
+            summary = "Export bookings for accounting",
+            description = "Streams bookings whose rental starts in the period as flat CSV or NDJSON rows with customer and car columns")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "First day of the period", example = "2025-03-01")
+            LocalDate from,
+
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Last day of the period, inclusive", example = "2025-03-31")
+            LocalDate to,
+
+            @RequestParam(defaultValue = "csv")
+            @Parameter(description = "Export format: csv or ndjson", example = "csv")
+            String format) {
+        BookingExportService.ExportFormat exportFormat = BookingExportService.ExportFormat.of(format);
+        bookingExportService.validatePeriod(from, to);
+        StreamingResponseBody body = output -> bookingExportService.writeBookings(output, from, to, exportFormat);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"bookings-" + from + "-" + to + "." + exportFormat.extension() + "\"")
+                .contentType(MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .body(body);
     }
 
 
@@ -64,11 +168,19 @@ public class BookingController {
     @Operation(summary = "Get bookings by car ID", description = "Returns bookings associated with a specific car")
     @PreAuthorize("hasAnyRole({'ROLE_ADMIN'})")
     @SecurityRequirement(name = "bearerAuth")
-    public List<BookingResponseDto> getBookingsByCarId(
+    public PageResponseDto<BookingResponseDto> getBookingsByCarId(
             @RequestParam("car-id")
             @Parameter(description = "Car unique identifier", example = "12")
-            Long carId) {
-        return bookingService.getBookingsByCarId(carId);
+            Long carId,
+
+            @ParameterObject
+            @PageableDefault(sort = "rentalStartDate", direction = Sort.Direction.DESC)
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal) {
+        return bookingService.getBookingsByCarId(carId, pageable, withTotal);
     }
 
     @GetMapping("/filter/by-rental-dates-or-by-bookings-status")
@@ -77,7 +189,7 @@ public class BookingController {
             description = "Filters bookings by rental start or end date and by booking status or only by booking status ")
     @PreAuthorize("isAuthenticated()")
     @SecurityRequirement(name = "bearerAuth")
-    public List<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(
+    public PageResponseDto<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(
             @RequestParam(value = "start-date", required = false)
             @Parameter(
                     description = "Rental start date",
@@ -92,8 +204,17 @@ public class BookingController {
 
             @RequestParam(value = "car-status", required = false)
             @Parameter(description = "Car status in the data base", example = "ACTIVE")
-            BookingStatus bookingStatus) {
-        return bookingService.getBookingsByRentalDaysOrByBookingStatus(rentalStartDate, rentalEndDate, bookingStatus);
+            BookingStatus bookingStatus,
+
+            @ParameterObject
+            @PageableDefault(sort = "bookingStatus")
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal) {
+        return bookingService.getBookingsByRentalDaysOrByBookingStatus(
+                rentalStartDate, rentalEndDate, bookingStatus, pageable, withTotal);
     }
 
     @PutMapping("activate/{id}")
@@ -107,10 +228,10 @@ public class BookingController {
             @Parameter(description = "Booking unique identifier", example = "7")
             Long bookingId,
 
-            @AuthenticationPrincipal
+            @CurrentSecurityContext(expression = "authentication")
             @Parameter(hidden = true)
-            String email) {
-        return bookingService.activateBooking(bookingId, email);
+            AuthInfo caller) {
+        return bookingService.activateBooking(bookingId, caller);
     }
 
     @PutMapping("/extend/{id}")
@@ -122,16 +243,16 @@ public class BookingController {
             @Parameter(description = "Booking unique identifier", example = "7")
             Long id,
 
-            @AuthenticationPrincipal
+            @CurrentSecurityContext(expression = "authentication")
             @Parameter(hidden = true)
-            String email,
+            AuthInfo caller,
 
             @RequestParam
             @Parameter(
                     description = "New rental end date",
                     example = "2025-04-01T00:00")
             LocalDateTime newEndDate) {
-        return bookingService.extendBooking(id, email, newEndDate);
+        return bookingService.extendBooking(id, caller, newEndDate);
     }
 
     @PutMapping("/cancel/{id}")
@@ -143,10 +264,28 @@ public class BookingController {
             @Parameter(description = "Booking unique identifier", example = "17")
             Long id,
 
-            @AuthenticationPrincipal
+            @CurrentSecurityContext(expression = "authentication")
             @Parameter(hidden = true)
-            String email) {
-        return ResponseEntity.ok(bookingService.cancelBooking(id, email));
+            AuthInfo caller) {
+        return ResponseEntity.ok(bookingService.cancelBooking(id, caller));
+    }
+
+    @PostMapping("/batch")
+    @Operation(
+            summary = "Apply an operation to several bookings",
+            description = "Activates, closes or cancels all passed bookings in one transaction and returns a result for every booking")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    public BatchResultDto applyBatchOperation(
+            @RequestBody
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Operation and booking ids")
+            @Valid
+            BookingBatchRequestDto batchRequestDto,
+
+            @CurrentSecurityContext(expression = "authentication")
+            @Parameter(hidden = true)
+            AuthInfo caller) {
+        return bookingService.applyBatchOperation(batchRequestDto, caller);
     }
 
     @PutMapping("close/{id}")
@@ -160,8 +299,9 @@ public class BookingController {
             @Parameter(description = "Booking unique identifier", example = "17")
             Long id,
 
-            @AuthenticationPrincipal
-            String email) {
-        return bookingService.closeBooking(id, email);
+            @CurrentSecurityContext(expression = "authentication")
+            @Parameter(hidden = true)
+            AuthInfo caller) {
+        return bookingService.closeBooking(id, caller);
     }
 }
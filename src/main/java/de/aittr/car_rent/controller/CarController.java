@@ -1,12 +1,21 @@
 package de.aittr.car_rent.controller;
 
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.CarFacetsResponseDto;
+import de.aittr.car_rent.domain.dto.CarImportResultDto;
 import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.dto.CarSearchCriteriaDto;
+import de.aittr.car_rent.domain.dto.CarSearchResponseDto;
+import de.aittr.car_rent.domain.dto.CarStatusBatchRequestDto;
 import de.aittr.car_rent.domain.dto.CarUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.FleetVersionDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.domain.entity.CarFuelType;
 import de.aittr.car_rent.domain.entity.CarStatus;
 import de.aittr.car_rent.domain.entity.CarTransmissionType;
 import de.aittr.car_rent.domain.entity.CarType;
 import de.aittr.car_rent.exception_handling.exceptions.CarNotFoundException;
+import de.aittr.car_rent.service.CarImportService;
 import de.aittr.car_rent.service.interfaces.CarService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -18,17 +27,27 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/cars")
@@ -36,7 +55,17 @@ import java.util.List;
 @Tag(name = "Car controller", description = "Controller for various operations with cars")
 public class CarController {
 
+    //кэш каталога можно использовать только после проверки ETag на сервере
+    private static final CacheControl PUBLIC_CATALOG_CACHE = CacheControl.noCache().cachePublic();
+    //список всех авто для администратора не кэшируется общими кэшами
+    private static final CacheControl ADMIN_CATALOG_CACHE = CacheControl.noCache().cachePrivate();
+    //типы кузова - значения перечисления, меняются только с новой версией приложения
+    private static final CacheControl CAR_TYPES_CACHE = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+    //версии снимка автопарка считаются заново после перезапуска, поэтому ETag включает id экземпляра приложения
+    private static final String INSTANCE_ID = UUID.randomUUID().toString().substring(0, 8);
+
     private final CarService carService;
+    private final CarImportService carImportService;
 
     @PostMapping
     @Operation(
@@ -54,123 +83,199 @@ public class CarController {
 
     @GetMapping
     @Operation(
-            summary = "Get all active cars (that exist physically in the rental salon)",
-            description = "Getting all active cars that exist in the database with statuses ACTIVE")
-    public List<CarResponseDto> getAllCars() {
-        return carService.getAllCars();
+            summary = "Get a page of all active cars (that exist physically in the rental salon)",
+            description = "Getting a page of active cars that exist in the database with statuses ACTIVE. "
+                    + "Ordered by car type unless sorted by id, brand, model, year, dayRentalPrice or carStatus")
+    public ResponseEntity<PageResponseDto<CarResponseDto>> getAllCars(
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal,
+
+            WebRequest request) {
+        return conditionalGet(request, PUBLIC_CATALOG_CACHE, () -> carService.getAllCars(pageable, withTotal));
     }
 
     @GetMapping("/all")
     @Operation(
-            summary = "Get all cars that exist in the database)",
-            description = "Getting all cars that exist in the database with all statuses and ACTIVE ot NOT_ACTIVE")
-    public List<CarResponseDto> getAllCarsToAdmin() {
-        return carService.getAllCarsToAdmin();
+            summary = "Get a page of all cars that exist in the database)",
+            description = "Getting a page of all cars that exist in the database with all statuses and ACTIVE ot NOT_ACTIVE. "
+                    + "Sortable by id, brand, model, year, dayRentalPrice and carStatus; "
+                    + "without sort the cars are ordered by active flag, status, type, transmission, brand and year")
+    public ResponseEntity<PageResponseDto<CarResponseDto>> getAllCarsToAdmin(
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal,
+
+            WebRequest request) {
+        return conditionalGet(request, ADMIN_CATALOG_CACHE, () -> carService.getAllCarsToAdmin(pageable, withTotal));
     }
 
     @GetMapping("/{id}")
     @Operation(
             summary = "Get car by car id",
             description = "Getting car that exist in the database by car id")
-    public CarResponseDto getCarById(
+    public ResponseEntity<CarResponseDto> getCarById(
             @PathVariable
             @Parameter(description = "Car unique identifier", example = "7")
-            Long id) {
-        return carService.getCarById(id);
+            Long id,
+            WebRequest request) {
+        return conditionalGet(request, PUBLIC_CATALOG_CACHE, () -> carService.getCarById(id));
     }
 
     @GetMapping("/filter/brand")
     @Operation(
-            summary = "Get cars list by car brand",
+            summary = "Get a page of cars by car brand",
             description = "Getting car that exist in the database by car brand")
-    public List<CarResponseDto> getCarsByBrand(
+    public PageResponseDto<CarResponseDto> getCarsByBrand(
             @RequestParam("brand")
             @Parameter(description = "Car brand title")
-            String brand) {
-        return carService.getCarsByBrand(brand);
+            String brand,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByBrand(brand, pageable, withTotal);
     }
 
     @GetMapping("/filter/model")
     @Operation(
-            summary = "Get cars list by car model",
+            summary = "Get a page of cars by car model",
             description = "Getting car that exist in the database by car model")
-    public List<CarResponseDto> getCarsByModel(
+    public PageResponseDto<CarResponseDto> getCarsByModel(
             @RequestParam("model")
             @Parameter(description = "Car model title")
-            String model) {
-        return carService.getCarsByModel(model);
+            String model,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByModel(model, pageable, withTotal);
     }
 
     @GetMapping("/filter/year")
     @Operation(
-            summary = "Get cars list by car year",
+            summary = "Get a page of cars by car year",
             description = "Getting car that exist in the database by car year")
-    public List<CarResponseDto> getCarsByYear(
+    public PageResponseDto<CarResponseDto> getCarsByYear(
             @RequestParam("year")
             @Parameter(description = "Car build year")
-            int year) {
-        return carService.getCarsByYear(year);
+            int year,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByYear(year, pageable, withTotal);
     }
 
     @GetMapping("/filter/type")
     @Operation(
-            summary = "Get cars list y car type",
+            summary = "Get a page of cars by car type",
             description = "Getting car that exist in the database by car type")
-    public List<CarResponseDto> getCarsByType(
+    public PageResponseDto<CarResponseDto> getCarsByType(
             @RequestParam("type")
             @Parameter(description = "Car type title")
-            CarType type) {
-        return carService.getCarsByType(type);
+            CarType type,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByType(type, pageable, withTotal);
     }
 
     @GetMapping("/filter/fuel-type")
     @Operation(
-            summary = "Get cars list by car fuel type",
+            summary = "Get a page of cars by car fuel type",
             description = "Getting car that exist in the database by car fuel type")
-    public List<CarResponseDto> getCarsByFuelType(
+    public PageResponseDto<CarResponseDto> getCarsByFuelType(
             @RequestParam("fuel-type")
             @Parameter(description = "Car fuel type title")
-            CarFuelType fuelType) {
-        return carService.getCarsByFuelType(fuelType);
+            CarFuelType fuelType,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByFuelType(fuelType, pageable, withTotal);
     }
 
     @GetMapping("/filter/transmission-type")
     @Operation(
-            summary = "Get cars list by car transmission type",
+            summary = "Get a page of cars by car transmission type",
             description = "Getting car that exist in the database by car transmission type")
-    public List<CarResponseDto> getCarsByTransmissionType(
+    public PageResponseDto<CarResponseDto> getCarsByTransmissionType(
             @RequestParam("transmission-type")
             @Parameter(description = "Car transmission type title")
-            CarTransmissionType transmissionType) {
-        return carService.getCarsByTransmissionType(transmissionType);
+            CarTransmissionType transmissionType,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByTransmissionType(transmissionType, pageable, withTotal);
     }
 
     @GetMapping("/filter/car-status")
     @Operation(
-            summary = "Get cars list by car status",
+            summary = "Get a page of cars by car status",
             description = "Getting car that exist in the database by car status")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @SecurityRequirement(name = "bearerAuth")
-    public List<CarResponseDto> getCarsByCarStatus(
+    public PageResponseDto<CarResponseDto> getCarsByCarStatus(
             @RequestParam("car-status")
             @Parameter(description = "Car status")
-            CarStatus carStatus) {
-        return carService.getCarsByCarStatus(carStatus);
+            CarStatus carStatus,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByCarStatus(carStatus, pageable, withTotal);
     }
 
     @GetMapping("/filter/rental-price")
     @Operation(
-            summary = "Get cars list by min und max car day rental price",
+            summary = "Get a page of cars by min und max car day rental price",
             description = "Getting car that exist in the database by min und max car day rental price")
-    public List<CarResponseDto> getCarsByDayRentalPrice(
+    public PageResponseDto<CarResponseDto> getCarsByDayRentalPrice(
             @RequestParam("from")
             @Parameter(description = "Minimal day rental car price")
             BigDecimal minDayRentalPrice,
 
             @RequestParam("to")
             @Parameter(description = "Maximal day rental car price")
-            BigDecimal maxDayRentalPrice) {
-        return carService.getCarsByDayRentalPrice(minDayRentalPrice, maxDayRentalPrice);
+            BigDecimal maxDayRentalPrice,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getCarsByDayRentalPrice(minDayRentalPrice, maxDayRentalPrice, pageable, withTotal);
     }
 
     @GetMapping("/available-car")
@@ -217,6 +322,43 @@ public class CarController {
         return carService.updateCar(carDto, carId);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(
+            summary = "Import cars from CSV or NDJSON",
+            description = "Streams the request body line by line, validates every line like saving a single car "
+                    + "and saves valid cars in chunks. CSV needs a header with brand, model, year, type, fuelType, "
+                    + "transmissionType and dayRentalPrice columns (carStatus is optional). "
+                    + "An interrupted import can be resumed from lastCommittedLine + 1")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    public CarImportResultDto importCars(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE)
+            @Parameter(hidden = true)
+            String contentType,
+
+            @RequestParam(value = "start-line", defaultValue = "1")
+            @Parameter(description = "Line number to start the import from, the CSV header is always read", example = "1")
+            long startLine,
+
+            @Parameter(hidden = true)
+            InputStream body) {
+        return carImportService.importCars(body, CarImportService.ImportFormat.fromContentType(contentType), startLine);
+    }
+
+    @PutMapping("/batch/status")
+    @Operation(
+            summary = "Update status of several cars",
+            description = "Sets the same car status for all passed cars in one transaction and returns a result for every car")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    public BatchResultDto updateCarStatuses(
+            @RequestBody
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Car ids and new car status")
+            @Valid
+            CarStatusBatchRequestDto batchRequestDto) {
+        return carService.updateCarStatuses(batchRequestDto);
+    }
+
     @DeleteMapping("/delete/{id}")
     @Operation(
             summary = "Delete car by car id",
@@ -239,9 +381,9 @@ public class CarController {
 
     @GetMapping("/filter/time")
     @Operation(
-            summary = "Get available cars list by start und end days",
+            summary = "Get a page of available cars by start und end days",
             description = "Getting available cars list that exist in the database by start und end days")
-    public List<CarResponseDto> getAllAvailableCarsByDates(
+    public PageResponseDto<CarResponseDto> getAllAvailableCarsByDates(
             @RequestParam(value = "from")
             @Parameter(description = "Start day", example = "2025-04-04T11:31")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
@@ -250,16 +392,23 @@ public class CarController {
             @RequestParam(value = "to")
             @Parameter(description = "End day", example = "2025-04-04T11:32")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
-            LocalDateTime endDateTime) {
-        return carService.getAllAvailableCarsByDates(startDateTime, endDateTime);
+            LocalDateTime endDateTime,
+
+            @ParameterObject
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.getAllAvailableCarsByDates(startDateTime, endDateTime, pageable, withTotal);
     }
 
     //    GET-> localhost:8080/api/cars/filter?startDateTime=2024-03-20T10:00:00&endDateTime=2024-03-25T10:00:00&minPrice=50&maxPrice=200
     @GetMapping("/filter")
     @Operation(
-            summary = "Filter available cars",
+            summary = "Filter available cars page by page",
             description = "Filter available cars by various criteria including dates, brand, fuel type, transmission type and price range")
-    public List<CarResponseDto> filterAvailableCars(
+    public PageResponseDto<CarResponseDto> filterAvailableCars(
             @RequestParam(required = false)
             @Parameter(description = "Start date and time of rental period", example = "2025-04-08T00:00")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
@@ -290,10 +439,117 @@ public class CarController {
             @Parameter(description = "Minimum rental price per day")
             BigDecimal minPrice,
 
+            @RequestParam(required = false)
+            @Parameter(description = "Maximum rental price per day")
+            BigDecimal maxPrice,
+
+            @ParameterObject
+            @PageableDefault(sort = "dayRentalPrice")
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages")
+            boolean withTotal) {
+        return carService.filterAvailableCars(
+                startDateTime, endDateTime, brand, type, fuel, transmissionType, minPrice, maxPrice, pageable, withTotal);
+    }
+
+    //    GET-> localhost:8080/api/cars/search?startDateTime=2025-04-08T00:00&endDateTime=2025-04-12T00:00&type=SUV&type=SEDAN&size=20
+    @GetMapping("/search")
+    @Operation(
+            summary = "Search available cars page by page",
+            description = "Searches active cars by rental period, brand, type, fuel type, transmission type and price range. " +
+                    "Cars are sorted by day rental price and id; pass nextCursor of the previous page to get the next one")
+    public CarSearchResponseDto searchCars(
+            @RequestParam(required = false)
+            @Parameter(description = "Start date and time of rental period", example = "2025-04-08T00:00")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime startDateTime,
+
+            @RequestParam(required = false)
+            @Parameter(description = "End date and time of rental period", example = "2025-04-12T00:00")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime endDateTime,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car brands")
+            List<String> brand,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car types")
+            List<String> type,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car fuel types")
+            List<String> fuel,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car transmission types")
+            List<String> transmissionType,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Minimum rental price per day")
+            BigDecimal minPrice,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Maximum rental price per day")
+            BigDecimal maxPrice,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Cursor of the page (nextCursor of the previous page)")
+            String cursor,
+
+            @RequestParam(defaultValue = "20")
+            @Parameter(description = "Page size (1 - 100)", example = "20")
+            int size) {
+        CarSearchCriteriaDto criteria = new CarSearchCriteriaDto(
+                startDateTime, endDateTime, brand, type, fuel, transmissionType, minPrice, maxPrice);
+        return carService.searchCars(criteria, cursor, size);
+    }
+
+    //    GET-> localhost:8080/api/cars/facets?startDateTime=2025-04-08T00:00&endDateTime=2025-04-12T00:00&brand=BMW
+    @GetMapping("/facets")
+    @Operation(
+            summary = "Get facet counts of available cars",
+            description = "Returns numbers of active cars per brand, type, fuel type, transmission type and price range " +
+                    "for the current filter selection. Counts of every facet ignore the selection in that facet itself")
+    public CarFacetsResponseDto getCarFacets(
+            @RequestParam(required = false)
+            @Parameter(description = "Start date and time of rental period", example = "2025-04-08T00:00")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime startDateTime,
+
+            @RequestParam(required = false)
+            @Parameter(description = "End date and time of rental period", example = "2025-04-12T00:00")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime endDateTime,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car brands")
+            List<String> brand,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car types")
+            List<String> type,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car fuel types")
+            List<String> fuel,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Car transmission types")
+            List<String> transmissionType,
+
+            @RequestParam(required = false)
+            @Parameter(description = "Minimum rental price per day")
+            BigDecimal minPrice,
+
             @RequestParam(required = false)
             @Parameter(description = "Maximum rental price per day")
             BigDecimal maxPrice) {
-        return carService.filterAvailableCars(startDateTime, endDateTime, brand, type, fuel, transmissionType, minPrice, maxPrice);
+        CarSearchCriteriaDto criteria = new CarSearchCriteriaDto(
+                startDateTime, endDateTime, brand, type, fuel, transmissionType, minPrice, maxPrice);
+        return carService.getCarFacets(criteria);
     }
 
     // GET -> localhost:8080/api/cars/brands
@@ -302,8 +558,8 @@ public class CarController {
             summary = "Get all available car brands",
             description = "Get a list of all unique car brands that a currently active"
     )
-    public List<String> getAllAvailableBrands() {
-        return carService.getAllAvailableBrands();
+    public ResponseEntity<List<String>> getAllAvailableBrands(WebRequest request) {
+        return conditionalGet(request, PUBLIC_CATALOG_CACHE, carService::getAllAvailableBrands);
     }
 
     @GetMapping("/types")
@@ -311,8 +567,8 @@ public class CarController {
             summary = "Get all car types",
             description = "Retrieve a list of all car body types"
     )
-    public List<String> getAllCarTypes() {
-        return carService.getAllCarTypes();
+    public ResponseEntity<List<String>> getAllCarTypes(WebRequest request) {
+        return conditionalGet(request, CAR_TYPES_CACHE, carService::getAllCarTypes);
     }
 
     @PostMapping(value = "/upload-image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -354,4 +610,25 @@ public class CarController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Отвечает на GET-запрос с учётом If-None-Match / If-Modified-Since.
+     * ETag и Last-Modified берутся из версии снимка автопарка, поэтому при совпадении
+     * возвращается 304 без вызова сервиса и сериализации ответа
+     */
+    private <T> ResponseEntity<T> conditionalGet(WebRequest request, CacheControl cacheControl, Supplier<T> body) {
+        FleetVersionDto fleetVersion = carService.getFleetVersion();
+        String eTag = "\"" + INSTANCE_ID + "-" + fleetVersion.version() + "\"";
+        long lastModified = fleetVersion.lastModified().toEpochMilli();
+        if (request.checkNotModified(eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .body(body.get());
+    }
+}
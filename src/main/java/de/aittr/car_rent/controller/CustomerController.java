@@ -4,17 +4,21 @@ package de.aittr.car_rent.controller;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.service.interfaces.CustomerService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/customers")
 @RequiredArgsConstructor
@@ -25,11 +29,18 @@ public class CustomerController {
 
     //GET -> http://localhost:8080/customers
     @GetMapping
-    @Operation(description = "Shows all active customers")
+    @Operation(description = "Shows a page of customers. Sortable by id, firstName, lastName, email and isActive")
     @PreAuthorize("hasAnyRole({'ROLE_ADMIN'})")
     @SecurityRequirement(name = "bearerAuth")
-    public List<CustomerResponseDto> getAllActiveCustomers() {
-        return customerService.getAllCustomers();
+    public PageResponseDto<CustomerResponseDto> getAllActiveCustomers(
+            @ParameterObject
+            @PageableDefault(sort = "id")
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal) {
+        return customerService.getAllCustomers(pageable, withTotal);
     }
 
     //GET -> http://localhost:8080/customers/3
@@ -75,21 +86,38 @@ public class CustomerController {
 
     //GET -> http://localhost:8080/customers/all-customer-bookings/1
     @GetMapping("/all-customer-bookings/{id}")
-    @Operation(description = "Finds all bookings by customer id")
+    @Operation(description = "Finds a page of bookings by customer id")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @SecurityRequirement(name = "bearerAuth")
-    public List<BookingResponseDto> getAllBookingsByCustomerId(@PathVariable Long id) {
-        return customerService.getAllBookingsByCustomerId(id);
+    public PageResponseDto<BookingResponseDto> getAllBookingsByCustomerId(
+            @PathVariable Long id,
+
+            @ParameterObject
+            @PageableDefault(sort = "rentalStartDate", direction = Sort.Direction.DESC)
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal) {
+        return customerService.getAllBookingsByCustomerId(id, pageable, withTotal);
     }
 
     //GET -> http://localhost:8080/customers/all-my-bookings
     @GetMapping("/all-my-bookings")
-    @Operation(description = "Finds all current customer bookings")
+    @Operation(description = "Finds a page of current customer bookings")
     @PreAuthorize("isAuthenticated()")
     @SecurityRequirement(name = "bearerAuth")
-    public List<BookingResponseDto> getAllBookingsByCustomerEmail(
-            @AuthenticationPrincipal String email){
-        return customerService.getAllBookingsByCustomerEmail(email);
+    public PageResponseDto<BookingResponseDto> getAllBookingsByCustomerEmail(
+            @AuthenticationPrincipal String email,
+
+            @ParameterObject
+            @PageableDefault(sort = "rentalStartDate", direction = Sort.Direction.DESC)
+            Pageable pageable,
+
+            @RequestParam(value = "with-total", defaultValue = "false")
+            @Parameter(description = "Also return totalElements and totalPages (runs an extra COUNT query)")
+            boolean withTotal){
+        return customerService.getAllBookingsByCustomerEmail(email, pageable, withTotal);
     }
 
     @GetMapping("/find-me")
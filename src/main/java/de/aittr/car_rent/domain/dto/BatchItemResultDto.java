@@ -0,0 +1,27 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Result of a batch operation for one entity with id, success, status and error")
+public record BatchItemResultDto(
+
+        @Schema(description = "Entity unique identifier", example = "7")
+        Long id,
+
+        @Schema(description = "Whether the operation was applied to the entity", example = "true")
+        boolean success,
+
+        @Schema(description = "Entity status after the operation", example = "CLOSED_BY_ADMIN")
+        String status,
+
+        @Schema(description = "Reason why the operation was not applied", example = "Booking with id 7 not found")
+        String error) {
+
+    public static BatchItemResultDto success(Long id, Enum<?> status) {
+        return new BatchItemResultDto(id, true, status.name(), null);
+    }
+
+    public static BatchItemResultDto failure(Long id, String error) {
+        return new BatchItemResultDto(id, false, null, error);
+    }
+}
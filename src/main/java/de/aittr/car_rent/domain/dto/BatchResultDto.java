@@ -0,0 +1,23 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Result of a batch operation with succeeded and failed counts and per-entity results")
+public record BatchResultDto(
+
+        @Schema(description = "Number of entities the operation was applied to", example = "2")
+        int succeeded,
+
+        @Schema(description = "Number of entities the operation was not applied to", example = "1")
+        int failed,
+
+        @Schema(description = "Per-entity results in the order of ascending ids")
+        List<BatchItemResultDto> results) {
+
+    public static BatchResultDto of(List<BatchItemResultDto> results) {
+        int succeeded = (int) results.stream().filter(BatchItemResultDto::success).count();
+        return new BatchResultDto(succeeded, results.size() - succeeded, results);
+    }
+}
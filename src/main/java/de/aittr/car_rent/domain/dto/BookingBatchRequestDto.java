@@ -0,0 +1,31 @@
+package de.aittr.car_rent.domain.dto;
+
+import de.aittr.car_rent.validation.ValidEnum;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Batch booking operation DTO with operation and bookingIds")
+public record BookingBatchRequestDto(
+
+        @Schema(
+                description = "Operation applied to every booking: ACTIVATE, CLOSE or CANCEL",
+                example = "CLOSE")
+        @NotNull
+        @ValidEnum(enumClass = BookingBatchOperation.class, message = "Invalid batch operation")
+        String operation,
+
+        @Schema(description = "Booking unique identifiers", example = "[7, 12, 15]")
+        @NotEmpty
+        @Size(max = 1000, message = "Batch must not contain more than 1000 bookings")
+        List<Long> bookingIds) {
+
+    public enum BookingBatchOperation {
+        ACTIVATE,
+        CLOSE,
+        CANCEL
+    }
+}
@@ -0,0 +1,30 @@
+package de.aittr.car_rent.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Schema(description = "Flat booking row of the accounting export with booking, customer and car columns")
+public record BookingExportRowDto(
+        Long bookingId,
+        String bookingStatus,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime rentalStartDate,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime rentalEndDate,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime createBookingDate,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime updateBookingDate,
+        BigDecimal totalPrice,
+        Long customerId,
+        String customerEmail,
+        String customerFirstName,
+        String customerLastName,
+        Long carId,
+        String carBrand,
+        String carModel,
+        Integer carYear,
+        BigDecimal carDayRentalPrice) {}
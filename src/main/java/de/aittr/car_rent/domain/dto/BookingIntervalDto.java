@@ -0,0 +1,13 @@
+package de.aittr.car_rent.domain.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Период аренды бронирования без связанных сущностей (для индекса доступности авто)
+ */
+public record BookingIntervalDto(
+        Long id,
+        Long carId,
+        LocalDateTime rentalStartDate,
+        LocalDateTime rentalEndDate
+) {}
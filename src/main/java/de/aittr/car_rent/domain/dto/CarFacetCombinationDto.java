@@ -0,0 +1,18 @@
+package de.aittr.car_rent.domain.dto;
+
+import de.aittr.car_rent.domain.entity.CarFuelType;
+import de.aittr.car_rent.domain.entity.CarTransmissionType;
+import de.aittr.car_rent.domain.entity.CarType;
+
+/**
+ * Количество авто с одинаковыми значениями фасетов (результат группирующего запроса)
+ */
+public record CarFacetCombinationDto(
+        String brand,
+        CarType type,
+        CarFuelType fuelType,
+        CarTransmissionType transmissionType,
+        int priceBucket,
+        boolean priceMatches,
+        long count
+) {}
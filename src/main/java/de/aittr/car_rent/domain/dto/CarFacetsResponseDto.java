@@ -0,0 +1,25 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+@Schema(description = "Numbers of cars per brand, type, fuel type, transmission type and price range " +
+        "for the current filter selection")
+public record CarFacetsResponseDto(
+
+        @Schema(description = "Number of cars per brand", example = "{\"BMW\": 3, \"Audi\": 2}")
+        Map<String, Long> brands,
+
+        @Schema(description = "Number of cars per body type", example = "{\"SEDAN\": 4, \"SUV\": 1}")
+        Map<String, Long> types,
+
+        @Schema(description = "Number of cars per fuel type", example = "{\"PETROL\": 3, \"DIESEL\": 2}")
+        Map<String, Long> fuelTypes,
+
+        @Schema(description = "Number of cars per transmission type", example = "{\"AUTOMATIC\": 5}")
+        Map<String, Long> transmissionTypes,
+
+        @Schema(description = "Number of cars per day rental price range [from, to)", example = "{\"50-100\": 2, \"100-150\": 3}")
+        Map<String, Long> priceRanges
+) {}
@@ -0,0 +1,12 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Import error of one line with line number and message")
+public record CarImportErrorDto(
+
+        @Schema(description = "Line number in the uploaded file, starting from 1", example = "42")
+        long line,
+
+        @Schema(description = "Reason why the line was not imported", example = "Car type must not be not blank")
+        String message) {}
@@ -0,0 +1,29 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Result of a car import with counters, line errors and the line to resume from")
+public record CarImportResultDto(
+
+        @Schema(description = "Whether the whole file was processed", example = "true")
+        boolean completed,
+
+        @Schema(description = "Number of processed data lines", example = "1000")
+        long processedLines,
+
+        @Schema(description = "Number of imported cars", example = "998")
+        long imported,
+
+        @Schema(description = "Number of rejected lines", example = "2")
+        long failed,
+
+        @Schema(description = "Last line whose chunk is saved, the import can be resumed from the next line", example = "1001")
+        long lastCommittedLine,
+
+        @Schema(description = "Line errors, limited by car.import.max-reported-errors")
+        List<CarImportErrorDto> errors,
+
+        @Schema(description = "Whether some line errors were not reported because of the limit", example = "false")
+        boolean errorsTruncated) {}
@@ -0,0 +1,19 @@
+package de.aittr.car_rent.domain.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Критерии поиска авто. Незаданный (null или пустой) критерий не ограничивает поиск
+ */
+public record CarSearchCriteriaDto(
+        LocalDateTime startDateTime,
+        LocalDateTime endDateTime,
+        List<String> brand,
+        List<String> type,
+        List<String> fuel,
+        List<String> transmissionType,
+        BigDecimal minPrice,
+        BigDecimal maxPrice
+) {}
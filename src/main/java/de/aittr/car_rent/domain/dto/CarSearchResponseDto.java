@@ -0,0 +1,17 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Page of cars found by search criteria with a cursor of the next page")
+public record CarSearchResponseDto(
+
+        @Schema(description = "Cars of the page sorted by day rental price and id")
+        List<CarResponseDto> cars,
+
+        @Schema(
+                description = "Cursor to pass for the next page, null if this is the last page",
+                example = "MTUwLjAwOjQy")
+        String nextCursor
+) {}
@@ -0,0 +1,25 @@
+package de.aittr.car_rent.domain.dto;
+
+import de.aittr.car_rent.domain.entity.CarStatus;
+import de.aittr.car_rent.validation.ValidEnum;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Batch car status update DTO with carIds and carStatus")
+public record CarStatusBatchRequestDto(
+
+        @Schema(description = "Car unique identifiers", example = "[3, 4, 8]")
+        @NotEmpty
+        @Size(max = 1000, message = "Batch must not contain more than 1000 cars")
+        List<Long> carIds,
+
+        @Schema(
+                description = "New car status",
+                example = "AVAILABLE")
+        @NotNull
+        @ValidEnum(enumClass = CarStatus.class, message = "Invalid car status")
+        String carStatus) {}
@@ -0,0 +1,11 @@
+package de.aittr.car_rent.domain.dto;
+
+import java.time.Instant;
+
+/**
+ * Версия снимка автопарка и время его создания
+ */
+public record FleetVersionDto(
+        long version,
+        Instant lastModified
+) {}
@@ -0,0 +1,36 @@
+package de.aittr.car_rent.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+@Schema(description = "One page of a list. Totals are returned only when requested with with-total=true")
+public record PageResponseDto<T>(
+
+        @Schema(description = "Elements of the page")
+        List<T> content,
+
+        @Schema(description = "Zero-based page number", example = "0")
+        int page,
+
+        @Schema(description = "Requested page size", example = "20")
+        int size,
+
+        @Schema(description = "Whether there is a next page", example = "true")
+        boolean hasNext,
+
+        @Schema(description = "Number of all elements, null if totals were not requested", example = "137", nullable = true)
+        Long totalElements,
+
+        @Schema(description = "Number of all pages, null if totals were not requested", example = "7", nullable = true)
+        Integer totalPages) {
+
+    public static <T> PageResponseDto<T> of(Slice<T> slice, Long totalElements) {
+        Integer totalPages = totalElements == null
+                ? null
+                : (int) ((totalElements + slice.getSize() - 1) / slice.getSize());
+        return new PageResponseDto<>(
+                slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(), totalElements, totalPages);
+    }
+}
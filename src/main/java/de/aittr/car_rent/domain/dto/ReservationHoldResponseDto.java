@@ -0,0 +1,39 @@
+package de.aittr.car_rent.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+@Schema(description = "Temporary reservation hold of a car with holdId, carId, rentalStartDate, rentalEndDate and expiresAt")
+public record ReservationHoldResponseDto(
+
+        @Schema(
+                description = "Reservation hold unique identifier",
+                example = "5f0c1d2e-3a4b-4c5d-8e9f-0a1b2c3d4e5f",
+                accessMode = Schema.AccessMode.READ_ONLY
+        )
+        String holdId,
+
+        @Schema(description = "Held car unique identifier", example = "12")
+        Long carId,
+
+        @Schema(
+                description = "Booking start day and time",
+                example = "2025-03-28T11:46")
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime rentalStartDate,
+
+        @Schema(
+                description = "Booking rental end day and time",
+                example = "2025-03-29T10:00")
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+        LocalDateTime rentalEndDate,
+
+        @Schema(
+                description = "Moment when the hold expires and the car is released",
+                example = "2025-03-20T10:15:30Z")
+        Instant expiresAt
+) {
+}
@@ -1,11 +1,19 @@
 package de.aittr.car_rent.domain.entity;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum BookingStatus {
 
         PENDING,
         ACTIVE,
-       // COMPLETED,
+        COMPLETED,
         CANCELLED_BY_ADMIN,
         CANCELLED_BY_USER,
-        CLOSED_BY_ADMIN
+        CLOSED_BY_ADMIN,
+        EXPIRED;
+
+        //статусы бронирований, которые занимают авто на период аренды
+        public static final Set<BookingStatus> BLOCKING_STATUSES = Collections.unmodifiableSet(EnumSet.of(PENDING, ACTIVE));
 }
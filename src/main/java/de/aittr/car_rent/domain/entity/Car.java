@@ -14,11 +14,21 @@ import java.util.Objects;
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "car")
+@Table(name = "car", indexes = {
+        @Index(name = "idx_car_brand", columnList = "brand, active"),
+        @Index(name = "idx_car_model", columnList = "model, active"),
+        @Index(name = "idx_car_year", columnList = "year, active"),
+        @Index(name = "idx_car_type", columnList = "type, active"),
+        @Index(name = "idx_car_fuel_type", columnList = "fuel_type, active"),
+        @Index(name = "idx_car_transmission_type", columnList = "transmission_type, active"),
+        @Index(name = "idx_car_car_status", columnList = "car_status, active"),
+        @Index(name = "idx_car_day_rental_price", columnList = "day_rental_price, active")
+})
 public class Car {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "car_seq")
+    @SequenceGenerator(name = "car_seq", sequenceName = "car_seq", allocationSize = 50)
     @Setter(AccessLevel.NONE)
     @Column(name = "id")
     private Long id;
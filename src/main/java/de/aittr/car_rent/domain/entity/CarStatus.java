@@ -1,5 +1,9 @@
 package de.aittr.car_rent.domain.entity;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum CarStatus {
 
     RENTED,
@@ -7,5 +11,8 @@ public enum CarStatus {
     UNDER_REPAIR,
     REMOVER_FROM_RENT,
     UNDER_INSPECTION,
-    DELETED
+    DELETED;
+
+    //статусы авто, в которых его можно показывать клиентам и бронировать
+    public static final Set<CarStatus> BOOKABLE_STATUSES = Collections.unmodifiableSet(EnumSet.of(RENTED, AVAILABLE, UNDER_INSPECTION));
 }
@@ -18,7 +18,8 @@ import java.time.LocalDateTime;
 public class ConfirmationCode {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "confirm_code_seq")
+    @SequenceGenerator(name = "confirm_code_seq", sequenceName = "confirm_code_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -28,7 +29,7 @@ public class ConfirmationCode {
     @Column(name = "expired")
     private LocalDateTime expired;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     private Customer customer;
 
@@ -23,7 +23,8 @@ import java.util.*;
 public class Customer implements UserDetails {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     @Setter(AccessLevel.NONE)
     @Column(name = "id")
     private Long id;
@@ -51,7 +52,7 @@ public class Customer implements UserDetails {
     @JsonIgnore
     private List<Booking> bookings = new ArrayList<>();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "role_id", nullable = false)
     private Role role;
 
@@ -59,11 +60,31 @@ public class Customer implements UserDetails {
         this.firstName = firstName;
         this.lastName = lastName;
         this.password = password;
-        this.email = email;
+        this.email = normalizeEmail(email);
         this.role = role;
         this.isActive = false;
     }
 
+    /**
+     * Email хранится в нижнем регистре без пробелов по краям, поэтому поиск клиента -
+     * точное совпадение по уникальному индексу на email
+     *
+     * @param email email в любом регистре
+     */
+    public void setEmail(String email) {
+        this.email = normalizeEmail(email);
+    }
+
+    /**
+     * Приводит email к виду, в котором он хранится в БД
+     *
+     * @param email email в любом регистре
+     * @return email в нижнем регистре без пробелов по краям или null
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public String toString() {
         return String.format("Customer: id - %d, name - %s, last name - %s, email - %s, active - %s.", id, firstName, lastName, email, isActive ? "yes" : "no");
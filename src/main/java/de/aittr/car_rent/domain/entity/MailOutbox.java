@@ -0,0 +1,60 @@
+package de.aittr.car_rent.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "mail_outbox",
+        indexes = @Index(name = "idx_mail_outbox_status_next_attempt", columnList = "status, next_attempt_at"))
+public class MailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mail_outbox_seq")
+    @SequenceGenerator(name = "mail_outbox_seq", sequenceName = "mail_outbox_seq", allocationSize = 50)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "recipient", nullable = false)
+    private String recipient;
+
+    @Column(name = "subject", nullable = false)
+    private String subject;
+
+    //готовый HTML письма
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    //varchar, а не MySQL enum: ddl-auto=update не добавляет в enum-колонку новые значения статуса
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "status", length = 20, nullable = false)
+    private MailOutboxStatus status;
+
+    //раньше этого времени письмо не выбирается: пока письмо отправляется, здесь конец аренды (lease) строки
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public MailOutbox(String recipient, String subject, String body, LocalDateTime createdAt) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.status = MailOutboxStatus.PENDING;
+        this.nextAttemptAt = createdAt;
+        this.createdAt = createdAt;
+    }
+}
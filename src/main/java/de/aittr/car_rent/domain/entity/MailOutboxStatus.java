@@ -0,0 +1,9 @@
+package de.aittr.car_rent.domain.entity;
+
+public enum MailOutboxStatus {
+
+        //ожидает отправки или отправляется
+        PENDING,
+        //не доставлено после всех попыток
+        FAILED
+}
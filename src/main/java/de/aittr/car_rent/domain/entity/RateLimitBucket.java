@@ -0,0 +1,31 @@
+package de.aittr.car_rent.domain.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "rate_limit_bucket")
+public class RateLimitBucket {
+
+    //маршрут и клиент
+    @Id
+    @Column(name = "bucket_key")
+    private String bucketKey;
+
+    //теоретическое время прихода следующего запроса, epoch millis
+    @Column(name = "arrival_at", nullable = false)
+    private long arrivalAt;
+
+    public RateLimitBucket(String bucketKey, long arrivalAt) {
+        this.bucketKey = bucketKey;
+        this.arrivalAt = arrivalAt;
+    }
+}
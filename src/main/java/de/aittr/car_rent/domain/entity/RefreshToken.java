@@ -0,0 +1,37 @@
+package de.aittr.car_rent.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "refresh_token", indexes = @Index(name = "idx_refresh_token_email", columnList = "email, rotated"))
+public class RefreshToken {
+
+    //SHA-256 токена в Base64, сам токен не хранится
+    @Id
+    @Column(name = "token_hash", length = 44)
+    private String tokenHash;
+
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    //токен уже обменян на новый, повторное предъявление означает кражу
+    @Column(name = "rotated", nullable = false)
+    private boolean rotated;
+
+    public RefreshToken(String tokenHash, String email, LocalDateTime expiresAt) {
+        this.tokenHash = tokenHash;
+        this.email = email;
+        this.expiresAt = expiresAt;
+    }
+}
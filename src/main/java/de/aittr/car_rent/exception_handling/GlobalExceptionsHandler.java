@@ -1,6 +1,8 @@
 package de.aittr.car_rent.exception_handling;
 
 import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import de.aittr.car_rent.exception_handling.exceptions.RetryLaterException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -20,6 +22,13 @@ public class GlobalExceptionsHandler {
         return new ResponseEntity<>(errorResponseDto, ex.getStatus());
     }
 
+    @ExceptionHandler(RetryLaterException.class)
+    public ResponseEntity<ErrorResponseDto> handleRetryLaterException(RetryLaterException ex) {
+        return ResponseEntity.status(ex.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ErrorResponseDto(ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationExceptions(MethodArgumentNotValidException ex) {
         Map<String, Object> errors = new HashMap<>();
@@ -0,0 +1,19 @@
+package de.aittr.car_rent.exception_handling.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Запрос отклонён из-за перегрузки, клиент может повторить его через {@code retryAfterSeconds} секунд.
+ * Время повтора отдаётся в заголовке Retry-After
+ */
+@Getter
+public class RetryLaterException extends RestApiException {
+
+    private final long retryAfterSeconds;
+
+    public RetryLaterException(String message, HttpStatus status, long retryAfterSeconds) {
+        super(message, status);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,14 +1,192 @@
 package de.aittr.car_rent.repository;
 
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
 import de.aittr.car_rent.domain.entity.Booking;
+import de.aittr.car_rent.domain.entity.BookingStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
 
-    List<Booking> findAllByCarId(Long carId);
-}
\ No newline at end of file
+    //условия отбора по дню начала или окончания аренды и статусу, незаданные параметры не учитываются
+    String RENTAL_DAY_AND_STATUS_FILTER = """
+             where (:bookingStatus is null or b.bookingStatus = :bookingStatus)
+              and (:startFrom is null or (b.rentalStartDate >= :startFrom and b.rentalStartDate < :startTo))
+              and (:endFrom is null or (b.rentalEndDate >= :endFrom and b.rentalEndDate < :endTo))
+            """;
+
+    //бронирование вместе с авто, клиентом и его ролью одним запросом (для ответа с BookingResponseDto)
+    @EntityGraph(attributePaths = {"car", "customer", "customer.role"})
+    Optional<Booking> findDetailedById(Long id);
+
+    boolean existsByCarIdAndBookingStatusIn(Long carId, Collection<BookingStatus> bookingStatuses);
+
+    //страница бронирований вместе с авто, клиентами и их ролями одним запросом, без COUNT
+    @EntityGraph(attributePaths = {"car", "customer", "customer.role"})
+    Slice<Booking> findSliceBy(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"car", "customer", "customer.role"})
+    Slice<Booking> findSliceByCarId(Long carId, Pageable pageable);
+
+    long countByCarId(Long carId);
+
+    @EntityGraph(attributePaths = {"car", "customer", "customer.role"})
+    Slice<Booking> findSliceByCustomerId(Long customerId, Pageable pageable);
+
+    long countByCustomerId(Long customerId);
+
+    @EntityGraph(attributePaths = {"car", "customer", "customer.role"})
+    @Query("select b from Booking b" + RENTAL_DAY_AND_STATUS_FILTER)
+    Slice<Booking> findSliceByRentalDayAndStatus(
+            @Param("startFrom") LocalDateTime startFrom,
+            @Param("startTo") LocalDateTime startTo,
+            @Param("endFrom") LocalDateTime endFrom,
+            @Param("endTo") LocalDateTime endTo,
+            @Param("bookingStatus") BookingStatus bookingStatus,
+            Pageable pageable);
+
+    @Query("select count(b) from Booking b" + RENTAL_DAY_AND_STATUS_FILTER)
+    long countByRentalDayAndStatus(
+            @Param("startFrom") LocalDateTime startFrom,
+            @Param("startTo") LocalDateTime startTo,
+            @Param("endFrom") LocalDateTime endFrom,
+            @Param("endTo") LocalDateTime endTo,
+            @Param("bookingStatus") BookingStatus bookingStatus);
+
+    //есть ли у авто бронирование в переданных статусах, пересекающееся с периодом [from, to)
+    @Query("""
+            select (count(b) > 0) from Booking b
+            where b.car.id = :carId
+              and b.bookingStatus in :bookingStatuses
+              and b.rentalStartDate < :to
+              and b.rentalEndDate > :from
+            """)
+    boolean existsOverlappingBooking(
+            @Param("carId") Long carId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("bookingStatuses") Collection<BookingStatus> bookingStatuses);
+
+    //периоды аренды всех бронирований в переданных статусах (без загрузки авто и клиентов)
+    @Query("""
+            select new de.aittr.car_rent.domain.dto.BookingIntervalDto(
+                b.id, b.car.id, b.rentalStartDate, b.rentalEndDate)
+            from Booking b
+            where b.bookingStatus in :bookingStatuses
+            """)
+    List<BookingIntervalDto> findAllIntervalsByBookingStatusIn(
+            @Param("bookingStatuses") Collection<BookingStatus> bookingStatuses);
+
+    //периоды аренды бронирований одного авто в переданных статусах
+    @Query("""
+            select new de.aittr.car_rent.domain.dto.BookingIntervalDto(
+                b.id, b.car.id, b.rentalStartDate, b.rentalEndDate)
+            from Booking b
+            where b.car.id = :carId
+              and b.bookingStatus in :bookingStatuses
+            """)
+    List<BookingIntervalDto> findIntervalsByCarIdAndBookingStatusIn(
+            @Param("carId") Long carId,
+            @Param("bookingStatuses") Collection<BookingStatus> bookingStatuses);
+
+    //id авто бронирования (для блокировки авто до чтения бронирования)
+    @Query("select b.car.id from Booking b where b.id = :id")
+    Optional<Long> findCarIdById(@Param("id") Long id);
+
+    //id авто бронирований из списка (для блокировки авто перед пакетной операцией)
+    @Query("select distinct b.car.id from Booking b where b.id in :ids")
+    List<Long> findCarIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    //бронирования по списку id вместе с авто и клиентами одним запросом (для пакетных операций)
+    @Query("""
+            select b from Booking b
+            join fetch b.car
+            join fetch b.customer c
+            left join fetch c.role
+            where b.id in :ids
+            order by b.id
+            """)
+    List<Booking> findAllWithCarByIdIn(@Param("ids") Collection<Long> ids);
+
+    //порция периодов бронирований в статусе, аренда по которым началась, но ещё не закончилась (по возрастанию id)
+    @Query("""
+            select new de.aittr.car_rent.domain.dto.BookingIntervalDto(
+                b.id, b.car.id, b.rentalStartDate, b.rentalEndDate)
+            from Booking b
+            where b.bookingStatus = :bookingStatus
+              and b.rentalStartDate <= :now
+              and b.rentalEndDate > :now
+              and b.id > :afterId
+            order by b.id
+            """)
+    List<BookingIntervalDto> findDueIntervals(
+            @Param("bookingStatus") BookingStatus bookingStatus,
+            @Param("now") LocalDateTime now,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    //порция периодов бронирований в статусе, аренда по которым началась не позднее startedBy (по возрастанию id)
+    @Query("""
+            select new de.aittr.car_rent.domain.dto.BookingIntervalDto(
+                b.id, b.car.id, b.rentalStartDate, b.rentalEndDate)
+            from Booking b
+            where b.bookingStatus = :bookingStatus
+              and b.rentalStartDate <= :startedBy
+              and b.id > :afterId
+            order by b.id
+            """)
+    List<BookingIntervalDto> findStartedIntervals(
+            @Param("bookingStatus") BookingStatus bookingStatus,
+            @Param("startedBy") LocalDateTime startedBy,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    //порция периодов бронирований в статусе, аренда по которым закончилась не позднее endedBy (по возрастанию id)
+    @Query("""
+            select new de.aittr.car_rent.domain.dto.BookingIntervalDto(
+                b.id, b.car.id, b.rentalStartDate, b.rentalEndDate)
+            from Booking b
+            where b.bookingStatus = :bookingStatus
+              and b.rentalEndDate <= :endedBy
+              and b.id > :afterId
+            order by b.id
+            """)
+    List<BookingIntervalDto> findEndedIntervals(
+            @Param("bookingStatus") BookingStatus bookingStatus,
+            @Param("endedBy") LocalDateTime endedBy,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    //перевести бронирования из статуса в статус одним update, изменённые параллельно бронирования пропускаются
+    @Modifying
+    @Query("""
+            update Booking b set b.bookingStatus = :newStatus, b.updateBookingDate = :now
+            where b.id in :ids
+              and b.bookingStatus = :oldStatus
+            """)
+    int updateBookingStatus(
+            @Param("ids") Collection<Long> ids,
+            @Param("oldStatus") BookingStatus oldStatus,
+            @Param("newStatus") BookingStatus newStatus,
+            @Param("now") LocalDateTime now);
+
+    //id тех из переданных бронирований, которые сейчас в статусе bookingStatus - после updateBookingStatus
+    //в той же транзакции это бронирования, которые перевёл update
+    @Query("select b.id from Booking b where b.id in :ids and b.bookingStatus = :bookingStatus")
+    List<Long> findIdsByIdInAndBookingStatus(
+            @Param("ids") Collection<Long> ids,
+            @Param("bookingStatus") BookingStatus bookingStatus);
+}
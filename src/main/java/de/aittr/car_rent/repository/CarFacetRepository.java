@@ -0,0 +1,25 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.dto.CarFacetCombinationDto;
+import de.aittr.car_rent.domain.entity.Car;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Агрегирующие запросы по авто, которые не выражаются методами Spring Data
+ */
+public interface CarFacetRepository {
+
+    /**
+     * Считает авто, подходящие под условие, одним запросом с группировкой
+     * по бренду, типу кузова, типу топлива, коробке передач, диапазону цены и выполнению условия по цене
+     *
+     * @param specification      условие отбора авто
+     * @param priceSpecification условие по цене, которое не отбирает авто, а только отмечается в комбинации
+     * @param priceBucketWidth   ширина диапазона стоимости аренды в день
+     * @return количество авто для каждой встречающейся комбинации значений
+     */
+    List<CarFacetCombinationDto> countFacetCombinations(
+            Specification<Car> specification, Specification<Car> priceSpecification, int priceBucketWidth);
+}
@@ -0,0 +1,65 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.dto.CarFacetCombinationDto;
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.domain.entity.CarFuelType;
+import de.aittr.car_rent.domain.entity.CarTransmissionType;
+import de.aittr.car_rent.domain.entity.CarType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public class CarFacetRepositoryImpl implements CarFacetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CarFacetCombinationDto> countFacetCombinations(
+            Specification<Car> specification, Specification<Car> priceSpecification, int priceBucketWidth) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Car> root = query.from(Car.class);
+
+        Path<String> brand = root.get("brand");
+        Path<CarType> type = root.get("type");
+        Path<CarFuelType> fuelType = root.get("fuelType");
+        Path<CarTransmissionType> transmissionType = root.get("transmissionType");
+        Expression<Integer> priceBucket = cb.function("floor", Integer.class,
+                cb.quot(root.get("dayRentalPrice"), priceBucketWidth));
+        Expression<Long> count = cb.count(root);
+
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        //условие по цене не отбирает строки, а группирует их, чтобы диапазоны цен считались без него
+        Predicate pricePredicate = priceSpecification.toPredicate(root, query, cb);
+        Expression<Integer> priceMatches = pricePredicate == null
+                ? null
+                : cb.<Integer>selectCase().when(pricePredicate, 1).otherwise(0);
+        if (priceMatches == null) {
+            query.multiselect(brand, type, fuelType, transmissionType, priceBucket, count)
+                    .groupBy(brand, type, fuelType, transmissionType, priceBucket);
+        } else {
+            query.multiselect(brand, type, fuelType, transmissionType, priceBucket, priceMatches, count)
+                    .groupBy(brand, type, fuelType, transmissionType, priceBucket, priceMatches);
+        }
+
+        return entityManager.createQuery(query)
+                .getResultStream()
+                .map(tuple -> new CarFacetCombinationDto(
+                        tuple.get(brand),
+                        tuple.get(type),
+                        tuple.get(fuelType),
+                        tuple.get(transmissionType),
+                        ((Number) tuple.get(priceBucket)).intValue(),
+                        priceMatches == null || ((Number) tuple.get(priceMatches)).intValue() == 1,
+                        tuple.get(count)))
+                .toList();
+    }
+}
@@ -1,37 +1,57 @@
 package de.aittr.car_rent.repository;
 
-import de.aittr.car_rent.domain.dto.CarResponseDto;
 import de.aittr.car_rent.domain.entity.*;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface CarRepository extends JpaRepository<Car, Long> {
+public interface CarRepository extends JpaRepository<Car, Long>, JpaSpecificationExecutor<Car>,
+        CarFacetRepository {
 
     //методы, которых нет в спике CRUD-операций JpaRepository
-
-    //найти авто по бренду
-    List<CarResponseDto> getCarsByBrand(String brand);
-
-    //найти авто по модели
-    List<CarResponseDto> getCarsByModel(String model);
-
-    //найти авто по году выпуска
-    List<CarResponseDto> getCarsByYear(int year);
-
-    //найти авто по типу кузова
-    List<CarResponseDto> getCarsByType(CarType type);
-
-    //найти авто по типу топлива
-    List<CarResponseDto> getCarsByFuelType(CarFuelType fuelType);
-
-    //найти авто по типу коробки передач
-    List<CarResponseDto> getCarsByTransmissionType(CarTransmissionType transmissionType);
-
-    //найти авто по статусу авто (доступно, арендовано, в ремонте, снято с аренды)
-    List<CarResponseDto> getCarsByCarStatus(CarStatus carStatus);
-
-    //найти авто по стоимости аренды в день
-    List<CarResponseDto> getCarsByDayRentalPrice(BigDecimal dayRentalPrice);
+    //фильтры по одному полю обслуживаются снимком автопарка (FleetSnapshot), здесь остаются запросы,
+    //которым нужны бронирования или агрегация на стороне БД
+
+    //найти авто и заблокировать его строку до конца транзакции (select ... for update)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Car c where c.id = :id")
+    Optional<Car> findByIdForUpdate(@Param("id") Long id);
+
+    //найти авто по списку id и заблокировать их строки по возрастанию id (для пакетных операций)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Car c where c.id in :ids order by c.id")
+    List<Car> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    //следующая порция авто с id больше переданного, по возрастанию id (загрузка автопарка порциями)
+    List<Car> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    //уникальные бренды активных авто
+    @Query("select distinct c.brand from Car c where c.isActive = true order by c.brand")
+    List<String> findAllActiveBrands();
+
+    //перевести в новый статус авто из бронирований, уже находящихся в статусе bookingStatus,
+    //если авто сейчас в одном из статусов carStatuses
+    @Modifying
+    @Query("""
+            update Car c set c.carStatus = :newStatus
+            where c.carStatus in :carStatuses
+              and c.id in (
+                  select b.car.id from Booking b
+                  where b.id in :bookingIds
+                    and b.bookingStatus = :bookingStatus)
+            """)
+    int updateCarStatusByBookings(
+            @Param("bookingIds") Collection<Long> bookingIds,
+            @Param("bookingStatus") BookingStatus bookingStatus,
+            @Param("carStatuses") Collection<CarStatus> carStatuses,
+            @Param("newStatus") CarStatus newStatus);
 }
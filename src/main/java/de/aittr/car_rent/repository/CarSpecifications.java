@@ -0,0 +1,109 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.entity.*;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Условия динамического поиска авто (JPA Specifications) для {@link CarRepository}.
+ * Условие с пустым или null значением фильтра не ограничивает выборку
+ */
+public final class CarSpecifications {
+
+    private CarSpecifications() {
+    }
+
+    public static Specification<Car> isActive() {
+        return (root, query, cb) -> cb.isTrue(root.get("isActive"));
+    }
+
+    public static Specification<Car> carStatusIn(Collection<CarStatus> carStatuses) {
+        return in("carStatus", carStatuses);
+    }
+
+    public static Specification<Car> brandIn(Collection<String> brands) {
+        return in("brand", brands);
+    }
+
+    public static Specification<Car> typeIn(Collection<CarType> types) {
+        return in("type", types);
+    }
+
+    public static Specification<Car> fuelTypeIn(Collection<CarFuelType> fuelTypes) {
+        return in("fuelType", fuelTypes);
+    }
+
+    public static Specification<Car> transmissionTypeIn(Collection<CarTransmissionType> transmissionTypes) {
+        return in("transmissionType", transmissionTypes);
+    }
+
+    public static Specification<Car> dayRentalPriceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        return (root, query, cb) -> {
+            if (minPrice != null && maxPrice != null) {
+                return cb.between(root.get("dayRentalPrice"), minPrice, maxPrice);
+            }
+            if (minPrice != null) {
+                return cb.greaterThanOrEqualTo(root.get("dayRentalPrice"), minPrice);
+            }
+            if (maxPrice != null) {
+                return cb.lessThanOrEqualTo(root.get("dayRentalPrice"), maxPrice);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Авто без бронирований в статусах {@link BookingStatus#BLOCKING_STATUSES}, пересекающихся с периодом [from, to)
+     */
+    public static Specification<Car> availableBetween(LocalDateTime from, LocalDateTime to) {
+        return (root, query, cb) -> {
+            if (from == null || to == null) {
+                return null;
+            }
+            Subquery<Long> overlapping = query.subquery(Long.class);
+            Root<Booking> booking = overlapping.from(Booking.class);
+            overlapping.select(booking.get("id")).where(
+                    cb.equal(booking.get("car"), root),
+                    booking.get("bookingStatus").in(BookingStatus.BLOCKING_STATUSES),
+                    cb.lessThan(booking.get("rentalStartDate"), to),
+                    cb.greaterThan(booking.get("rentalEndDate"), from));
+            return cb.not(cb.exists(overlapping));
+        };
+    }
+
+    /**
+     * Авто, id которых не входят в переданный набор
+     */
+    public static Specification<Car> idNotIn(Collection<Long> ids) {
+        return (root, query, cb) -> ids == null || ids.isEmpty()
+                ? null
+                : cb.not(root.get("id").in(ids));
+    }
+
+    /**
+     * Keyset-условие для сортировки (dayRentalPrice, id): авто, идущие после переданной пары значений
+     */
+    public static Specification<Car> afterPriceAndId(BigDecimal dayRentalPrice, Long id) {
+        return (root, query, cb) -> {
+            if (dayRentalPrice == null || id == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.greaterThan(root.get("dayRentalPrice"), dayRentalPrice),
+                    cb.and(
+                            cb.equal(root.get("dayRentalPrice"), dayRentalPrice),
+                            cb.greaterThan(root.get("id"), id)));
+        };
+    }
+
+    private static Specification<Car> in(String attribute, Collection<?> values) {
+        return (root, query, cb) -> values == null || values.isEmpty()
+                ? null
+                : root.get(attribute).in(values);
+    }
+}
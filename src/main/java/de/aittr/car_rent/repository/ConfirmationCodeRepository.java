@@ -1,11 +1,14 @@
 package de.aittr.car_rent.repository;
 
 import de.aittr.car_rent.domain.entity.ConfirmationCode;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
 
 public interface ConfirmationCodeRepository extends JpaRepository<ConfirmationCode, Long> {
 
+    //код вместе с клиентом и его ролью: после подтверждения клиент сохраняется и возвращается как DTO
+    @EntityGraph(attributePaths = {"customer", "customer.role"})
     Optional<ConfirmationCode> findByCode(String code);
 }
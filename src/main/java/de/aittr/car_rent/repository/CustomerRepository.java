@@ -1,8 +1,12 @@
 package de.aittr.car_rent.repository;
 
 import de.aittr.car_rent.domain.entity.Customer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,9 +16,28 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("select c from Customer c where c.isActive = true")
     List<Customer> findAllByActiveTrue();
 
-    @Query("select c from Customer c where upper(c.email) = upper(?1)")
-    Optional<Customer> findByEmail(String email);
+    //страница клиентов вместе с ролями одним запросом, без COUNT
+    @EntityGraph(attributePaths = "role")
+    Slice<Customer> findSliceBy(Pageable pageable);
 
-    @Query("select (count(c) > 0) from Customer c where upper(c.email) = upper(?1)")
-    boolean existsByEmailIgnoreCase(String email);
+    //роль нужна при каждой загрузке клиента (права, токены, DTO), поэтому читается тем же запросом
+    @Override
+    @EntityGraph(attributePaths = "role")
+    Optional<Customer> findById(Long id);
+
+    //email хранится нормализованным (Customer.normalizeEmail), поэтому поиск - точное совпадение по уникальному индексу
+    @EntityGraph(attributePaths = "role")
+    @Query("select c from Customer c where c.email = :email")
+    Optional<Customer> findByNormalizedEmail(@Param("email") String email);
+
+    @Query("select (count(c) > 0) from Customer c where c.email = :email")
+    boolean existsByNormalizedEmail(@Param("email") String email);
+
+    default Optional<Customer> findByEmail(String email) {
+        return findByNormalizedEmail(Customer.normalizeEmail(email));
+    }
+
+    default boolean existsByEmailIgnoreCase(String email) {
+        return existsByNormalizedEmail(Customer.normalizeEmail(email));
+    }
 }
@@ -0,0 +1,51 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.entity.MailOutbox;
+import de.aittr.car_rent.domain.entity.MailOutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    //выбрать письма, которые пора отправлять, и заблокировать их строки (select ... for update skip locked):
+    //строки, уже заблокированные другим экземпляром, пропускаются, а не ожидаются.
+    //порядок совпадает с индексом (status, next_attempt_at), поэтому читаются и блокируются только строки порции,
+    //а не все письма, которые пора отправлять
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            select m from MailOutbox m
+            where m.status = :status and m.nextAttemptAt <= :now
+            order by m.nextAttemptAt, m.id
+            """)
+    List<MailOutbox> findDueForUpdateSkipLocked(
+            @Param("status") MailOutboxStatus status,
+            @Param("now") LocalDateTime now,
+            Pageable pageable);
+
+    //вернуть письма, не принятые очередью отправки, к следующему опросу
+    @Modifying
+    @Query("update MailOutbox m set m.nextAttemptAt = :now where m.id in :ids")
+    int release(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    //удалить отправленное письмо
+    @Modifying
+    @Query("delete from MailOutbox m where m.id = :id")
+    int deleteSent(@Param("id") Long id);
+
+    //пометить письмо недоставленным
+    @Modifying
+    @Query("""
+            update MailOutbox m
+            set m.status = de.aittr.car_rent.domain.entity.MailOutboxStatus.FAILED, m.lastError = :error
+            where m.id = :id
+            """)
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+}
@@ -0,0 +1,36 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.entity.RateLimitBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface RateLimitBucketRepository extends JpaRepository<RateLimitBucket, String> {
+
+    //забрать токен, если время корзины опережает текущее не больше допуска - условный update, из параллельных
+    //обновлений одной корзины каждое видит результат предыдущего
+    @Modifying
+    @Query("""
+            update RateLimitBucket b
+            set b.arrivalAt = (case when b.arrivalAt > :now then b.arrivalAt else :now end) + :interval
+            where b.bucketKey = :bucketKey
+              and (case when b.arrivalAt > :now then b.arrivalAt else :now end) - :now <= :tolerance
+            """)
+    int acquire(
+            @Param("bucketKey") String bucketKey,
+            @Param("now") long now,
+            @Param("interval") long interval,
+            @Param("tolerance") long tolerance);
+
+    //создать корзину с первым забранным токеном, если её ещё нет; insert ignore есть только в MySQL
+    @Modifying
+    @Query(value = "insert ignore into rate_limit_bucket (bucket_key, arrival_at) values (:bucketKey, :arrivalAt)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("bucketKey") String bucketKey, @Param("arrivalAt") long arrivalAt);
+
+    //удалить полные корзины - они равнозначны отсутствующим
+    @Modifying
+    @Query("delete from RateLimitBucket b where b.arrivalAt <= :now")
+    int deleteFull(@Param("now") long now);
+}
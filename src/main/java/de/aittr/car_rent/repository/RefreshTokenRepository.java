@@ -0,0 +1,36 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    //пометить токен использованным, если он ещё действует - условный update, из параллельных успешен один
+    @Modifying
+    @Query("""
+            update RefreshToken t set t.rotated = true
+            where t.tokenHash = :tokenHash
+              and t.email = :email
+              and t.rotated = false
+              and t.expiresAt > :now
+            """)
+    int markRotated(
+            @Param("tokenHash") String tokenHash,
+            @Param("email") String email,
+            @Param("now") LocalDateTime now);
+
+    //удалить действующие токены клиента
+    @Modifying
+    @Query("delete from RefreshToken t where t.email = :email and t.rotated = false")
+    int deleteActiveByEmail(@Param("email") String email);
+
+    //удалить истёкшие токены клиента
+    @Modifying
+    @Query("delete from RefreshToken t where t.email = :email and t.expiresAt <= :now")
+    int deleteExpiredByEmail(@Param("email") String email, @Param("now") LocalDateTime now);
+}
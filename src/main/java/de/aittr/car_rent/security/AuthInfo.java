@@ -8,18 +8,38 @@ import org.springframework.security.core.GrantedAuthority;
 import java.util.Collection;
 import java.util.Collections;
 
+/**
+ * Аутентифицированный клиент текущего запроса.
+ * <p>
+ * Id, email и роль клиента определяются один раз в {@link de.aittr.car_rent.security.filter.TokenFilter}
+ * из claims access-токена, поэтому сервисы проверяют роль и владельца без запросов к БД.
+ * </p>
+ */
 @EqualsAndHashCode
 public class AuthInfo implements Authentication {
 
+    public static final String ADMIN_ROLE = "ROLE_ADMIN";
+
     private boolean authenticated;
+    private final Long customerId;
     private final String userEmail;
     private final Role role;
 
-    public AuthInfo(String userEmail, Role role) {
+    public AuthInfo(Long customerId, String userEmail, Role role) {
+        this.customerId = customerId;
         this.userEmail = userEmail;
         this.role = role;
     }
 
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public boolean isAdmin() {
+        return getAuthorities().stream()
+                .anyMatch(authority -> ADMIN_ROLE.equals(authority.getAuthority()));
+    }
+
     @Override
     public String getName() {
         return userEmail;
@@ -57,7 +77,7 @@ public class AuthInfo implements Authentication {
 
     @Override
     public String toString() {
-        return String.format("Auth info: authorized - %s; email - %s; role - %s",
-                authenticated, userEmail, role);
+        return String.format("Auth info: authorized - %s; customer id - %s; email - %s; role - %s",
+                authenticated, customerId, userEmail, role);
     }
 }
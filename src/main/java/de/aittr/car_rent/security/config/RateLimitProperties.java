@@ -0,0 +1,50 @@
+package de.aittr.car_rent.security.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ограничения частоты запросов к отдельным маршрутам.
+ * <p>
+ * Для каждого маршрута действует корзина токенов: {@code capacity} запросов подряд,
+ * после чего токены восполняются равномерно - {@code capacity} за {@code period}.
+ * </p>
+ */
+@Component
+@ConfigurationProperties(prefix = "security.rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    //memory - корзины в памяти экземпляра, jpa - в таблице rate_limit_bucket, общей для экземпляров
+    private String store = "memory";
+    //максимум корзин в памяти, при превышении удаляются полные (давно не использованные) корзины
+    private int maxKeys = 100000;
+    private List<Route> routes = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Route {
+
+        private String method;
+        //шаблон пути без префикса сервлета, например /auth/login или /bookings/**
+        private String path;
+        private KeyType key = KeyType.IP;
+        private long capacity;
+        private Duration period;
+    }
+
+    public enum KeyType {
+        //по адресу клиента
+        IP,
+        //по аутентифицированному клиенту, для анонимных запросов - по адресу
+        PRINCIPAL
+    }
+}
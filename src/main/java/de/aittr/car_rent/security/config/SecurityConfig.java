@@ -1,10 +1,12 @@
 package de.aittr.car_rent.security.config;
 
+import de.aittr.car_rent.security.filter.RateLimitFilter;
 import de.aittr.car_rent.security.filter.TokenFilter;
 import de.aittr.car_rent.security.handler.AuthAccessDeniedHandler;
 import de.aittr.car_rent.security.handler.AuthenticationEntryPointHandler;
 import de.aittr.car_rent.security.service.MyUserDetailsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -27,6 +29,7 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 public class SecurityConfig {
 
     private final TokenFilter tokenFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final MyUserDetailsService myUserDetailsService;
     private final BCryptPasswordEncoder encoder;
 
@@ -58,6 +61,10 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/auth/login", "/auth/register").permitAll()
                         .requestMatchers(HttpMethod.GET, "/auth/confirm/{code}").permitAll()
 
+                        // Actuator
+                        .requestMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                         // Swagger
                         .requestMatchers("/v3/api-docs",
                                 "/v3/api-docs/**",
@@ -69,6 +76,7 @@ public class SecurityConfig {
                         .anyRequest().authenticated())
 
                 .addFilterBefore(tokenFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, TokenFilter.class)
 
                 .exceptionHandling(
                         exception -> exception
@@ -85,6 +93,20 @@ public class SecurityConfig {
                 .build();
     }
 
+    /**
+     * Фильтр ограничения частоты работает только в цепочке безопасности после {@link TokenFilter},
+     * поэтому его автоматическая регистрация в контейнере сервлетов отключена
+     *
+     * @param filter фильтр ограничения частоты запросов
+     * @return отключённая регистрация фильтра
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
@@ -19,6 +19,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 @Tag(name = "Authentication controller")
@@ -113,17 +115,17 @@ public interface AuthController {
     })
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.CREATED)
-    CustomerResponseDto register(@RequestBody
-                                 @io.swagger.v3.oas.annotations.parameters.RequestBody(
-                                         description = "Customer registration details",
-                                         required = true,
-                                         content = @Content(
-                                                 mediaType = "application/json",
-                                                 schema = @Schema(implementation = CustomerRegisterDto.class)
-                                         )
-                                 )
-                                 @Valid
-                                 CustomerRegisterDto registerDto);
+    CompletableFuture<CustomerResponseDto> register(@RequestBody
+                                                    @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                                                            description = "Customer registration details",
+                                                            required = true,
+                                                            content = @Content(
+                                                                    mediaType = "application/json",
+                                                                    schema = @Schema(implementation = CustomerRegisterDto.class)
+                                                            )
+                                                    )
+                                                    @Valid
+                                                    CustomerRegisterDto registerDto);
 
 
     @Operation(
@@ -142,10 +144,15 @@ public interface AuthController {
                             mediaType = APPLICATION_JSON_VALUE,
                             schema = @Schema(implementation = ErrorResponseDto.class)
                     )),
+            @ApiResponse(responseCode = "503", description = "Too many logins at the moment, retry after Retry-After seconds",
+                    content = @Content(
+                            mediaType = APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )),
     })
 
     @PostMapping("/login")
-    TokenResponseDto login(
+    CompletableFuture<TokenResponseDto> login(
             @RequestBody
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Authentication data. Select one of the predefined users or enter the data manually",
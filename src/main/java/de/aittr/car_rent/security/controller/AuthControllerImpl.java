@@ -13,6 +13,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/auth")
 @RequiredArgsConstructor
@@ -22,12 +24,12 @@ public class AuthControllerImpl implements AuthController {
     private final ConfirmationService confirmationService;
 
     @Override
-    public CustomerResponseDto register(CustomerRegisterDto registerDto) {
+    public CompletableFuture<CustomerResponseDto> register(CustomerRegisterDto registerDto) {
         return service.register(registerDto);
     }
 
     @Override
-    public TokenResponseDto login(LoginRequestDto loginDto) {
+    public CompletableFuture<TokenResponseDto> login(LoginRequestDto loginDto) {
         return service.login(loginDto);
     }
 
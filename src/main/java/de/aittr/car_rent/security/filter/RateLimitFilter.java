@@ -0,0 +1,129 @@
+package de.aittr.car_rent.security.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.aittr.car_rent.exception_handling.ErrorResponseDto;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.security.config.RateLimitProperties;
+import de.aittr.car_rent.security.service.RateLimitStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов к дорогим маршрутам (вход, регистрация, создание бронирования).
+ * <p>
+ * Стоит в цепочке после {@link TokenFilter}, поэтому аутентифицированный клиент уже известен.
+ * Для каждого настроенного маршрута запрос забирает токен из корзины маршрута и клиента в {@link RateLimitStore},
+ * при пустой корзине отвечает 429 с Retry-After, не доходя до контроллера и БД.
+ * Отказы считаются метрикой {@code rate.limit.rejected} с тегом {@code route}.
+ * </p>
+ */
+@Component
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final List<LimitedRoute> routes;
+    private final RateLimitStore rateLimitStore;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public RateLimitFilter(RateLimitProperties properties,
+                           RateLimitStore rateLimitStore,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.rateLimitStore = rateLimitStore;
+        this.objectMapper = objectMapper;
+        this.routes = properties.getRoutes().stream()
+                .map(route -> LimitedRoute.of(route, meterRegistry))
+                .toList();
+        routes.forEach(route -> log.info("Rate limit {}: {} requests per {} ms by {}", route.id(), route.capacity(),
+                TimeUnit.NANOSECONDS.toMillis(route.emissionIntervalNanos() * route.capacity()), route.key()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled || routes.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinServletMapping(request);
+        for (LimitedRoute route : routes) {
+            if (!route.method().equalsIgnoreCase(request.getMethod()) || !pathMatcher.match(route.path(), path)) {
+                continue;
+            }
+            long waitNanos = rateLimitStore.tryAcquire(route.id() + '|' + clientKey(route, request),
+                    route.emissionIntervalNanos(), route.toleranceNanos());
+            if (waitNanos > 0) {
+                route.rejected().increment();
+                reject(response, waitNanos);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String clientKey(LimitedRoute route, HttpServletRequest request) {
+        if (route.key() == RateLimitProperties.KeyType.PRINCIPAL) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof AuthInfo authInfo && authInfo.isAuthenticated()) {
+                return "customer:" + authInfo.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        //Retry-After в целых секундах с округлением вверх
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getWriter(),
+                new ErrorResponseDto("Too many requests, please retry in " + retryAfterSeconds + " seconds"));
+    }
+
+    //маршрут с заранее посчитанными параметрами корзины: интервал восполнения токена и допуск на capacity - 1 токен
+    private record LimitedRoute(String id, String method, String path, RateLimitProperties.KeyType key,
+                                long capacity, long emissionIntervalNanos, long toleranceNanos, Counter rejected) {
+
+        static LimitedRoute of(RateLimitProperties.Route route, MeterRegistry meterRegistry) {
+            if (route.getCapacity() < 1 || route.getPeriod() == null || route.getPeriod().isZero()
+                    || route.getPeriod().isNegative()) {
+                throw new IllegalStateException("Rate limit for " + route.getMethod() + " " + route.getPath()
+                        + " needs a positive capacity and period");
+            }
+            String id = route.getMethod().toUpperCase() + " " + route.getPath();
+            long emissionIntervalNanos = route.getPeriod().toNanos() / route.getCapacity();
+            Counter rejected = Counter.builder("rate.limit.rejected")
+                    .description("Requests rejected by the rate limit of a route")
+                    .tag("route", id)
+                    .register(meterRegistry);
+            return new LimitedRoute(id, route.getMethod(), route.getPath(), route.getKey(), route.getCapacity(),
+                    emissionIntervalNanos, emissionIntervalNanos * (route.getCapacity() - 1), rejected);
+        }
+    }
+}
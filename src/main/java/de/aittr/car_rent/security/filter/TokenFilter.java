@@ -15,6 +15,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -31,9 +32,10 @@ public class TokenFilter extends OncePerRequestFilter {
         String token = getTokenFromRequest(request);
 
         try {
-            if (token != null && service.validateAccessToken(token)) {
-                Claims claims = service.getAccessClaims(token);
-                AuthInfo authInfo = service.mapClaimsToAuthInfo(claims);
+            //подпись и срок токена проверяются один раз, claims берутся из результата проверки
+            Optional<Claims> claims = token == null ? Optional.empty() : service.verifyAccessToken(token);
+            if (claims.isPresent()) {
+                AuthInfo authInfo = service.mapClaimsToAuthInfo(claims.get());
                 authInfo.setAuthenticated(true);
                 SecurityContextHolder.getContext().setAuthentication(authInfo);//
             }
@@ -12,54 +12,98 @@ import de.aittr.car_rent.service.interfaces.CustomerService;
 import de.aittr.car_rent.service.interfaces.EmailService;
 import de.aittr.car_rent.service.mapping.CustomerMapper;
 import io.jsonwebtoken.Claims;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class AuthService {
 
-    private final Map<String, String> refreshStorage = new HashMap<>();
-
+    private final RefreshTokenStore refreshTokenStore;
+    private final TokenRevocationService tokenRevocationService;
     private final CustomerService customerService;
     private final TokenService tokenService;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final CustomerMapper customerMapper;
     private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    //продолжения после хеширования (запись в БД, выдача токенов) не занимают потоки пула хеширования
+    private final Executor continuationExecutor;
+
+    public AuthService(RefreshTokenStore refreshTokenStore,
+                       TokenRevocationService tokenRevocationService,
+                       CustomerService customerService,
+                       TokenService tokenService,
+                       BCryptPasswordEncoder passwordEncoder,
+                       PasswordHashingService passwordHashingService,
+                       CustomerMapper customerMapper,
+                       EmailService emailService,
+                       TransactionTemplate transactionTemplate,
+                       @Qualifier("applicationTaskExecutor") Executor continuationExecutor) {
+        this.refreshTokenStore = refreshTokenStore;
+        this.tokenRevocationService = tokenRevocationService;
+        this.customerService = customerService;
+        this.tokenService = tokenService;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.customerMapper = customerMapper;
+        this.emailService = emailService;
+        this.transactionTemplate = transactionTemplate;
+        this.continuationExecutor = continuationExecutor;
+    }
 
-    public CustomerResponseDto register(final CustomerRegisterDto registerDto) {
+    //регистрация из запроса: пароль хешируется в пуле хеширования, поток запроса не ждёт BCrypt
+    public CompletableFuture<CustomerResponseDto> register(final CustomerRegisterDto registerDto) {
         final Role initCustomerRole = CustomerRoleServiceImpl.initCustomerRole;
-        return register(registerDto, initCustomerRole);
+        checkNotRegistered(registerDto);
+        return passwordHashingService.encode(registerDto.password())
+                .thenApplyAsync(encodedPassword -> saveCustomer(registerDto, initCustomerRole, encodedPassword),
+                        continuationExecutor);
     }
 
+    //синхронная регистрация для начальных данных при старте приложения
     public CustomerResponseDto register(final CustomerRegisterDto registerDto, final Role role) {
-        final String normalizedEmail = registerDto.email().toLowerCase().trim();
-        if (customerService.findByEmail(normalizedEmail).isPresent()) {
+        checkNotRegistered(registerDto);
+        return saveCustomer(registerDto, role, passwordEncoder.encode(registerDto.password()));
+    }
+
+    private void checkNotRegistered(final CustomerRegisterDto registerDto) {
+        if (customerService.findByEmail(registerDto.email()).isPresent()) {
             throw new RestApiException("Customer already exists", HttpStatus.CONFLICT);
         }
-        final String encodedPassword = passwordEncoder.encode(registerDto.password());
+    }
+
+    //клиент, код подтверждения и письмо в mail_outbox сохраняются в одной транзакции, SMTP здесь не вызывается
+    private CustomerResponseDto saveCustomer(final CustomerRegisterDto registerDto, final Role role,
+                                             final String encodedPassword) {
         final Customer registredCustomer = new Customer(registerDto.firstName(),
                 registerDto.lastName(),
                 encodedPassword,
-                normalizedEmail,
+                registerDto.email(),
                 role);
 
-        customerService.save(registredCustomer);
-        emailService.sendConfirmationEmail(registredCustomer);
+        transactionTemplate.executeWithoutResult(status -> {
+            customerService.save(registredCustomer);
+            emailService.sendConfirmationEmail(registredCustomer);
+        });
         return customerMapper.toDto(registredCustomer);
     }
 
     //метод первичной проверки пароля и логина и отдачи ему access и refresh токенов
-    public TokenResponseDto login(final LoginRequestDto inboundCustomer) {
-        final String username = inboundCustomer.email().toLowerCase().trim();
+    //пароль проверяется в пуле хеширования, поток запроса освобождается до окончания проверки
+    public CompletableFuture<TokenResponseDto> login(final LoginRequestDto inboundCustomer) {
+        final String username = Customer.normalizeEmail(inboundCustomer.email());
         final Optional<Customer> foundCustomer = customerService.findByEmail(username);
 
         if (foundCustomer.isEmpty()) {
@@ -70,28 +114,54 @@ public class AuthService {
         if(!existingCustomer.isActive()) {
             throw new RestApiException("Your profile is not active. Pleas confirm your email or contact the administrator", HttpStatus.FORBIDDEN);
         }
-        if (passwordEncoder.matches(inboundCustomer.password(), existingCustomer.getPassword())) {
-            final String accessToken = tokenService.generateAccessToken(existingCustomer);
-            final String refreshToken = tokenService.generateRefreshToken(existingCustomer);
-            refreshStorage.put(username, refreshToken);
-            return new TokenResponseDto(accessToken, refreshToken);
-        } else {
-            throw new RestApiException("Password or email incorrect", HttpStatus.FORBIDDEN);
-        }
+        return passwordHashingService.matches(inboundCustomer.password(), existingCustomer.getPassword())
+                .thenApplyAsync(matches -> {
+                    if (!matches) {
+                        throw new RestApiException("Password or email incorrect", HttpStatus.FORBIDDEN);
+                    }
+                    final String accessToken = tokenService.generateAccessToken(existingCustomer);
+                    final String refreshToken = tokenService.generateRefreshToken(existingCustomer);
+                    refreshTokenStore.issue(username, refreshToken, getRefreshExpiration(refreshToken));
+                    return new TokenResponseDto(accessToken, refreshToken);
+                }, continuationExecutor);
     }
 
     //метод выдачи нового access-токена (когда он истек) на основании refresh токена
+    //refresh-токен ротируется: вместе с access-токеном выдаётся новый refresh-токен, старый становится недействительным
     public TokenResponseDto getNewAccessToken(String inboundRefreshToken) {
 
         Claims refreshClaims = tokenService.getRafreshClaims(inboundRefreshToken);
         String username = refreshClaims.getSubject();
-        String foundRefreshToken = refreshStorage.get(username);
-        if (StringUtils.isNoneBlank(foundRefreshToken) && foundRefreshToken.equals(inboundRefreshToken)) {
-            UserDetails foundUser = customerService.findByEmailOrThrow(username);
-            String accessToken = tokenService.generateAccessToken(foundUser);
-            return new TokenResponseDto(accessToken);
-        } else {
+        if (StringUtils.isBlank(username)) {
+            return new TokenResponseDto(null);
+        }
+        Customer foundUser = customerService.findByEmailOrThrow(username);
+        //деактивированный клиент не получает новых токенов, даже если его refresh-токен ещё действует
+        if (!foundUser.isActive()) {
+            log.warn("Refresh token presented for inactive customer {}, its tokens are revoked", username);
+            refreshTokenStore.revokeAll(username);
             return new TokenResponseDto(null);
         }
+        String newRefreshToken = tokenService.generateRefreshToken(foundUser);
+        RefreshTokenStore.RotationResult result = refreshTokenStore.rotate(
+                username, inboundRefreshToken, newRefreshToken, getRefreshExpiration(newRefreshToken));
+        switch (result) {
+            case ROTATED -> {
+                String accessToken = tokenService.generateAccessToken(foundUser);
+                return new TokenResponseDto(accessToken, newRefreshToken);
+            }
+            case REUSED -> {
+                log.warn("Reuse of a rotated refresh token detected for customer {}, all tokens are revoked", username);
+                tokenRevocationService.revokeAll(username);
+                return new TokenResponseDto(null);
+            }
+            default -> {
+                return new TokenResponseDto(null);
+            }
+        }
+    }
+
+    private Instant getRefreshExpiration(String refreshToken) {
+        return tokenService.getRafreshClaims(refreshToken).getExpiration().toInstant();
     }
 }
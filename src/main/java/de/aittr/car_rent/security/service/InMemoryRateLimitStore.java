@@ -0,0 +1,77 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.security.config.RateLimitProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзины ограничения частоты запросов в памяти одного экземпляра приложения.
+ * Время корзины меняется compare-and-set, поэтому параллельные запросы одного клиента не блокируют друг друга.
+ * При заполнении {@code max-keys} удаляются только полные корзины: неполную корзину нельзя сбросить потоком
+ * запросов с новых ключей. Если места нет и после этого, запросы новых клиентов отклоняются до восполнения корзин
+ */
+@Component
+@ConditionalOnProperty(name = "security.rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final int maxKeys;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public InMemoryRateLimitStore(RateLimitProperties properties) {
+        this(properties.getMaxKeys());
+    }
+
+    InMemoryRateLimitStore(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public long tryAcquire(String key, long emissionIntervalNanos, long toleranceNanos) {
+        AtomicLong bucket = bucket(key);
+        if (bucket == null) {
+            return emissionIntervalNanos;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = bucket.get();
+            //сравнение через разность, так как System.nanoTime может переполняться
+            long base = arrival - now > 0 ? arrival : now;
+            long ahead = base - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(arrival, base + emissionIntervalNanos)) {
+                return 0;
+            }
+            now = System.nanoTime();
+        }
+    }
+
+    private AtomicLong bucket(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        long now = System.nanoTime();
+        if (buckets.size() >= maxKeys) {
+            evictFull(now);
+            if (buckets.size() >= maxKeys) {
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    //полные корзины (время прихода в прошлом) равнозначны отсутствующим и удаляются без потери ограничения
+    private void evictFull(long now) {
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
@@ -0,0 +1,98 @@
+package de.aittr.car_rent.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище refresh-токенов в памяти приложения (для одного экземпляра приложения).
+ * <p>
+ * Записи неизменяемые, ротация выполняется сравнением с заменой ({@link ConcurrentHashMap#replace(Object, Object, Object)}),
+ * поэтому из параллельных обновлений одного токена успешно только одно. Истёкшие записи удаляются,
+ * когда число записей достигает предела.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "security.refresh-token-store.type", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+
+    private final int maxSize;
+    private final Map<String, Entry> entriesByHash = new ConcurrentHashMap<>();
+    private final Map<String, String> activeHashByEmail = new ConcurrentHashMap<>();
+
+    public InMemoryRefreshTokenStore(@Value("${security.refresh-token-store.max-size:100000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void issue(String email, String token, Instant expiresAt) {
+        String tokenHash = TokenHashes.sha256(token);
+        if (entriesByHash.size() >= maxSize) {
+            evict();
+        }
+        entriesByHash.put(tokenHash, new Entry(email, expiresAt, false));
+        String previousHash = activeHashByEmail.put(email, tokenHash);
+        if (previousHash != null && !previousHash.equals(tokenHash)) {
+            entriesByHash.remove(previousHash);
+        }
+    }
+
+    @Override
+    public RotationResult rotate(String email, String presentedToken, String newToken, Instant newExpiresAt) {
+        String presentedHash = TokenHashes.sha256(presentedToken);
+        Entry entry = entriesByHash.get(presentedHash);
+        if (entry == null || !entry.email().equals(email) || !entry.expiresAt().isAfter(Instant.now())) {
+            return RotationResult.INVALID;
+        }
+        //уже использованный токен или проигранная параллельная ротация того же токена - признак кражи
+        if (entry.rotated() || !entriesByHash.replace(presentedHash, entry, entry.asRotated())) {
+            revokeAll(email);
+            return RotationResult.REUSED;
+        }
+        activeHashByEmail.remove(email, presentedHash);
+        issue(email, newToken, newExpiresAt);
+        return RotationResult.ROTATED;
+    }
+
+    @Override
+    public void revokeAll(String email) {
+        String activeHash = activeHashByEmail.remove(email);
+        if (activeHash != null) {
+            entriesByHash.remove(activeHash);
+        }
+    }
+
+    //удаляем истёкшие записи, а если их недостаточно - использованные и затем произвольные
+    private void evict() {
+        Instant now = Instant.now();
+        entriesByHash.entrySet().removeIf(entry -> !entry.getValue().expiresAt().isAfter(now));
+        if (entriesByHash.size() < maxSize) {
+            return;
+        }
+        entriesByHash.values().removeIf(Entry::rotated);
+        int toRemove = entriesByHash.size() - maxSize + Math.max(1, maxSize / 10);
+        if (toRemove > 0) {
+            log.warn("Refresh token store is full, {} active refresh tokens will be evicted", toRemove);
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = entriesByHash.entrySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            Map.Entry<String, Entry> evicted = iterator.next();
+            iterator.remove();
+            activeHashByEmail.remove(evicted.getValue().email(), evicted.getKey());
+        }
+    }
+
+    private record Entry(String email, Instant expiresAt, boolean rotated) {
+
+        Entry asRotated() {
+            return new Entry(email, expiresAt, true);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.repository.RateLimitBucketRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Корзины ограничения частоты запросов в БД для нескольких экземпляров приложения.
+ * Токен забирается одним условным update; второй запрос нужен только для новой корзины или при отказе.
+ * Время хранится в миллисекундах по часам экземпляров, поэтому часы экземпляров должны быть синхронизированы.
+ * Новая корзина создаётся запросом {@code insert ignore}, поэтому хранилище работает только с MySQL
+ */
+@Component
+@ConditionalOnProperty(name = "security.rate-limit.store", havingValue = "jpa")
+@RequiredArgsConstructor
+@Slf4j
+public class JpaRateLimitStore implements RateLimitStore {
+
+    private final RateLimitBucketRepository rateLimitBucketRepository;
+
+    @Override
+    @Transactional
+    public long tryAcquire(String key, long emissionIntervalNanos, long toleranceNanos) {
+        long now = System.currentTimeMillis();
+        long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(emissionIntervalNanos));
+        long tolerance = TimeUnit.NANOSECONDS.toMillis(toleranceNanos);
+        if (rateLimitBucketRepository.acquire(key, now, interval, tolerance) == 1
+                || rateLimitBucketRepository.insertIfAbsent(key, now + interval) == 1) {
+            return 0;
+        }
+        //корзину мог создать параллельный запрос между update и insert
+        if (rateLimitBucketRepository.acquire(key, now, interval, tolerance) == 1) {
+            return 0;
+        }
+        return rateLimitBucketRepository.findById(key)
+                .map(bucket -> TimeUnit.MILLISECONDS.toNanos(Math.max(1, bucket.getArrivalAt() - now - tolerance)))
+                .orElse(0L);
+    }
+
+    @Scheduled(fixedDelayString = "${security.rate-limit.cleanup-delay-millis:600000}")
+    @Transactional
+    public void deleteFullBuckets() {
+        int deleted = rateLimitBucketRepository.deleteFull(System.currentTimeMillis());
+        log.debug("Deleted {} full rate limit buckets", deleted);
+    }
+}
@@ -0,0 +1,61 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.domain.entity.RefreshToken;
+import de.aittr.car_rent.repository.RefreshTokenRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Хранилище refresh-токенов в БД для нескольких экземпляров приложения.
+ * Ротация выполняется условным update, поэтому из параллельных обновлений одного токена
+ * (в том числе на разных экземплярах) успешно только одно
+ */
+@Service
+@ConditionalOnProperty(name = "security.refresh-token-store.type", havingValue = "jpa")
+@RequiredArgsConstructor
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    @Override
+    @Transactional
+    public void issue(String email, String token, Instant expiresAt) {
+        refreshTokenRepository.deleteExpiredByEmail(email, LocalDateTime.now());
+        refreshTokenRepository.deleteActiveByEmail(email);
+        refreshTokenRepository.save(new RefreshToken(
+                TokenHashes.sha256(token),
+                email,
+                LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+    }
+
+    @Override
+    @Transactional
+    public RotationResult rotate(String email, String presentedToken, String newToken, Instant newExpiresAt) {
+        String presentedHash = TokenHashes.sha256(presentedToken);
+        if (refreshTokenRepository.markRotated(presentedHash, email, LocalDateTime.now()) == 1) {
+            issue(email, newToken, newExpiresAt);
+            return RotationResult.ROTATED;
+        }
+        boolean reused = refreshTokenRepository.findById(presentedHash)
+                .filter(refreshToken -> refreshToken.getEmail().equals(email))
+                .filter(RefreshToken::isRotated)
+                .isPresent();
+        if (reused) {
+            refreshTokenRepository.deleteActiveByEmail(email);
+            return RotationResult.REUSED;
+        }
+        return RotationResult.INVALID;
+    }
+
+    @Override
+    @Transactional
+    public void revokeAll(String email) {
+        refreshTokenRepository.deleteActiveByEmail(email);
+    }
+}
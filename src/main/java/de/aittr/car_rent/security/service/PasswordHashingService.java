@@ -0,0 +1,150 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.exception_handling.exceptions.RetryLaterException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Хеширование и проверка паролей в отдельном ограниченном пуле потоков.
+ * <p>
+ * BCrypt намеренно медленный, поэтому при всплеске входов он не выполняется в потоках Tomcat:
+ * одновременно считается не больше {@code concurrency} хешей, остальные ждут в очереди ограниченной длины.
+ * Если очередь заполнена или задача прождала в ней дольше {@code queue-timeout-millis}, запрос сразу
+ * отклоняется с 503 и Retry-After, а потоки Tomcat остаются свободными для остальных запросов.
+ * Метрики: {@code password.hashing} (время хеширования, тег {@code operation}),
+ * {@code password.hashing.queue.wait}, {@code password.hashing.queue.size}, {@code password.hashing.active}
+ * и {@code password.hashing.rejected} (тег {@code reason}).
+ * </p>
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeoutNanos;
+    private final long retryAfterSeconds;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedQueueTimeout;
+
+    public PasswordHashingService(
+            BCryptPasswordEncoder passwordEncoder,
+            @Value("${security.password-hashing.concurrency:4}") int concurrency,
+            @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password-hashing.queue-timeout-millis:2000}") long queueTimeoutMillis,
+            @Value("${security.password-hashing.retry-after-seconds:1}") long retryAfterSeconds,
+            MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = hashingTimer("encode", meterRegistry);
+        this.matchesTimer = hashingTimer("matches", meterRegistry);
+        this.queueWaitTimer = Timer.builder("password.hashing.queue.wait")
+                .description("Time password hashing tasks wait for a free hashing thread")
+                .register(meterRegistry);
+        this.rejectedQueueFull = rejectedCounter("queue-full", meterRegistry);
+        this.rejectedQueueTimeout = rejectedCounter("queue-timeout", meterRegistry);
+        Gauge.builder("password.hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a free hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks being executed")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Хеширует пароль в пуле хеширования
+     *
+     * @param rawPassword пароль
+     * @return хеш пароля или RetryLaterException, если пул перегружен
+     */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Сравнивает пароль с хешем в пуле хеширования
+     *
+     * @param rawPassword     пароль
+     * @param encodedPassword хеш пароля
+     * @return совпадает ли пароль или RetryLaterException, если пул перегружен
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> hashing) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                queueWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+                //ответ на такой запрос уже не нужен быстро, хеш не считается, чтобы не задерживать следующие задачи
+                if (waited > queueTimeoutNanos) {
+                    rejectedQueueTimeout.increment();
+                    result.completeExceptionally(busy());
+                    return;
+                }
+                try {
+                    result.complete(timer.record(hashing));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            log.warn("Password hashing queue is full, request rejected");
+            result.completeExceptionally(busy());
+        }
+        return result;
+    }
+
+    private RetryLaterException busy() {
+        return new RetryLaterException("Too many login attempts at the moment, please retry later",
+                HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds);
+    }
+
+    private static Timer hashingTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("password.hashing")
+                .description("Duration of password hashing")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("password.hashing.rejected")
+                .description("Password hashing requests rejected because the hashing pool is saturated")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,23 @@
+package de.aittr.car_rent.security.service;
+
+/**
+ * Хранилище корзин ограничения частоты запросов.
+ * <p>
+ * Корзина хранится как теоретическое время прихода следующего запроса (GCRA):
+ * запрос пропускается, если это время опережает текущее не больше чем на допуск корзины,
+ * и сдвигает его на интервал между запросами. Так корзина токенов хранится одним числом
+ * и обновляется одной атомарной операцией без блокировок.
+ * </p>
+ */
+public interface RateLimitStore {
+
+    /**
+     * Забирает один токен из корзины
+     *
+     * @param key                   ключ корзины (маршрут и клиент)
+     * @param emissionIntervalNanos интервал восполнения одного токена
+     * @param toleranceNanos        допуск: сколько интервалов запросы могут опережать равномерный поток
+     * @return 0, если запрос пропущен, иначе через сколько наносекунд освободится токен
+     */
+    long tryAcquire(String key, long emissionIntervalNanos, long toleranceNanos);
+}
@@ -0,0 +1,52 @@
+package de.aittr.car_rent.security.service;
+
+import java.time.Instant;
+
+/**
+ * Хранилище refresh-токенов.
+ * <p>
+ * У клиента один действующий refresh-токен: новый вход заменяет предыдущий токен.
+ * При обновлении access-токена refresh-токен ротируется: предъявленный токен помечается использованным
+ * и остаётся в хранилище до истечения срока, чтобы повторное предъявление можно было распознать как кражу.
+ * Хранятся только хэши токенов.
+ * </p>
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * Сохраняет новый действующий refresh-токен клиента вместо предыдущего
+     *
+     * @param email     email клиента
+     * @param token     refresh-токен
+     * @param expiresAt время истечения токена
+     */
+    void issue(String email, String token, Instant expiresAt);
+
+    /**
+     * Атомарно заменяет предъявленный refresh-токен новым.
+     * Если предъявлен уже использованный токен, все действующие токены клиента отзываются
+     *
+     * @param email          email из предъявленного токена
+     * @param presentedToken предъявленный refresh-токен
+     * @param newToken       новый refresh-токен
+     * @param newExpiresAt   время истечения нового токена
+     * @return результат ротации
+     */
+    RotationResult rotate(String email, String presentedToken, String newToken, Instant newExpiresAt);
+
+    /**
+     * Отзывает действующий refresh-токен клиента
+     *
+     * @param email email клиента
+     */
+    void revokeAll(String email);
+
+    enum RotationResult {
+        //токен заменён новым
+        ROTATED,
+        //токен неизвестен или истёк
+        INVALID,
+        //токен уже был использован, токены клиента отозваны
+        REUSED
+    }
+}
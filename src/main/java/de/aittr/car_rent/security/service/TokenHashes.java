@@ -0,0 +1,30 @@
+package de.aittr.car_rent.security.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Хэширование токенов для хранения: сами токены в памяти и в БД не хранятся
+ */
+public final class TokenHashes {
+
+    private TokenHashes() {
+    }
+
+    /**
+     * Возвращает SHA-256 токена в Base64 (44 символа)
+     *
+     * @param token токен
+     * @return хэш токена
+     */
+    public static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
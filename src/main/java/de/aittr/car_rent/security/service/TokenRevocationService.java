@@ -0,0 +1,77 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.domain.entity.Customer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр отозванных access-токенов.
+ * <p>
+ * Роль и id клиента берутся из подписанного access-токена без обращения к БД, поэтому после смены роли,
+ * email или деактивации клиента его ранее выданные токены нужно отозвать. Для каждого email хранится момент,
+ * до которого выданные токены недействительны. Запись удаляется, когда истекли все токены, выданные до неё.
+ * Реестр отражает отзывы только текущего экземпляра приложения.
+ * </p>
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    //время жизни access-токена, см. TokenService#generateAccessToken
+    private static final Duration ACCESS_TOKEN_LIFETIME = Duration.ofDays(1);
+
+    private final Map<String, Instant> revokedBeforeByEmail = new ConcurrentHashMap<>();
+
+    /**
+     * Отзывает все access-токены клиента, выданные до текущего момента
+     *
+     * @param email email клиента
+     */
+    public void revokeAll(String email) {
+        if (email == null) {
+            return;
+        }
+        // iat в токене хранится с точностью до секунды, поэтому граница округляется вверх:
+        // токены, выданные в ту же секунду до отзыва, тоже становятся недействительными
+        Instant revokedBefore = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        revokedBeforeByEmail.merge(normalize(email), revokedBefore,
+                (previous, next) -> previous.isAfter(next) ? previous : next);
+        log.info("Access tokens of customer {} issued before {} are revoked", email, revokedBefore);
+        removeExpired();
+    }
+
+    /**
+     * Проверяет, отозван ли access-токен.
+     * Токен без времени выдачи считается отозванным, если для email есть запись об отзыве
+     *
+     * @param email    email из токена
+     * @param issuedAt время выдачи токена
+     * @return true, если токен отозван
+     */
+    public boolean isRevoked(String email, Date issuedAt) {
+        if (revokedBeforeByEmail.isEmpty() || email == null) {
+            return false;
+        }
+        Instant revokedBefore = revokedBeforeByEmail.get(normalize(email));
+        if (revokedBefore == null) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.toInstant().isBefore(revokedBefore);
+    }
+
+    private void removeExpired() {
+        Instant expiredBefore = Instant.now().minus(ACCESS_TOKEN_LIFETIME);
+        revokedBeforeByEmail.values().removeIf(revokedBefore -> revokedBefore.isBefore(expiredBefore));
+    }
+
+    private String normalize(String email) {
+        return Customer.normalizeEmail(email);
+    }
+}
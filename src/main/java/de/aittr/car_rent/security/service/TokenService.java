@@ -6,6 +6,8 @@ import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
 import de.aittr.car_rent.security.AuthInfo;
 import de.aittr.car_rent.service.interfaces.CustomerService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -20,22 +22,39 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class TokenService {
 
+    //claims access-токена, по которым клиент аутентифицируется без обращения к БД
+    public static final String ROLE_CLAIM = "role";
+    public static final String CUSTOMER_ID_CLAIM = "customerId";
+
     private final SecretKey accessKey;
     private final SecretKey refreshKey;
+    //парсеры потокобезопасны, поэтому создаются один раз
+    private final JwtParser accessParser;
+    private final JwtParser refreshParser;
     private final CustomerService customerService;
+    private final TokenRevocationService tokenRevocationService;
+    private final VerifiedClaimsCache verifiedClaimsCache;
 
     public TokenService(
             @Value("${key.access}") String accessPhrase,
             @Value("${key.refresh}") String refreshPhrase,
-            CustomerService customerService
+            CustomerService customerService,
+            TokenRevocationService tokenRevocationService,
+            VerifiedClaimsCache verifiedClaimsCache
     ) {
         this.accessKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(accessPhrase));
         this.refreshKey = Keys.hmacShaKeyFor(Decoders.BASE64URL.decode(refreshPhrase));
+        this.accessParser = Jwts.parser().verifyWith(accessKey).build();
+        this.refreshParser = Jwts.parser().verifyWith(refreshKey).build();
         this.customerService = customerService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.verifiedClaimsCache = verifiedClaimsCache;
     }
 
     //access - 24 hour, refresh - 1 week
@@ -45,9 +64,16 @@ public class TokenService {
         Instant expiration = currentDay.plusDays(1).atZone(ZoneId.systemDefault()).toInstant();
         Date expirationDate = Date.from(expiration);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .subject(user.getUsername())
-                .expiration(expirationDate)
+                .issuedAt(new Date())
+                .expiration(expirationDate);
+        //роль и id клиента в токене избавляют от запроса к БД при каждом аутентифицированном запросе
+        if (user instanceof Customer customer && customer.getRole() != null) {
+            builder.claim(ROLE_CLAIM, customer.getRole().getTitle())
+                    .claim(CUSTOMER_ID_CLAIM, customer.getId());
+        }
+        return builder
                 .signWith(accessKey)
                 .compact();
     }
@@ -57,27 +83,47 @@ public class TokenService {
         Instant expiration = currentDay.plusWeeks(1).atZone(ZoneId.systemDefault()).toInstant();
         Date expirationDate = Date.from(expiration);
 
+        //уникальный id нужен, чтобы токены, выданные в одну секунду, различались при ротации
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(user.getUsername())
                 .expiration(expirationDate)
                 .signWith(refreshKey)
                 .compact();
     }
 
+    /**
+     * Проверяет подпись и срок действия access-токена и возвращает его claims.
+     * Claims уже проверенных токенов берутся из кэша до истечения срока токена
+     *
+     * @param accessToken access-токен
+     * @return claims токена или пустой Optional, если токен недействителен
+     */
+    public Optional<Claims> verifyAccessToken(String accessToken) {
+        Claims cachedClaims = verifiedClaimsCache.get(accessToken);
+        if (cachedClaims != null) {
+            return Optional.of(cachedClaims);
+        }
+        try {
+            Claims claims = getAccessClaims(accessToken);
+            verifiedClaimsCache.put(accessToken, claims);
+            return Optional.of(claims);
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
     public boolean validateAccessToken(String accessToken) {
-        return validateToken(accessToken, accessKey);
+        return verifyAccessToken(accessToken).isPresent();
     }
 
     public boolean validateRefreshToken(String refreshToken) {
-        return validateToken(refreshToken, refreshKey);
+        return validateToken(refreshToken, refreshParser);
     }
 
-    private boolean validateToken(String token, SecretKey key) {
+    private boolean validateToken(String token, JwtParser parser) {
         try {
-            Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(token);
+            parser.parseSignedClaims(token);
             return true;
         } catch (Exception e) {
             return false;
@@ -86,32 +132,37 @@ public class TokenService {
 
     //методы извлечения инфо из токенов
     public Claims getAccessClaims(String accessToken) {
-        return getClaims(accessToken, accessKey);
+        return getClaims(accessToken, accessParser);
     }
 
     public Claims getRafreshClaims(String refreshToken) {
-        return getClaims(refreshToken, refreshKey);
+        return getClaims(refreshToken, refreshParser);
     }
 
-    private Claims getClaims(String token, SecretKey key) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
+    private Claims getClaims(String token, JwtParser parser) {
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
     //метод, который переделывает объект Claims в объект AuthInfo
+    //роль и id клиента берутся из подписанного токена, к БД обращаемся только для токенов, выданных без этих claims
     public AuthInfo mapClaimsToAuthInfo(Claims claims) {
         final String username = claims.getSubject();
 
-        if (StringUtils.isNoneBlank(username)) {
-            Role customerRole = customerService.findByEmail(username)
-                    .map(Customer::getRole)
-                    .orElseThrow(() -> new RestApiException("User not authenticated!", HttpStatus.FORBIDDEN));
-            return new AuthInfo(username, customerRole);
-        } else {
+        if (StringUtils.isBlank(username)) {
             throw new RestApiException("User not authenticated!", HttpStatus.FORBIDDEN);
         }
+        if (tokenRevocationService.isRevoked(username, claims.getIssuedAt())) {
+            throw new RestApiException("Token has been revoked", HttpStatus.FORBIDDEN);
+        }
+        String roleTitle = claims.get(ROLE_CLAIM, String.class);
+        Long customerId = claims.get(CUSTOMER_ID_CLAIM, Long.class);
+        if (StringUtils.isNotBlank(roleTitle) && customerId != null) {
+            return new AuthInfo(customerId, username, new Role(roleTitle));
+        }
+        Customer customer = customerService.findByEmail(username)
+                .orElseThrow(() -> new RestApiException("User not authenticated!", HttpStatus.FORBIDDEN));
+        return new AuthInfo(customer.getId(), username, customer.getRole());
     }
 }
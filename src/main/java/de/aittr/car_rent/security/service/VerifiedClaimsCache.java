@@ -0,0 +1,111 @@
+package de.aittr.car_rent.security.service;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограниченный по размеру кэш claims уже проверенных access-токенов.
+ * <p>
+ * Ключ - SHA-256 токена, поэтому сами токены в памяти не хранятся. Запись живёт до истечения срока токена,
+ * так что повторные запросы с тем же токеном не разбирают его и не проверяют подпись заново.
+ * Попадания и промахи считаются метрикой {@code jwt.claims.cache} с тегом {@code result}.
+ * </p>
+ */
+@Component
+public class VerifiedClaimsCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final Map<String, CachedClaims> claimsByTokenHash = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedClaimsCache(
+            @Value("${security.jwt.claims-cache.enabled:true}") boolean enabled,
+            @Value("${security.jwt.claims-cache.max-size:10000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled && maxSize > 0;
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt.claims.cache")
+                .description("Lookups of verified access token claims")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jwt.claims.cache")
+                .description("Lookups of verified access token claims")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("jwt.claims.cache.size", Tags.empty(), claimsByTokenHash);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Возвращает claims проверенного токена, если они есть в кэше и срок токена не истёк
+     *
+     * @param token access-токен
+     * @return claims или null
+     */
+    public Claims get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        String tokenHash = TokenHashes.sha256(token);
+        CachedClaims cached = claimsByTokenHash.get(tokenHash);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (!cached.expiresAt().isAfter(Instant.now())) {
+            claimsByTokenHash.remove(tokenHash, cached);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.claims();
+    }
+
+    /**
+     * Запоминает claims токена, подпись которого успешно проверена.
+     * Токены без срока действия не кэшируются
+     *
+     * @param token  access-токен
+     * @param claims claims токена
+     */
+    public void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (!enabled || expiration == null) {
+            return;
+        }
+        if (claimsByTokenHash.size() >= maxSize) {
+            evict();
+        }
+        claimsByTokenHash.put(TokenHashes.sha256(token), new CachedClaims(claims, expiration.toInstant()));
+    }
+
+    //сначала удаляем истёкшие записи, если их недостаточно - произвольную десятую часть кэша
+    private void evict() {
+        Instant now = Instant.now();
+        claimsByTokenHash.values().removeIf(cached -> !cached.expiresAt().isAfter(now));
+        int toRemove = claimsByTokenHash.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<String> iterator = claimsByTokenHash.keySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private record CachedClaims(Claims claims, Instant expiresAt) {
+    }
+}
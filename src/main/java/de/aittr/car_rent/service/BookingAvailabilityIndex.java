@@ -0,0 +1,311 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
+import de.aittr.car_rent.domain.entity.Booking;
+import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс занятости авто в памяти приложения.
+ * <p>
+ * Для каждого авто хранится отсортированный по началу аренды массив периодов бронирований
+ * в статусах {@link BookingStatus#BLOCKING_STATUSES} (в минутах от epoch) и префиксный максимум окончаний,
+ * поэтому свободный период определяется бинарным поиском за O(log n) без обращения к БД.
+ * Массивы неизменяемые и заменяются целиком, чтение выполняется без блокировок.
+ * </p>
+ * <p>
+ * Индекс заполняется из БД при старте приложения и обновляется после коммита транзакций,
+ * в которых создаются, продлеваются, отменяются или закрываются бронирования.
+ * Найденное индексом пересечение подтверждается запросом к БД: бронирование могли отменить, закрыть
+ * или завершить на другом экземпляре приложения. Если БД пересечения не находит, периоды авто
+ * перечитываются из БД. Свободный по индексу период при бронировании проверяется запросом к БД под блокировкой авто.
+ * </p>
+ */
+@Service
+@Slf4j
+public class BookingAvailabilityIndex {
+
+    private final BookingRepository bookingRepository;
+    private final boolean enabled;
+    private final boolean consistencyCheck;
+
+    private final Map<Long, CarIntervals> intervalsByCarId = new ConcurrentHashMap<>();
+    private volatile boolean warmedUp;
+
+    public BookingAvailabilityIndex(
+            BookingRepository bookingRepository,
+            @Value("${booking.availability-index.enabled:true}") boolean enabled,
+            @Value("${booking.availability-index.consistency-check:false}") boolean consistencyCheck) {
+        this.bookingRepository = bookingRepository;
+        this.enabled = enabled;
+        this.consistencyCheck = consistencyCheck;
+    }
+
+    /**
+     * Заполняет индекс периодами всех занимающих авто бронирований из БД
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            log.info("Booking availability index is disabled");
+            return;
+        }
+        List<BookingIntervalDto> intervals =
+                bookingRepository.findAllIntervalsByBookingStatusIn(BookingStatus.BLOCKING_STATUSES);
+        intervals.forEach(interval -> put(interval.carId(), interval.id(),
+                interval.rentalStartDate(), interval.rentalEndDate()));
+        warmedUp = true;
+        log.info("Booking availability index warmed up with {} bookings of {} cars",
+                intervals.size(), intervalsByCarId.size());
+    }
+
+    /**
+     * @return true, если индексом можно пользоваться вместо запросов к БД
+     */
+    public boolean isReady() {
+        return enabled && warmedUp;
+    }
+
+    /**
+     * Проверяет, есть ли у авто бронирование, пересекающееся с периодом [from, to).
+     * Найденное пересечение (а в режиме проверки согласованности - любой ответ) сверяется с БД,
+     * при расхождении используется ответ БД
+     *
+     * @param carId id авто
+     * @param from  начало периода
+     * @param to    окончание периода
+     * @return true, если период пересекается хотя бы с одним бронированием авто
+     */
+    public boolean hasOverlap(Long carId, LocalDateTime from, LocalDateTime to) {
+        CarIntervals intervals = intervalsByCarId.getOrDefault(carId, CarIntervals.EMPTY);
+        boolean overlap = intervals.overlaps(floorMinutes(from), ceilMinutes(to));
+        if (overlap || consistencyCheck) {
+            boolean dbOverlap = bookingRepository.existsOverlappingBooking(
+                    carId, from, to, BookingStatus.BLOCKING_STATUSES);
+            if (dbOverlap != overlap) {
+                if (overlap) {
+                    //бронирование освободило авто вне этого экземпляра, периоды авто перечитываются
+                    log.debug("Booking availability index is stale for car {}, reloading its bookings", carId);
+                    reload(carId);
+                } else {
+                    log.warn("Booking availability index is inconsistent for car {} and period [{}, {}): index - {}, database - {}",
+                            carId, from, to, overlap, dbOverlap);
+                }
+                return dbOverlap;
+            }
+        }
+        return overlap;
+    }
+
+    /**
+     * Обновляет индекс после коммита текущей транзакции: бронирование в статусе, занимающем авто,
+     * добавляется (или обновляется), в остальных статусах - удаляется из индекса
+     *
+     * @param booking сохранённое бронирование
+     */
+    public void updateAfterCommit(Booking booking) {
+        Long carId = booking.getCar().getId();
+        Long bookingId = booking.getId();
+        LocalDateTime start = booking.getRentalStartDate();
+        LocalDateTime end = booking.getRentalEndDate();
+        boolean blocking = BookingStatus.BLOCKING_STATUSES.contains(booking.getBookingStatus());
+        TransactionHooks.afterCommit(() -> {
+            if (blocking) {
+                put(carId, bookingId, start, end);
+            } else {
+                remove(carId, bookingId);
+            }
+        });
+    }
+
+    /**
+     * Удаляет бронирования из индекса после коммита текущей транзакции
+     *
+     * @param intervals периоды бронирований, переведённых в статус, не занимающий авто
+     */
+    public void removeAfterCommit(Collection<BookingIntervalDto> intervals) {
+        List<BookingIntervalDto> removed = List.copyOf(intervals);
+        TransactionHooks.afterCommit(() -> removed.forEach(interval -> remove(interval.carId(), interval.id())));
+    }
+
+    /**
+     * Сравнивает содержимое индекса с БД
+     *
+     * @return id авто, для которых индекс расходится с БД
+     */
+    public Set<Long> findInconsistentCarIds() {
+        Map<Long, CarIntervals> expected = new HashMap<>();
+        bookingRepository.findAllIntervalsByBookingStatusIn(BookingStatus.BLOCKING_STATUSES)
+                .forEach(interval -> expected.merge(
+                        interval.carId(),
+                        CarIntervals.EMPTY.with(interval.id(),
+                                floorMinutes(interval.rentalStartDate()), ceilMinutes(interval.rentalEndDate())),
+                        CarIntervals::merge));
+        Set<Long> carIds = new HashSet<>(expected.keySet());
+        carIds.addAll(intervalsByCarId.keySet());
+        Set<Long> inconsistent = new TreeSet<>();
+        for (Long carId : carIds) {
+            CarIntervals indexed = intervalsByCarId.getOrDefault(carId, CarIntervals.EMPTY);
+            CarIntervals actual = expected.getOrDefault(carId, CarIntervals.EMPTY);
+            if (!indexed.sameIntervals(actual)) {
+                inconsistent.add(carId);
+            }
+        }
+        if (!inconsistent.isEmpty()) {
+            log.warn("Booking availability index is inconsistent with the database for cars {}", inconsistent);
+        }
+        return inconsistent;
+    }
+
+    private void reload(Long carId) {
+        CarIntervals actual = CarIntervals.EMPTY;
+        for (BookingIntervalDto interval :
+                bookingRepository.findIntervalsByCarIdAndBookingStatusIn(carId, BookingStatus.BLOCKING_STATUSES)) {
+            actual = actual.with(interval.id(), floorMinutes(interval.rentalStartDate()), ceilMinutes(interval.rentalEndDate()));
+        }
+        if (actual.isEmpty()) {
+            intervalsByCarId.remove(carId);
+        } else {
+            intervalsByCarId.put(carId, actual);
+        }
+    }
+
+    private void put(Long carId, Long bookingId, LocalDateTime start, LocalDateTime end) {
+        if (carId == null || bookingId == null || start == null || end == null) {
+            return;
+        }
+        intervalsByCarId.compute(carId, (id, intervals) ->
+                (intervals == null ? CarIntervals.EMPTY : intervals)
+                        .with(bookingId, floorMinutes(start), ceilMinutes(end)));
+    }
+
+    private void remove(Long carId, Long bookingId) {
+        if (carId == null || bookingId == null) {
+            return;
+        }
+        intervalsByCarId.computeIfPresent(carId, (id, intervals) -> {
+            CarIntervals rest = intervals.without(bookingId);
+            return rest.isEmpty() ? null : rest;
+        });
+    }
+
+    //начало периода округляется вниз, окончание - вверх: индекс может только расширить занятый период
+    private static long floorMinutes(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static long ceilMinutes(LocalDateTime dateTime) {
+        long seconds = dateTime.toEpochSecond(ZoneOffset.UTC) + (dateTime.getNano() > 0 ? 1 : 0);
+        return Math.floorDiv(seconds + 59, 60);
+    }
+
+    /**
+     * Неизменяемый набор периодов бронирований одного авто, отсортированный по началу аренды
+     */
+    private static final class CarIntervals {
+
+        private static final CarIntervals EMPTY = new CarIntervals(new long[0], new long[0], new long[0]);
+
+        private final long[] bookingIds;
+        private final long[] starts;
+        private final long[] ends;
+        //максимальное окончание среди периодов [0..i]
+        private final long[] maxEnds;
+
+        private CarIntervals(long[] bookingIds, long[] starts, long[] ends) {
+            this.bookingIds = bookingIds;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            for (int i = 0; i < ends.length; i++) {
+                maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+            }
+        }
+
+        private boolean isEmpty() {
+            return bookingIds.length == 0;
+        }
+
+        private boolean overlaps(long from, long to) {
+            //последний период, начинающийся раньше окончания проверяемого периода
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < to) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low > 0 && maxEnds[low - 1] > from;
+        }
+
+        private CarIntervals with(long bookingId, long start, long end) {
+            CarIntervals base = without(bookingId);
+            int size = base.bookingIds.length;
+            int position = 0;
+            while (position < size && base.starts[position] <= start) {
+                position++;
+            }
+            long[] newIds = insert(base.bookingIds, position, bookingId);
+            long[] newStarts = insert(base.starts, position, start);
+            long[] newEnds = insert(base.ends, position, end);
+            return new CarIntervals(newIds, newStarts, newEnds);
+        }
+
+        private CarIntervals without(long bookingId) {
+            for (int i = 0; i < bookingIds.length; i++) {
+                if (bookingIds[i] == bookingId) {
+                    return new CarIntervals(delete(bookingIds, i), delete(starts, i), delete(ends, i));
+                }
+            }
+            return this;
+        }
+
+        private CarIntervals merge(CarIntervals other) {
+            CarIntervals result = this;
+            for (int i = 0; i < other.bookingIds.length; i++) {
+                result = result.with(other.bookingIds[i], other.starts[i], other.ends[i]);
+            }
+            return result;
+        }
+
+        private boolean sameIntervals(CarIntervals other) {
+            Map<Long, String> own = new HashMap<>();
+            for (int i = 0; i < bookingIds.length; i++) {
+                own.put(bookingIds[i], starts[i] + "-" + ends[i]);
+            }
+            Map<Long, String> others = new HashMap<>();
+            for (int i = 0; i < other.bookingIds.length; i++) {
+                others.put(other.bookingIds[i], other.starts[i] + "-" + other.ends[i]);
+            }
+            return own.equals(others);
+        }
+
+        private static long[] insert(long[] source, int position, long value) {
+            long[] result = new long[source.length + 1];
+            System.arraycopy(source, 0, result, 0, position);
+            result[position] = value;
+            System.arraycopy(source, position, result, position + 1, source.length - position);
+            return result;
+        }
+
+        private static long[] delete(long[] source, int position) {
+            long[] result = new long[source.length - 1];
+            System.arraycopy(source, 0, result, 0, position);
+            System.arraycopy(source, position + 1, result, position, source.length - position - 1);
+            return result;
+        }
+    }
+}
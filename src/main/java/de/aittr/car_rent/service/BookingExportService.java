@@ -0,0 +1,205 @@
+package de.aittr.car_rent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.aittr.car_rent.domain.dto.BookingExportRowDto;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Потоковая выгрузка бронирований для бухгалтерии в CSV или NDJSON.
+ * <p>
+ * Бронирования читаются одним SQL-запросом через JDBC без сущностей и контекста персистентности.
+ * Драйвер MySQL с fetch size {@link Integer#MIN_VALUE} отдаёт строки результата по одной (forward-only курсор),
+ * каждая строка сразу пишется в ответ, поэтому расход памяти не зависит от количества бронирований.
+ * Строки плоские: бронирование, клиент и авто в одной строке.
+ * </p>
+ */
+@Service
+@Slf4j
+public class BookingExportService {
+
+    private static final String EXPORT_QUERY = """
+            select b.id, b.booking_status, b.rental_start_date, b.rental_end_date,
+                   b.create_booking_date, b.update_booking_date, b.total_price,
+                   c.id as customer_id, c.email, c.first_name, c.last_name,
+                   car.id as car_id, car.brand, car.model, car.year, car.day_rental_price
+            from booking b
+            join customer c on c.id = b.customer_id
+            join car on car.id = b.car_id
+            where b.rental_start_date >= ? and b.rental_start_date < ?
+            order by b.id
+            """;
+
+    private static final String CSV_HEADER = "booking_id,booking_status,rental_start_date,rental_end_date,"
+            + "create_booking_date,update_booking_date,total_price,customer_id,customer_email,"
+            + "customer_first_name,customer_last_name,car_id,car_brand,car_model,car_year,car_day_rental_price";
+
+    private static final DateTimeFormatter CSV_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private final JdbcTemplate exportJdbcTemplate;
+    private final ObjectWriter rowWriter;
+
+    public BookingExportService(
+            DataSource dataSource,
+            ObjectMapper objectMapper,
+            @Value("${booking.export.fetch-size:-2147483648}") int fetchSize) {
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(fetchSize);
+        this.rowWriter = objectMapper.writerFor(BookingExportRowDto.class);
+    }
+
+    /**
+     * Формат выгрузки
+     */
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static ExportFormat of(String format) {
+            try {
+                return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new RestApiException("Unsupported export format " + format + ". Use csv or ndjson");
+            }
+        }
+    }
+
+    /**
+     * Проверяет период выгрузки до начала записи ответа
+     *
+     * @param from первый день периода
+     * @param to   последний день периода включительно
+     */
+    public void validatePeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new RestApiException("Enter both export period dates");
+        }
+        if (to.isBefore(from)) {
+            throw new RestApiException("Export period end must not be before its start");
+        }
+    }
+
+    /**
+     * Пишет в поток бронирования, аренда по которым начинается в периоде [from, to] по дням
+     *
+     * @param output поток ответа
+     * @param from   первый день периода
+     * @param to     последний день периода включительно
+     * @param format формат выгрузки
+     * @return количество выгруженных бронирований
+     */
+    public long writeBookings(OutputStream output, LocalDate from, LocalDate to, ExportFormat format) throws IOException {
+        validatePeriod(from, to);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        long[] rows = new long[1];
+        try {
+            exportJdbcTemplate.query(EXPORT_QUERY, resultSet -> {
+                BookingExportRowDto row = mapRow(resultSet);
+                try {
+                    writer.write(format == ExportFormat.CSV ? toCsv(row) : rowWriter.writeValueAsString(row));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    //клиент закрыл соединение - чтение курсора прерывается
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} bookings from {} to {} as {}", rows[0], from, to, format);
+        return rows[0];
+    }
+
+    private static BookingExportRowDto mapRow(ResultSet resultSet) throws SQLException {
+        return new BookingExportRowDto(
+                resultSet.getLong("id"),
+                resultSet.getString("booking_status"),
+                toLocalDateTime(resultSet.getTimestamp("rental_start_date")),
+                toLocalDateTime(resultSet.getTimestamp("rental_end_date")),
+                toLocalDateTime(resultSet.getTimestamp("create_booking_date")),
+                toLocalDateTime(resultSet.getTimestamp("update_booking_date")),
+                resultSet.getBigDecimal("total_price"),
+                resultSet.getLong("customer_id"),
+                resultSet.getString("email"),
+                resultSet.getString("first_name"),
+                resultSet.getString("last_name"),
+                resultSet.getLong("car_id"),
+                resultSet.getString("brand"),
+                resultSet.getString("model"),
+                resultSet.getInt("year"),
+                resultSet.getBigDecimal("day_rental_price"));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    static String toCsv(BookingExportRowDto row) {
+        return String.join(",",
+                csv(row.bookingId()),
+                csv(row.bookingStatus()),
+                csv(row.rentalStartDate()),
+                csv(row.rentalEndDate()),
+                csv(row.createBookingDate()),
+                csv(row.updateBookingDate()),
+                csv(row.totalPrice() == null ? null : row.totalPrice().toPlainString()),
+                csv(row.customerId()),
+                csv(row.customerEmail()),
+                csv(row.customerFirstName()),
+                csv(row.customerLastName()),
+                csv(row.carId()),
+                csv(row.carBrand()),
+                csv(row.carModel()),
+                csv(row.carYear()),
+                csv(row.carDayRentalPrice() == null ? null : row.carDayRentalPrice().toPlainString()));
+    }
+
+    //значения с разделителем, кавычками или переводом строки берутся в кавычки, кавычки удваиваются
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof LocalDateTime dateTime ? CSV_DATE_TIME.format(dateTime) : value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
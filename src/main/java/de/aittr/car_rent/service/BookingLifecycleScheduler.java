@@ -0,0 +1,192 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
+import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.domain.entity.CarStatus;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CarRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Плановые переходы бронирований по жизненному циклу.
+ * <p>
+ * По расписанию бронирования переводятся пакетными update-запросами порциями по {@code booking.lifecycle.batch-size}:
+ * PENDING, аренда по которым началась более {@code booking.lifecycle.pending-grace-minutes} минут назад, - в EXPIRED,
+ * ACTIVE с закончившейся арендой - в COMPLETED (авто - в UNDER_INSPECTION), при включённом
+ * {@code booking.lifecycle.auto-activate} PENDING с начавшейся арендой - в ACTIVE (авто - в RENTED).
+ * Каждая порция выполняется в отдельной транзакции, бронирования, статус которых параллельно изменил
+ * администратор или клиент, update пропускает.
+ * Количество переходов считается метрикой {@code booking.lifecycle.transitions} с тегом {@code transition},
+ * длительность запуска - метрикой {@code booking.lifecycle.run}.
+ * </p>
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "booking.lifecycle.enabled", havingValue = "true", matchIfMissing = true)
+public class BookingLifecycleScheduler {
+
+    private final BookingRepository bookingRepository;
+    private final CarRepository carRepository;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final TransactionTemplate chunkTransaction;
+    private final int batchSize;
+    private final long pendingGraceMinutes;
+    private final boolean autoActivate;
+    private final Timer runTimer;
+    private final Map<String, Counter> transitionCounters = new HashMap<>();
+
+    public BookingLifecycleScheduler(
+            BookingRepository bookingRepository,
+            CarRepository carRepository,
+            BookingAvailabilityIndex bookingAvailabilityIndex,
+            FleetSnapshotService fleetSnapshotService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${booking.lifecycle.batch-size:500}") int batchSize,
+            @Value("${booking.lifecycle.pending-grace-minutes:60}") long pendingGraceMinutes,
+            @Value("${booking.lifecycle.auto-activate:false}") boolean autoActivate) {
+        this.bookingRepository = bookingRepository;
+        this.carRepository = carRepository;
+        this.bookingAvailabilityIndex = bookingAvailabilityIndex;
+        this.fleetSnapshotService = fleetSnapshotService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pendingGraceMinutes = pendingGraceMinutes;
+        this.autoActivate = autoActivate;
+        this.runTimer = Timer.builder("booking.lifecycle.run")
+                .description("Duration of scheduled booking lifecycle runs")
+                .register(meterRegistry);
+        for (String transition : List.of("activated", "expired", "completed")) {
+            transitionCounters.put(transition, Counter.builder("booking.lifecycle.transitions")
+                    .description("Bookings moved by the lifecycle scheduler")
+                    .tag("transition", transition)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${booking.lifecycle.fixed-delay-millis:60000}",
+            fixedDelayString = "${booking.lifecycle.fixed-delay-millis:60000}")
+    public void scheduledRun() {
+        try {
+            runLifecycle();
+        } catch (RuntimeException e) {
+            log.error("Booking lifecycle run failed", e);
+        }
+    }
+
+    /**
+     * Выполняет все переходы бронирований на текущий момент
+     *
+     * @return количество переведённых бронирований по видам переходов
+     */
+    public LifecycleRunResult runLifecycle() {
+        return runTimer.record(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            int activated = 0;
+            if (autoActivate) {
+                //активация идёт первой, чтобы начавшиеся бронирования не истекли вместо активации
+                activated = transition("activated", BookingStatus.PENDING, BookingStatus.ACTIVE,
+                        (afterId, page) -> bookingRepository.findDueIntervals(BookingStatus.PENDING, now, afterId, page),
+                        EnumSet.of(CarStatus.AVAILABLE, CarStatus.UNDER_INSPECTION), CarStatus.RENTED, now);
+            }
+            LocalDateTime expiredStartedBy = now.minusMinutes(pendingGraceMinutes);
+            int expired = transition("expired", BookingStatus.PENDING, BookingStatus.EXPIRED,
+                    (afterId, page) -> bookingRepository.findStartedIntervals(
+                            BookingStatus.PENDING, expiredStartedBy, afterId, page),
+                    Set.of(), null, now);
+            int completed = transition("completed", BookingStatus.ACTIVE, BookingStatus.COMPLETED,
+                    (afterId, page) -> bookingRepository.findEndedIntervals(BookingStatus.ACTIVE, now, afterId, page),
+                    EnumSet.of(CarStatus.RENTED), CarStatus.UNDER_INSPECTION, now);
+            LifecycleRunResult result = new LifecycleRunResult(activated, expired, completed);
+            if (result.total() > 0) {
+                log.info("Booking lifecycle run: {} activated, {} expired, {} completed", activated, expired, completed);
+            }
+            return result;
+        });
+    }
+
+    //переводит бронирования порциями по batchSize, каждая порция - в своей транзакции
+    private int transition(
+            String name,
+            BookingStatus fromStatus,
+            BookingStatus toStatus,
+            ChunkFinder finder,
+            Set<CarStatus> carFromStatuses,
+            CarStatus carToStatus,
+            LocalDateTime now) {
+        Pageable firstPage = PageRequest.of(0, batchSize);
+        int total = 0;
+        long afterId = 0;
+        while (true) {
+            long chunkAfterId = afterId;
+            ChunkResult chunk = chunkTransaction.execute(status -> {
+                List<BookingIntervalDto> intervals = finder.find(chunkAfterId, firstPage);
+                if (intervals.isEmpty()) {
+                    return new ChunkResult(0, 0, chunkAfterId);
+                }
+                List<Long> ids = intervals.stream().map(BookingIntervalDto::id).toList();
+                int updated = bookingRepository.updateBookingStatus(ids, fromStatus, toStatus, now);
+                if (carToStatus != null && updated > 0
+                        && carRepository.updateCarStatusByBookings(ids, toStatus, carFromStatuses, carToStatus) > 0) {
+                    fleetSnapshotService.refreshAfterCommit();
+                }
+                if (!BookingStatus.BLOCKING_STATUSES.contains(toStatus) && updated > 0) {
+                    bookingAvailabilityIndex.removeAfterCommit(changedIntervals(intervals, updated, toStatus));
+                }
+                return new ChunkResult(intervals.size(), updated, ids.get(ids.size() - 1));
+            });
+            total += chunk.updated();
+            transitionCounters.get(name).increment(chunk.updated());
+            if (chunk.found() < batchSize) {
+                return total;
+            }
+            afterId = chunk.lastId();
+        }
+    }
+
+    //интервалы бронирований, которые перевёл update: бронирование, статус которого параллельно изменил
+    //администратор или клиент (например, активировал), должно остаться в индексе занятости
+    private List<BookingIntervalDto> changedIntervals(List<BookingIntervalDto> intervals, int updated,
+                                                      BookingStatus toStatus) {
+        if (updated == intervals.size()) {
+            return intervals;
+        }
+        Set<Long> changedIds = new HashSet<>(bookingRepository.findIdsByIdInAndBookingStatus(
+                intervals.stream().map(BookingIntervalDto::id).toList(), toStatus));
+        return intervals.stream().filter(interval -> changedIds.contains(interval.id())).toList();
+    }
+
+    @FunctionalInterface
+    private interface ChunkFinder {
+        List<BookingIntervalDto> find(Long afterId, Pageable pageable);
+    }
+
+    private record ChunkResult(int found, int updated, long lastId) {
+    }
+
+    /**
+     * Результат одного запуска: количество бронирований, переведённых в ACTIVE, EXPIRED и COMPLETED
+     */
+    public record LifecycleRunResult(int activated, int expired, int completed) {
+
+        public int total() {
+            return activated + expired + completed;
+        }
+    }
+}
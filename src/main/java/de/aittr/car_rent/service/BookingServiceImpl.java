@@ -1,30 +1,40 @@
 package de.aittr.car_rent.service;
 
+import de.aittr.car_rent.domain.dto.BatchItemResultDto;
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.BookingBatchRequestDto;
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
 import de.aittr.car_rent.domain.dto.BookingRequestDto;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
+import de.aittr.car_rent.domain.dto.ReservationHoldResponseDto;
 import de.aittr.car_rent.domain.entity.*;
 import de.aittr.car_rent.exception_handling.exceptions.BookingNotFoundException;
 import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
 import de.aittr.car_rent.repository.BookingRepository;
 import de.aittr.car_rent.repository.CarRepository;
 import de.aittr.car_rent.repository.CustomerRepository;
+import de.aittr.car_rent.security.AuthInfo;
 import de.aittr.car_rent.service.interfaces.BookingService;
 import de.aittr.car_rent.service.interfaces.CarService;
 import de.aittr.car_rent.service.mapping.BookingMapper;
+import de.aittr.car_rent.service.mapping.EnumMapper;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -38,100 +48,123 @@ public class BookingServiceImpl implements BookingService {
     private final CustomerRepository customerRepository;
     private final BookingMapper bookingMapper;
     private final CarService carService;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final CarLockStripes carLockStripes;
+    private final ReservationHoldService reservationHoldService;
+    private final TransactionTemplate transactionTemplate;
+
+    //поля бронирования, по которым разрешена сортировка страниц
+    static final Set<String> BOOKING_SORT_FIELDS = Set.of(
+            "id", "rentalStartDate", "rentalEndDate", "bookingStatus", "totalPrice",
+            "createBookingDate", "updateBookingDate");
 
     @Override
     @Transactional
-    public BookingResponseDto createBooking(@Valid BookingRequestDto bookingRequestDto, String email) {
+    public BookingResponseDto createBooking(@Valid BookingRequestDto bookingRequestDto, AuthInfo caller) {
         log.info("Booking request received: {}", bookingRequestDto);
-        if (bookingRequestDto == null) {
-            throw new RestApiException("Booking request cannot be null");
-        }
-        if (bookingRequestDto.carId() == null) {
-            throw new RestApiException("Car ID cannot be null");
-        }
-        if (bookingRequestDto.rentalStartDate() == null || bookingRequestDto.rentalEndDate() == null) {
-            throw new RestApiException("Rental start and end dates cannot be null");
-        }
-        if (email == null || email.isEmpty()) {
-            throw new RestApiException("Email cannot be null or empty");
-        }
-        if (bookingRequestDto.rentalStartDate().toLocalDate().isBefore(LocalDate.now())) {
-            throw new RestApiException("Rental start date must be today or in the future");
-        }
-        if (!bookingRequestDto.rentalEndDate().isAfter(bookingRequestDto.rentalStartDate())) {
-            throw new RestApiException("Rental end date must be at least one full day after the start date");
-        }
-        Car car = carRepository.findById(bookingRequestDto.carId())
-                .orElseThrow(() -> new RestApiException("Car not found"));
+        validateBookingRequest(bookingRequestDto, caller);
+        String email = caller.getName();
+        Car car = lockCar(bookingRequestDto.carId());
         log.info("Car with ID {} found. Proceeding to create booking", bookingRequestDto.carId());
-        Customer currentCustomer = customerRepository.findByEmail(email)
-                .orElseThrow(() -> new RestApiException("Customer with this email " + email + " not found"));
+        Customer currentCustomer = getCallerCustomer(caller);
         log.info("Customer with email '{}' found. Proceeding to create booking.", email);
-        boolean isAvailableCar = carService.checkIfCarAvailableByDates(
-                car.getId(), bookingRequestDto.rentalStartDate(), bookingRequestDto.rentalEndDate());
+        boolean isAvailableCar = isCarAvailableUnderLock(
+                car.getId(), bookingRequestDto.rentalStartDate(), bookingRequestDto.rentalEndDate(), email);
         if (!isAvailableCar) {
             throw new RestApiException("Car with id " + car.getId() + " is not available during the period from "
                     + bookingRequestDto.rentalStartDate() + " to " + bookingRequestDto.rentalEndDate());
         }
-        BigDecimal totalPrice = this.calculateBookingTotalPrice(car.getDayRentalPrice(),
+        Booking booking = savePendingBooking(car, currentCustomer,
                 bookingRequestDto.rentalStartDate(), bookingRequestDto.rentalEndDate());
-        Booking booking = new Booking();
-        booking.setCreateBookingDate(LocalDateTime.now()
-                .withSecond(0)
-                .withNano(0));
-        booking.setUpdateBookingDate(LocalDateTime.now()
-                .withSecond(0)
-                .withNano(0));
-        booking.setRentalStartDate(bookingRequestDto.rentalStartDate());
-        booking.setRentalEndDate(bookingRequestDto.rentalEndDate());
-        booking.setCustomer(currentCustomer);
-        booking.setCar(car);
-        booking.setTotalPrice(totalPrice);
-        booking.setBookingStatus(BookingStatus.PENDING);
-        log.info("Saving booking for customer {} with car ID {} and total price {}", email, bookingRequestDto.carId(), totalPrice);
-        booking = bookingRepository.save(booking);
         log.info("Booking successfully created for customer {} with car ID {}.", email, bookingRequestDto.carId());
         return bookingMapper.mapEntityToDto(booking);
     }
 
+    @Override
+    @Transactional
+    public ReservationHoldResponseDto createHold(BookingRequestDto bookingRequestDto, AuthInfo caller) {
+        log.info("Reservation hold request received: {}", bookingRequestDto);
+        validateBookingRequest(bookingRequestDto, caller);
+        String email = caller.getName();
+        Car car = lockCar(bookingRequestDto.carId());
+        boolean isAvailableCar = isCarAvailableUnderLock(
+                car.getId(), bookingRequestDto.rentalStartDate(), bookingRequestDto.rentalEndDate(), email);
+        if (!isAvailableCar) {
+            throw new RestApiException("Car with id " + car.getId() + " is not available during the period from "
+                    + bookingRequestDto.rentalStartDate() + " to " + bookingRequestDto.rentalEndDate());
+        }
+        ReservationHoldService.ReservationHold hold = reservationHoldService.hold(car.getId(),
+                bookingRequestDto.rentalStartDate(), bookingRequestDto.rentalEndDate(), email);
+        log.info("Car with ID {} held for customer {} until {}", car.getId(), email, hold.expiresAt());
+        return mapHoldToDto(hold);
+    }
+
+    @Override
+    @Transactional
+    public BookingResponseDto confirmHold(String holdId, AuthInfo caller) {
+        String email = caller.getName();
+        log.info("Attempting to confirm reservation hold {} by user: {}", holdId, email);
+        ReservationHoldService.ReservationHold hold = getOwnHoldOrThrow(holdId, email);
+        Car car = lockCar(hold.carId());
+        Customer currentCustomer = getCallerCustomer(caller);
+        if (!isCarAvailableUnderLock(car.getId(), hold.from(), hold.to(), email)) {
+            reservationHoldService.release(holdId);
+            throw new RestApiException("Car with id " + car.getId() + " is not available during the period from "
+                    + hold.from() + " to " + hold.to());
+        }
+        Booking booking = savePendingBooking(car, currentCustomer, hold.from(), hold.to());
+        //удержание снимается после коммита, до этого оно продолжает закрывать период от других клиентов
+        TransactionHooks.afterCommit(() -> reservationHoldService.release(holdId));
+        log.info("Reservation hold {} confirmed as booking {}", holdId, booking.getId());
+        return bookingMapper.mapEntityToDto(booking);
+    }
+
+    @Override
+    public void releaseHold(String holdId, String email) {
+        getOwnHoldOrThrow(holdId, email);
+        reservationHoldService.release(holdId);
+        log.info("Reservation hold {} released by user: {}", holdId, email);
+    }
+
     @Override
     public BookingResponseDto getBookingByBookingId(Long id) {
         if (id == null) {
             throw new RestApiException("Booking ID cannot be null.");
         }
-        return bookingRepository.findById(id)
+        return bookingRepository.findDetailedById(id)
                 .map(bookingMapper::mapEntityToDto)
                 .orElseThrow(() -> new BookingNotFoundException(id));
     }
 
     @Override
-    public List<BookingResponseDto> getAllBookings() {
-        return bookingRepository.findAll().stream()
-                .map(bookingMapper::mapEntityToDto)
-                .collect(Collectors.toList());
+    public PageResponseDto<BookingResponseDto> getAllBookings(Pageable pageable, boolean withTotal) {
+        Pageable page = Paging.withStableSort(pageable, BOOKING_SORT_FIELDS, "bookings");
+        return Paging.toResponse(bookingRepository.findSliceBy(page), bookingMapper::mapEntityToDto,
+                withTotal, bookingRepository::count);
     }
 
     @Override
-    public List<BookingResponseDto> getBookingsByCarId(Long carId) {
+    public PageResponseDto<BookingResponseDto> getBookingsByCarId(Long carId, Pageable pageable, boolean withTotal) {
         if (carId == null) {
             throw new RestApiException("Car ID cannot be null.");
         }
         log.info("Request to receive reservations for a vehicle with ID: {}", carId);
-        List<BookingResponseDto> bookings = bookingRepository.findAllByCarId(carId)
-                .stream()
-                .map(bookingMapper::mapEntityToDto)
-                .collect(Collectors.toList());
-        log.info("Found {} bookings for car {}", bookings.size(), carId);
+        Pageable page = Paging.withStableSort(pageable, BOOKING_SORT_FIELDS, "bookings");
+        PageResponseDto<BookingResponseDto> bookings = Paging.toResponse(
+                bookingRepository.findSliceByCarId(carId, page), bookingMapper::mapEntityToDto,
+                withTotal, () -> bookingRepository.countByCarId(carId));
+        log.info("Found {} bookings for car {} on page {}", bookings.content().size(), carId, page.getPageNumber());
         return bookings;
     }
 
-    //TODO как правильно работает эта аннотация  и нужна ли она здесь?
-    //@Transactional(readOnly = true)
     @Override
-    public List<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate rentalStartDate,
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate rentalEndDate,
-            BookingStatus bookingStatus) {
+    public PageResponseDto<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(
+            LocalDate rentalStartDate,
+            LocalDate rentalEndDate,
+            BookingStatus bookingStatus,
+            Pageable pageable,
+            boolean withTotal) {
 
         log.info("Searching bookings with parameters - Start Date: {}, End Date: {}, Status: {}",
                 rentalStartDate, rentalEndDate, bookingStatus);
@@ -143,72 +176,70 @@ public class BookingServiceImpl implements BookingService {
         if (rentalStartDate != null && rentalEndDate != null) {
             throw new RestApiException("Enter only one date - rental start date or rental end date.");
         }
-        return bookingRepository.findAll()
-                .stream()
-                .filter(booking -> {
-                    boolean matchesStart = (rentalStartDate != null
-                            && booking.getRentalStartDate().toLocalDate().isEqual(rentalStartDate));
-                    boolean matchesEnd = (rentalEndDate != null
-                            && booking.getRentalEndDate().toLocalDate().isEqual(rentalEndDate));
-                    return rentalStartDate == null && rentalEndDate == null || matchesStart || matchesEnd;
-                })
-                .filter(booking -> bookingStatus == null || booking.getBookingStatus() == bookingStatus)
-                .sorted(Comparator.comparing(Booking::getBookingStatus))
-                .map(bookingMapper::mapEntityToDto)
-                .toList();
+        Pageable page = Paging.withStableSort(pageable, BOOKING_SORT_FIELDS, "bookings");
+        //день аренды отбирается как полуинтервал [начало дня, начало следующего дня), чтобы использовать индекс по дате
+        LocalDateTime startFrom = rentalStartDate == null ? null : rentalStartDate.atStartOfDay();
+        LocalDateTime startTo = rentalStartDate == null ? null : rentalStartDate.plusDays(1).atStartOfDay();
+        LocalDateTime endFrom = rentalEndDate == null ? null : rentalEndDate.atStartOfDay();
+        LocalDateTime endTo = rentalEndDate == null ? null : rentalEndDate.plusDays(1).atStartOfDay();
+        return Paging.toResponse(
+                bookingRepository.findSliceByRentalDayAndStatus(startFrom, startTo, endFrom, endTo, bookingStatus, page),
+                bookingMapper::mapEntityToDto,
+                withTotal,
+                () -> bookingRepository.countByRentalDayAndStatus(startFrom, startTo, endFrom, endTo, bookingStatus));
     }
 
     @Transactional
     @Override
-    public BookingResponseDto activateBooking(Long bookingId, String email) {
-        if (!isAdmin(email)) {
+    public BookingResponseDto activateBooking(Long bookingId, AuthInfo caller) {
+        if (!caller.isAdmin()) {
             throw new RestApiException("Activate bookings can only admin");
         }
-        Booking pendingBooking = bookingRepository.findById(bookingId).orElseThrow(() -> new RestApiException("Booking not found"));
-        if (pendingBooking.getBookingStatus() != BookingStatus.PENDING) {
-            throw new RestApiException("Booking status is not PENDING, but " + pendingBooking.getBookingStatus());
-        }
-        if (!pendingBooking.getRentalStartDate().isBefore(LocalDateTime.now())) {
-            throw new RestApiException("You can't activate booking before it starts");
-        }
-        Car rentedCar = pendingBooking.getCar();
-        pendingBooking.setBookingStatus(BookingStatus.ACTIVE);
-        pendingBooking.setUpdateBookingDate(LocalDateTime.now()
-                .withSecond(0)
-                .withNano(0));
+        Booking pendingBooking = bookingRepository.findDetailedById(bookingId).orElseThrow(() -> new RestApiException("Booking not found"));
+        activate(pendingBooking);
         bookingRepository.save(pendingBooking);
-        rentedCar.setCarStatus(CarStatus.RENTED);
-        carRepository.save(rentedCar);
+        carRepository.save(pendingBooking.getCar());
+        fleetSnapshotService.refreshAfterCommit();
         return bookingMapper.mapEntityToDto(pendingBooking);
     }
 
-    @Transactional
     @Override
-    public BookingResponseDto extendBooking(Long id, String email, LocalDateTime newEndDate) {
+    public BookingResponseDto extendBooking(Long id, AuthInfo caller, LocalDateTime newEndDate) {
+        String email = caller.getName();
         log.info("Attempting to extend booking with ID: {} by user: {}", id, email);
         if (newEndDate == null) {
             throw new RestApiException("New rental end date must not be null.");
         }
-        Customer currentCustomer = customerRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Customer not found with email: " + email));
-        Booking currentBooking = bookingRepository.findById(id)
+        //id авто читается до транзакции, а в транзакции авто блокируется до любого чтения: в MySQL (REPEATABLE READ)
+        //первое неблокирующее чтение фиксирует снимок, и проверка занятости после ожидания блокировки
+        //не увидела бы бронирований, сохранённых за это время другим экземпляром приложения
+        Long carId = bookingRepository.findCarIdById(id)
+                .orElseThrow(() -> new BookingNotFoundException(id));
+        return transactionTemplate.execute(status -> extendLocked(id, carId, caller, newEndDate));
+    }
+
+    private BookingResponseDto extendLocked(Long id, Long carId, AuthInfo caller, LocalDateTime newEndDate) {
+        String email = caller.getName();
+        lockCar(carId);
+        Booking currentBooking = bookingRepository.findDetailedById(id)
                 .orElseThrow(() -> new BookingNotFoundException(id));
         if (newEndDate.isBefore(currentBooking.getRentalEndDate())) {
             throw new RestApiException("New rental end date must be after the current rental end date.");
         }
-        boolean isCarAvailable = carService.checkIfCarAvailableByDates(currentBooking.getCar().getId(), currentBooking.getRentalEndDate(), newEndDate);
+        boolean isCarAvailable = isCarAvailableUnderLock(currentBooking.getCar().getId(), currentBooking.getRentalEndDate(), newEndDate, email);
         if (!isCarAvailable) {
             throw new RestApiException("Car with id " + currentBooking.getCar().getId() + " is already booked during the period from " + currentBooking.getRentalEndDate() + " to" + newEndDate);
         }
         BigDecimal extraPrice = this.calculateBookingTotalPrice(currentBooking.getCar().getDayRentalPrice(),
                 currentBooking.getRentalEndDate(), newEndDate);
-        if (isAdmin(email)) {
+        if (caller.isAdmin()) {
             currentBooking.setTotalPrice(currentBooking.getTotalPrice().add(extraPrice));
             currentBooking.setRentalEndDate(newEndDate);
             currentBooking.setUpdateBookingDate(LocalDateTime.now());
             bookingRepository.save(currentBooking);
+            bookingAvailabilityIndex.updateAfterCommit(currentBooking);
         } else {
-            if (!currentBooking.getCustomer().equals(currentCustomer)) {
+            if (!currentBooking.getCustomer().getId().equals(caller.getCustomerId())) {
                 log.warn("Customer with email {} is trying to extend currentBooking ID: {} which belongs to customer ID: {}",
                         email, id, currentBooking.getCustomer().getId());
                 throw new RestApiException("You can only extend your own bookings");
@@ -217,93 +248,120 @@ public class BookingServiceImpl implements BookingService {
             currentBooking.setRentalEndDate(newEndDate);
             currentBooking.setUpdateBookingDate(LocalDateTime.now().withSecond(0).withNano(0));
             bookingRepository.save(currentBooking);
+            bookingAvailabilityIndex.updateAfterCommit(currentBooking);
         }
         log.info("Successfully extended booking ID: {} to new end date: {}", id, newEndDate);
         return bookingMapper.mapEntityToDto(currentBooking);
     }
 
     @Transactional
-    public BookingResponseDto cancelBooking(Long id, String email) {
+    public BookingResponseDto cancelBooking(Long id, AuthInfo caller) {
         log.info("Attempting to cancel booking with ID: {}", id);
         if (id == null) {
             throw new RestApiException("Booking ID cannot be null");
         }
-        if (email == null || email.isEmpty()) {
-            log.warn("Email is null or empty");
-            throw new RestApiException("Email cannot be null or empty");
+        if (caller == null || caller.getCustomerId() == null) {
+            log.warn("Caller is not authenticated");
+            throw new RestApiException("Customer must be authenticated");
         }
-        Booking booking = bookingRepository.findById(id)
+        String email = caller.getName();
+        Booking booking = bookingRepository.findDetailedById(id)
                 .orElseThrow(() -> new RestApiException("Booking with ID " + id + " not found"));
-        if (booking.getBookingStatus() == BookingStatus.CLOSED_BY_ADMIN ||
-                booking.getBookingStatus() == BookingStatus.ACTIVE) {
-            log.warn("Cannot cancel a completed booking with ID: {}", id);
-            throw new RestApiException("Cannot cancel a booking with status " + booking.getBookingStatus());
-        }
-        if (booking.getBookingStatus() == BookingStatus.CANCELLED_BY_ADMIN ||
-                booking.getBookingStatus() == BookingStatus.CANCELLED_BY_USER) {
-            log.warn("Booking with ID: {} is already cancelled", id);
-            throw new RestApiException("Booking is already cancelled");
-        }
-        if (booking.getRentalEndDate().isBefore(LocalDateTime.now())) {
-            throw new RestApiException("Cannot cancel a booking that has already ended.");
-        }
-        Customer currentCustomer = customerRepository.findByEmail(email)
-                .orElseThrow(() -> new RestApiException("Customer with email " + email + " not found"));
-        if (isAdmin(email)) {
-            booking.setBookingStatus(BookingStatus.CANCELLED_BY_ADMIN);
+        if (caller.isAdmin()) {
+            cancel(booking, BookingStatus.CANCELLED_BY_ADMIN);
         } else {
-            if (!booking.getCustomer().getId().equals(currentCustomer.getId())) {
+            if (!booking.getCustomer().getId().equals(caller.getCustomerId())) {
                 log.warn("Customer with email {} is trying to cancel booking ID: {} which belongs to customer ID: {}",
                         email, id, booking.getCustomer().getId());
                 throw new RestApiException("You can only cancel your own bookings");
             }
-            booking.setBookingStatus(BookingStatus.CANCELLED_BY_USER);
+            cancel(booking, BookingStatus.CANCELLED_BY_USER);
         }
-        log.info("Changing car status booked car to AVAILABLE");
-        Car bookedCar = carRepository.findById(booking.getCar().getId())
-                .orElseThrow(() -> new RestApiException("Car from the booking not found"));
-        bookedCar.setCarStatus(CarStatus.AVAILABLE);
-        carRepository.save(bookedCar);
-        booking.setUpdateBookingDate(LocalDateTime.now()
-                .withSecond(0)
-                .withNano(0));
+        carRepository.save(booking.getCar());
+        fleetSnapshotService.refreshAfterCommit();
         bookingRepository.save(booking);
+        bookingAvailabilityIndex.updateAfterCommit(booking);
         log.info("Successfully cancelled booking with ID: {}", id);
         return bookingMapper.mapEntityToDto(booking);
     }
 
     @Transactional
     @Override
-    public BookingResponseDto closeBooking(Long id, String email) {
+    public BookingResponseDto closeBooking(Long id, AuthInfo caller) {
         log.info("Attempting to close booking with ID: {}", id);
-        Booking existingBooking = bookingRepository.findById(id)
+        if (!caller.isAdmin()) {
+            throw new RestApiException("Close booking can only administrator");
+        }
+        Booking existingBooking = bookingRepository.findDetailedById(id)
                 .orElseThrow(() -> new RestApiException("Booking with id: " + id + " not found"));
-        Car bookedCar = carRepository.findById(existingBooking.getCar().getId())
-                .orElseThrow(() -> new RestApiException("Car from the booking not found"));
-        if (existingBooking.getBookingStatus() == BookingStatus.CLOSED_BY_ADMIN) {
-            throw new RestApiException("Booking is already closed");
+        close(existingBooking);
+        bookingRepository.save(existingBooking);
+        bookingAvailabilityIndex.updateAfterCommit(existingBooking);
+        carRepository.save(existingBooking.getCar());
+        fleetSnapshotService.refreshAfterCommit();
+        log.info("Booking with ID {} closed by admin. Car set to UNDER_INSPECTION.", id);
+        return bookingMapper.mapEntityToDto(existingBooking);
+    }
+
+    @Override
+    public BatchResultDto applyBatchOperation(BookingBatchRequestDto batchRequestDto, AuthInfo caller) {
+        if (!caller.isAdmin()) {
+            throw new RestApiException("Batch booking operations can only admin");
         }
-        if (existingBooking.getBookingStatus() == BookingStatus.CANCELLED_BY_ADMIN ||
-                existingBooking.getBookingStatus() == BookingStatus.CANCELLED_BY_USER) {
-            throw new RestApiException("Cannot close a cancelled booking");
+        BookingBatchRequestDto.BookingBatchOperation operation = EnumMapper.toEnumIgnoreCase(
+                BookingBatchRequestDto.BookingBatchOperation.class, batchRequestDto.operation());
+        List<Long> ids = batchRequestDto.bookingIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+        log.info("Applying batch operation {} to {} bookings", operation, ids.size());
+        //id авто читаются до транзакции, а в транзакции авто блокируются до загрузки бронирований,
+        //поэтому снимок транзакции (REPEATABLE READ) не старше блокировки и пакет меняет актуальное состояние
+        List<Long> carIds = ids.isEmpty() ? List.of() : bookingRepository.findCarIdsByIdIn(ids);
+        return transactionTemplate.execute(status -> applyBatchLocked(operation, ids, carIds));
+    }
+
+    private BatchResultDto applyBatchLocked(BookingBatchRequestDto.BookingBatchOperation operation,
+                                            List<Long> ids, List<Long> carIds) {
+        lockCars(carIds);
+        Map<Long, Booking> bookingsById = bookingRepository.findAllWithCarByIdIn(ids).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        List<BatchItemResultDto> results = new ArrayList<>(ids.size());
+        List<Booking> changedBookings = new ArrayList<>();
+        for (Long id : ids) {
+            Booking booking = bookingsById.get(id);
+            if (booking == null) {
+                results.add(BatchItemResultDto.failure(id, "Booking with id " + id + " not found"));
+                continue;
+            }
+            try {
+                switch (operation) {
+                    case ACTIVATE -> activate(booking);
+                    case CLOSE -> close(booking);
+                    case CANCEL -> cancel(booking, BookingStatus.CANCELLED_BY_ADMIN);
+                }
+                changedBookings.add(booking);
+                results.add(BatchItemResultDto.success(id, booking.getBookingStatus()));
+            } catch (RestApiException e) {
+                results.add(BatchItemResultDto.failure(id, e.getMessage()));
+            }
         }
-//        if (existingBooking.getBookingStatus() == BookingStatus.ACTIVE) {
-//            throw new RestApiException("Cannot close an active booking. Mark it as completed first.");
-//        }
-        if (!isAdmin(email)) {
-            throw new RestApiException("Close booking can only administrator");
-        } else {
-            existingBooking.setBookingStatus(BookingStatus.CLOSED_BY_ADMIN);
-            existingBooking.setUpdateBookingDate(LocalDateTime.now());
-            existingBooking.setUpdateBookingDate(LocalDateTime.now()
-                    .withSecond(0)
-                    .withNano(0));
-            bookingRepository.save(existingBooking);
-            bookedCar.setCarStatus(CarStatus.UNDER_INSPECTION);
-            carRepository.save(bookedCar);
-            log.info("Booking with ID {} closed by admin. Car set to UNDER_INSPECTION.", id);
+        //изменения сохраняются при flush пакетными update, авто - только изменённые
+        bookingRepository.saveAll(changedBookings);
+        carRepository.saveAll(changedBookings.stream().map(Booking::getCar).distinct().toList());
+        if (!changedBookings.isEmpty()) {
+            fleetSnapshotService.refreshAfterCommit();
+            if (operation != BookingBatchRequestDto.BookingBatchOperation.ACTIVATE) {
+                bookingAvailabilityIndex.removeAfterCommit(changedBookings.stream()
+                        .map(booking -> new BookingIntervalDto(booking.getId(), booking.getCar().getId(),
+                                booking.getRentalStartDate(), booking.getRentalEndDate()))
+                        .toList());
+            }
         }
-        return bookingMapper.mapEntityToDto(existingBooking);
+        BatchResultDto result = BatchResultDto.of(results);
+        log.info("Batch operation {} applied: {} succeeded, {} failed", operation, result.succeeded(), result.failed());
+        return result;
     }
 
     @Override
@@ -313,8 +371,156 @@ public class BookingServiceImpl implements BookingService {
         return pricePerSecond.multiply(BigDecimal.valueOf(totalSeconds)).setScale(2, RoundingMode.HALF_UP);
     }
 
-    private boolean isAdmin(String email) {
-        Customer currentCustomer = customerRepository.findByEmail(email).orElseThrow(() -> new RestApiException("Customer with email " + email + " not found"));
-        return "ROLE_ADMIN".equals(currentCustomer.getRole().getTitle());
+    //перевод бронирования в ACTIVE и авто в RENTED (без сохранения)
+    private void activate(Booking booking) {
+        if (booking.getBookingStatus() != BookingStatus.PENDING) {
+            throw new RestApiException("Booking status is not PENDING, but " + booking.getBookingStatus());
+        }
+        if (!booking.getRentalStartDate().isBefore(LocalDateTime.now())) {
+            throw new RestApiException("You can't activate booking before it starts");
+        }
+        booking.setBookingStatus(BookingStatus.ACTIVE);
+        booking.setUpdateBookingDate(LocalDateTime.now()
+                .withSecond(0)
+                .withNano(0));
+        booking.getCar().setCarStatus(CarStatus.RENTED);
+    }
+
+    //закрытие бронирования администратором, авто переводится в UNDER_INSPECTION (без сохранения)
+    private void close(Booking booking) {
+        if (booking.getBookingStatus() == BookingStatus.CLOSED_BY_ADMIN ||
+                booking.getBookingStatus() == BookingStatus.COMPLETED) {
+            throw new RestApiException("Booking is already closed");
+        }
+        if (booking.getBookingStatus() == BookingStatus.EXPIRED) {
+            throw new RestApiException("Cannot close an expired booking");
+        }
+        if (booking.getBookingStatus() == BookingStatus.CANCELLED_BY_ADMIN ||
+                booking.getBookingStatus() == BookingStatus.CANCELLED_BY_USER) {
+            throw new RestApiException("Cannot close a cancelled booking");
+        }
+        booking.setBookingStatus(BookingStatus.CLOSED_BY_ADMIN);
+        booking.setUpdateBookingDate(LocalDateTime.now()
+                .withSecond(0)
+                .withNano(0));
+        booking.getCar().setCarStatus(CarStatus.UNDER_INSPECTION);
+    }
+
+    //отмена бронирования с переводом авто в AVAILABLE (без сохранения)
+    private void cancel(Booking booking, BookingStatus cancelledStatus) {
+        if (booking.getBookingStatus() == BookingStatus.CLOSED_BY_ADMIN ||
+                booking.getBookingStatus() == BookingStatus.COMPLETED ||
+                booking.getBookingStatus() == BookingStatus.EXPIRED ||
+                booking.getBookingStatus() == BookingStatus.ACTIVE) {
+            log.warn("Cannot cancel a completed booking with ID: {}", booking.getId());
+            throw new RestApiException("Cannot cancel a booking with status " + booking.getBookingStatus());
+        }
+        if (booking.getBookingStatus() == BookingStatus.CANCELLED_BY_ADMIN ||
+                booking.getBookingStatus() == BookingStatus.CANCELLED_BY_USER) {
+            log.warn("Booking with ID: {} is already cancelled", booking.getId());
+            throw new RestApiException("Booking is already cancelled");
+        }
+        if (booking.getRentalEndDate().isBefore(LocalDateTime.now())) {
+            throw new RestApiException("Cannot cancel a booking that has already ended.");
+        }
+        booking.setBookingStatus(cancelledStatus);
+        log.info("Changing car status booked car to AVAILABLE");
+        booking.getCar().setCarStatus(CarStatus.AVAILABLE);
+        booking.setUpdateBookingDate(LocalDateTime.now()
+                .withSecond(0)
+                .withNano(0));
+    }
+
+    private void validateBookingRequest(BookingRequestDto bookingRequestDto, AuthInfo caller) {
+        if (bookingRequestDto == null) {
+            throw new RestApiException("Booking request cannot be null");
+        }
+        if (bookingRequestDto.carId() == null) {
+            throw new RestApiException("Car ID cannot be null");
+        }
+        if (bookingRequestDto.rentalStartDate() == null || bookingRequestDto.rentalEndDate() == null) {
+            throw new RestApiException("Rental start and end dates cannot be null");
+        }
+        if (caller == null || caller.getCustomerId() == null) {
+            throw new RestApiException("Customer must be authenticated");
+        }
+        if (bookingRequestDto.rentalStartDate().toLocalDate().isBefore(LocalDate.now())) {
+            throw new RestApiException("Rental start date must be today or in the future");
+        }
+        if (!bookingRequestDto.rentalEndDate().isAfter(bookingRequestDto.rentalStartDate())) {
+            throw new RestApiException("Rental end date must be at least one full day after the start date");
+        }
+    }
+
+    private Booking savePendingBooking(Car car, Customer customer, LocalDateTime from, LocalDateTime to) {
+        BigDecimal totalPrice = this.calculateBookingTotalPrice(car.getDayRentalPrice(), from, to);
+        Booking booking = new Booking();
+        booking.setCreateBookingDate(LocalDateTime.now()
+                .withSecond(0)
+                .withNano(0));
+        booking.setUpdateBookingDate(LocalDateTime.now()
+                .withSecond(0)
+                .withNano(0));
+        booking.setRentalStartDate(from);
+        booking.setRentalEndDate(to);
+        booking.setCustomer(customer);
+        booking.setCar(car);
+        booking.setTotalPrice(totalPrice);
+        booking.setBookingStatus(BookingStatus.PENDING);
+        log.info("Saving booking for customer {} with car ID {} and total price {}", customer.getEmail(), car.getId(), totalPrice);
+        booking = bookingRepository.save(booking);
+        bookingAvailabilityIndex.updateAfterCommit(booking);
+        return booking;
+    }
+
+    private ReservationHoldService.ReservationHold getOwnHoldOrThrow(String holdId, String email) {
+        ReservationHoldService.ReservationHold hold = reservationHoldService.findActive(holdId)
+                .orElseThrow(() -> new RestApiException("Reservation hold " + holdId + " not found or expired",
+                        HttpStatus.NOT_FOUND));
+        if (!hold.customerEmail().equalsIgnoreCase(email)) {
+            throw new RestApiException("You can only use your own reservation holds", HttpStatus.FORBIDDEN);
+        }
+        return hold;
+    }
+
+    private ReservationHoldResponseDto mapHoldToDto(ReservationHoldService.ReservationHold hold) {
+        return new ReservationHoldResponseDto(hold.id(), hold.carId(), hold.from(), hold.to(), hold.expiresAt());
+    }
+
+    /**
+     * Блокирует авто до конца транзакции: внутри приложения - полосой блокировок {@link CarLockStripes},
+     * в БД - блокировкой строки авто, поэтому проверка занятости и сохранение бронирования
+     * одного авто не выполняются параллельно
+     */
+    private Car lockCar(Long carId) {
+        carLockStripes.lockUntilTransactionCompletion(carId);
+        return carRepository.findByIdForUpdate(carId)
+                .orElseThrow(() -> new RestApiException("Car not found"));
+    }
+
+    /**
+     * Блокирует несколько авто до конца транзакции, как {@link #lockCar(Long)}: полосы захватываются
+     * по возрастанию номера полосы, строки в БД - одним запросом по возрастанию id,
+     * поэтому параллельные пакетные операции не ждут друг друга по кругу
+     */
+    private void lockCars(Collection<Long> carIds) {
+        if (carIds.isEmpty()) {
+            return;
+        }
+        carLockStripes.lockAllUntilTransactionCompletion(carIds);
+        carRepository.findAllByIdForUpdate(carIds);
+    }
+
+    //проверка статуса авто, удержаний других клиентов и индекса занятости, положительный ответ подтверждается
+    //запросом к БД под блокировкой, так как индекс не видит бронирований, сохранённых другими экземплярами приложения
+    private boolean isCarAvailableUnderLock(Long carId, LocalDateTime from, LocalDateTime to, String email) {
+        return carService.checkIfCarAvailableByDates(carId, from, to, email)
+                && !bookingRepository.existsOverlappingBooking(carId, from, to, BookingStatus.BLOCKING_STATUSES);
+    }
+
+    //клиент нужен целиком (с ролью) для ответа, поэтому загружается одним запросом по id из токена
+    private Customer getCallerCustomer(AuthInfo caller) {
+        return customerRepository.findById(caller.getCustomerId())
+                .orElseThrow(() -> new RestApiException("Customer with email " + caller.getName() + " not found"));
     }
 }
\ No newline at end of file
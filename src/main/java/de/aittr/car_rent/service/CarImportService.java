@@ -0,0 +1,315 @@
+package de.aittr.car_rent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.aittr.car_rent.domain.dto.CarImportErrorDto;
+import de.aittr.car_rent.domain.dto.CarImportResultDto;
+import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.domain.entity.CarStatus;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.mapping.CarMappingService;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Потоковый импорт автопарка из CSV или NDJSON.
+ * <p>
+ * Файл читается построчно, каждая строка проверяется теми же правилами, что и при сохранении одного авто
+ * ({@link CarServiceImpl#validateNewCar(CarResponseDto)}), и ограничениями bean validation DTO и сущности {@link Car}.
+ * Корректные строки сохраняются порциями по {@code car.import.batch-size}, каждая порция - в отдельной транзакции.
+ * После сохранения порции контекст персистентности очищается: при open-in-view он привязан к запросу и иначе
+ * держал бы все импортированные авто до конца запроса. Поэтому в памяти одновременно находится не больше одной
+ * порции и ограниченного числа ошибок, независимо от размера файла.
+ * В результате возвращается номер последней строки сохранённой порции: при обрыве импорт можно продолжить
+ * со следующей строки, передав её в {@code startLine}.
+ * Снимок автопарка после импорта пересоздаётся в фоне ({@link FleetSnapshotService#requestRefresh()}),
+ * запрос импорта его не ждёт.
+ * </p>
+ */
+@Service
+@Slf4j
+public class CarImportService {
+
+    private static final List<String> CSV_COLUMNS = List.of(
+            "brand", "model", "year", "type", "fueltype", "transmissiontype", "dayrentalprice");
+
+    private final CarRepository carRepository;
+    private final CarMappingService carMappingService;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final ObjectReader carReader;
+    private final TransactionTemplate chunkTransaction;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public CarImportService(
+            CarRepository carRepository,
+            CarMappingService carMappingService,
+            FleetSnapshotService fleetSnapshotService,
+            EntityManager entityManager,
+            Validator validator,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${car.import.batch-size:500}") int batchSize,
+            @Value("${car.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.carRepository = carRepository;
+        this.carMappingService = carMappingService;
+        this.fleetSnapshotService = fleetSnapshotService;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.carReader = objectMapper.readerFor(CarResponseDto.class);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Формат импортируемого файла
+     */
+    public enum ImportFormat {
+        CSV,
+        NDJSON;
+
+        /**
+         * Определяет формат по Content-Type запроса
+         *
+         * @param contentType Content-Type запроса
+         * @return формат файла
+         */
+        public static ImportFormat fromContentType(String contentType) {
+            String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+            if (type.startsWith("text/csv")) {
+                return CSV;
+            }
+            if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+                return NDJSON;
+            }
+            throw new RestApiException("Unsupported import content type " + contentType
+                    + ". Use text/csv or application/x-ndjson");
+        }
+    }
+
+    /**
+     * Импортирует авто из потока. Строки до startLine пропускаются без проверки (заголовок CSV читается всегда)
+     *
+     * @param input     поток файла в UTF-8
+     * @param format    формат файла
+     * @param startLine номер строки, с которой начинается импорт (с 1)
+     * @return счётчики, ошибки по строкам и номер последней сохранённой строки
+     */
+    public CarImportResultDto importCars(InputStream input, ImportFormat format, long startLine) {
+        if (startLine < 1) {
+            throw new RestApiException("Start line must be positive");
+        }
+        ImportState state = new ImportState(startLine - 1);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (format == ImportFormat.CSV && columns == null) {
+                    columns = parseCsvHeader(line);
+                    state.lastCommittedLine = Math.max(state.lastCommittedLine, lineNumber);
+                    continue;
+                }
+                if (lineNumber < startLine || line.isBlank()) {
+                    continue;
+                }
+                state.processedLines++;
+                state.pendingLastLine = lineNumber;
+                try {
+                    CarResponseDto carDto = format == ImportFormat.CSV
+                            ? parseCsvRow(line, columns)
+                            : carReader.readValue(line);
+                    state.chunk.add(toValidCar(carDto));
+                } catch (IOException | RuntimeException e) {
+                    state.reject(lineNumber, describe(e));
+                }
+                if (state.chunk.size() >= batchSize && !saveChunk(state)) {
+                    return state.result(false);
+                }
+            }
+            boolean completed = saveChunk(state);
+            if (completed) {
+                state.lastCommittedLine = Math.max(state.lastCommittedLine, lineNumber);
+            }
+            return state.result(completed);
+        } catch (IOException e) {
+            log.error("Car import stopped after line {} because the upload could not be read", state.lastCommittedLine, e);
+            return state.result(false);
+        } finally {
+            if (state.imported > 0) {
+                fleetSnapshotService.requestRefresh();
+            }
+            log.info("Car import finished: {} lines processed, {} cars imported, {} lines rejected, last saved line {}",
+                    state.processedLines, state.imported, state.failed, state.lastCommittedLine);
+        }
+    }
+
+    //сохраняет накопленную порцию в отдельной транзакции, при ошибке импорт останавливается
+    //сохранённые авто отсоединяются от контекста персистентности, чтобы он не рос вместе с файлом
+    private boolean saveChunk(ImportState state) {
+        if (!state.chunk.isEmpty()) {
+            try {
+                chunkTransaction.executeWithoutResult(status -> {
+                    carRepository.saveAll(state.chunk);
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+            } catch (RuntimeException e) {
+                log.error("Car import chunk ending at line {} was not saved", state.pendingLastLine, e);
+                state.reject(state.pendingLastLine, "Chunk ending at this line was not saved, resume from line "
+                        + (state.lastCommittedLine + 1) + ": " + describe(e));
+                return false;
+            }
+            state.imported += state.chunk.size();
+            state.chunk.clear();
+        }
+        state.lastCommittedLine = Math.max(state.lastCommittedLine, state.pendingLastLine);
+        return true;
+    }
+
+    private Car toValidCar(CarResponseDto carDto) {
+        checkConstraints(validator.validate(carDto));
+        CarServiceImpl.validateNewCar(carDto);
+        Car car = carMappingService.mapDtoToEntity(carDto);
+        if (car.getCarStatus() == null) {
+            car.setCarStatus(CarStatus.AVAILABLE);
+        }
+        checkConstraints(validator.validate(car));
+        return car;
+    }
+
+    private static <T> void checkConstraints(Set<ConstraintViolation<T>> violations) {
+        if (!violations.isEmpty()) {
+            throw new RestApiException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private static Map<String, Integer> parseCsvHeader(String line) {
+        List<String> header = parseCsvLine(line.startsWith("\uFEFF") ? line.substring(1) : line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = CSV_COLUMNS.stream().filter(column -> !columns.containsKey(column)).toList();
+        if (!missing.isEmpty()) {
+            throw new RestApiException("CSV header must contain columns " + CSV_COLUMNS + ", missing " + missing);
+        }
+        return columns;
+    }
+
+    private static CarResponseDto parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> values = parseCsvLine(line);
+        String year = column(values, columns, "year");
+        String price = column(values, columns, "dayrentalprice");
+        return new CarResponseDto(
+                null,
+                column(values, columns, "brand"),
+                column(values, columns, "model"),
+                year == null ? 0 : Integer.parseInt(year),
+                column(values, columns, "type"),
+                column(values, columns, "fueltype"),
+                column(values, columns, "transmissiontype"),
+                true,
+                column(values, columns, "carstatus"),
+                price == null ? null : new BigDecimal(price),
+                null);
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    //разбор строки CSV с разделителем "," и экранированием значений двойными кавычками
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof NumberFormatException) {
+            return "Invalid number: " + e.getMessage();
+        }
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    //состояние одного импорта: текущая порция, счётчики и ограниченный список ошибок
+    private final class ImportState {
+
+        private final List<Car> chunk = new ArrayList<>(batchSize);
+        private final List<CarImportErrorDto> errors = new ArrayList<>();
+        private long processedLines;
+        private long imported;
+        private long failed;
+        private long lastCommittedLine;
+        private long pendingLastLine;
+
+        private ImportState(long lastCommittedLine) {
+            this.lastCommittedLine = lastCommittedLine;
+            this.pendingLastLine = lastCommittedLine;
+        }
+
+        private void reject(long line, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new CarImportErrorDto(line, message));
+            }
+        }
+
+        private CarImportResultDto result(boolean completed) {
+            return new CarImportResultDto(completed, processedLines, imported, failed, lastCommittedLine,
+                    List.copyOf(errors), failed > errors.size());
+        }
+    }
+}
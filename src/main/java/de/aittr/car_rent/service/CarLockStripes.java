@@ -0,0 +1,97 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Блокировки авто внутри приложения, разбитые на полосы.
+ * <p>
+ * Авто с одинаковым остатком от деления id на число полос делят одну блокировку, поэтому бронирования
+ * одного авто выполняются по очереди, а бронирования разных авто - как правило параллельно.
+ * Блокировка держится до завершения текущей транзакции (после коммита или отката),
+ * чтобы следующая транзакция увидела сохранённое бронирование.
+ * Между экземплярами приложения бронирования упорядочивает блокировка строки авто в БД.
+ * Пакетные операции захватывают полосы нескольких авто по возрастанию номера полосы, поэтому
+ * параллельные пакеты не могут ждать друг друга по кругу.
+ * </p>
+ */
+@Component
+@Slf4j
+public class CarLockStripes {
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+
+    public CarLockStripes(
+            @Value("${booking.car-lock.stripes:64}") int stripeCount,
+            @Value("${booking.car-lock.timeout-millis:5000}") long timeoutMillis) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Захватывает блокировку авто до завершения текущей транзакции
+     *
+     * @param carId id авто
+     */
+    public void lockUntilTransactionCompletion(Long carId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Car lock can only be taken inside a transaction");
+        }
+        lock(stripeIndex(carId), carId);
+    }
+
+    /**
+     * Захватывает блокировки нескольких авто до завершения текущей транзакции
+     * в порядке возрастания номера полосы
+     *
+     * @param carIds id авто
+     */
+    public void lockAllUntilTransactionCompletion(Collection<Long> carIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Car lock can only be taken inside a transaction");
+        }
+        //на каждую полосу - первое по возрастанию id авто, для сообщения при таймауте
+        SortedMap<Integer, Long> carIdByStripe = new TreeMap<>();
+        carIds.stream().sorted().forEach(carId -> carIdByStripe.putIfAbsent(stripeIndex(carId), carId));
+        carIdByStripe.forEach(this::lock);
+    }
+
+    private int stripeIndex(Long carId) {
+        return Math.floorMod(carId.hashCode(), stripes.length);
+    }
+
+    private void lock(int stripeIndex, Long carId) {
+        ReentrantLock lock = stripes[stripeIndex];
+        try {
+            if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for the lock of car {}", carId);
+                throw new RestApiException("Car with id " + carId + " is being booked by another request. Please try again",
+                        HttpStatus.CONFLICT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestApiException("Booking request was interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+}
@@ -1,39 +1,88 @@
 package de.aittr.car_rent.service;
 
+import de.aittr.car_rent.domain.dto.BatchItemResultDto;
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.CarFacetCombinationDto;
+import de.aittr.car_rent.domain.dto.CarFacetsResponseDto;
 import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.dto.CarSearchCriteriaDto;
+import de.aittr.car_rent.domain.dto.CarSearchResponseDto;
+import de.aittr.car_rent.domain.dto.CarStatusBatchRequestDto;
 import de.aittr.car_rent.domain.dto.CarUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.FleetVersionDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.domain.entity.*;
 import de.aittr.car_rent.exception_handling.exceptions.CarNotFoundException;
 import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
 import de.aittr.car_rent.repository.BookingRepository;
 import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.repository.CarSpecifications;
 import de.aittr.car_rent.service.interfaces.CarService;
 import de.aittr.car_rent.service.mapping.CarMappingService;
+import de.aittr.car_rent.service.mapping.EnumMapper;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.Year;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CarServiceImpl implements CarService {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final Sort SEARCH_SORT = Sort.by("dayRentalPrice", "id");
+    //ширина диапазона стоимости аренды в день для фасета цены
+    private static final int PRICE_BUCKET_WIDTH = 50;
+    //поля, по которым разрешена сортировка списков авто (совпадают у DTO и сущности)
+    private static final Map<String, Comparator<CarResponseDto>> CAR_SORT = Map.of(
+            "id", Comparator.comparing(CarResponseDto::id),
+            "brand", Comparator.comparing(CarResponseDto::brand, String.CASE_INSENSITIVE_ORDER),
+            "model", Comparator.comparing(CarResponseDto::model, String.CASE_INSENSITIVE_ORDER),
+            "year", Comparator.comparingInt(CarResponseDto::year),
+            "dayRentalPrice", Comparator.comparing(CarResponseDto::dayRentalPrice),
+            "carStatus", Comparator.comparing(CarResponseDto::carStatus, Comparator.nullsLast(Comparator.naturalOrder())));
+
     private final CarRepository carRepository;
     private final CarMappingService carMappingService;
     private final BookingRepository bookingRepository;
     private final CarImageService carImageService;
+    private final BookingAvailabilityIndex bookingAvailabilityIndex;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final ReservationHoldService reservationHoldService;
+    private final CarLockStripes carLockStripes;
 
     @Override
     public CarResponseDto saveCar(CarResponseDto carDto) {
+        validateNewCar(carDto);
+        Car entity = carMappingService.mapDtoToEntity(carDto);
+        entity = carRepository.save(entity);
+        fleetSnapshotService.refreshAfterCommit();
+        return carMappingService.mapEntityToDto(entity);
+    }
+
+    /**
+     * Проверяет данные нового авто, общие правила для сохранения одного авто и импорта автопарка
+     *
+     * @param carDto данные авто
+     */
+    static void validateNewCar(CarResponseDto carDto) {
         if (carDto == null) {
             throw new RestApiException("Received no information about car");
         }
@@ -58,48 +107,16 @@ public class CarServiceImpl implements CarService {
         if (carDto.dayRentalPrice() == null || carDto.dayRentalPrice().compareTo(BigDecimal.ZERO) <= 0) {
             throw new RestApiException("Rental price must be greater than zero");
         }
-        Car entity = carMappingService.mapDtoToEntity(carDto);
-        entity = carRepository.save(entity);
-        return carMappingService.mapEntityToDto(entity);
     }
 
     @Override
-    public List<CarResponseDto> getAllCars() {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        Set<CarStatus> allowedCarStatuses = Set.of(
-                CarStatus.RENTED,
-                CarStatus.AVAILABLE,
-                CarStatus.UNDER_INSPECTION
-        );
-        return carList.stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getCarStatus() != null)
-                .filter((car -> allowedCarStatuses.contains(car.getCarStatus())))
-                .sorted(Comparator.comparing(Car::getType))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
-
+    public PageResponseDto<CarResponseDto> getAllCars(Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().publicCars(), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getAllCarsToAdmin() {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        return carRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(Car::isActive)
-                        .thenComparing(Car::getCarStatus)
-                        .thenComparing(Car::getType)
-                        .thenComparing(Car::getTransmissionType)
-                        .thenComparing(Car::getBrand)
-                        .thenComparing(Car::getYear))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+    public PageResponseDto<CarResponseDto> getAllCarsToAdmin(Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().adminCars(), pageable, withTotal);
     }
 
     @Override
@@ -107,7 +124,9 @@ public class CarServiceImpl implements CarService {
         if (id == null) {
             throw new RestApiException("Enter car id");
         }
-        return carMappingService.mapEntityToDto(getOrThrow(id));
+        return fleetSnapshotService.current()
+                .findById(id)
+                .orElseThrow(() -> new CarNotFoundException(id));
     }
 
     @Transactional
@@ -120,127 +139,123 @@ public class CarServiceImpl implements CarService {
     }
 
     @Override
-    public List<CarResponseDto> getCarsByBrand(String brand) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
+    public PageResponseDto<CarResponseDto> getCarsByBrand(String brand, Pageable pageable, boolean withTotal) {
         if (brand == null || brand.trim().isBlank() || brand.isEmpty()) {
             throw new RestApiException("Enter car brand");
         }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getBrand().equalsIgnoreCase(brand.trim()))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+        return pageOfFleet(currentFleetOrThrow().activeByBrand(brand), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByModel(String model) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
+    public PageResponseDto<CarResponseDto> getCarsByModel(String model, Pageable pageable, boolean withTotal) {
         if (model == null || model.trim().isBlank() || model.isEmpty()) {
             throw new RestApiException("Enter car model");
         }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getModel().equalsIgnoreCase(model.trim()))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+        return pageOfFleet(currentFleetOrThrow().activeByModel(model), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByYear(int year) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
+    public PageResponseDto<CarResponseDto> getCarsByYear(int year, Pageable pageable, boolean withTotal) {
         int currentYear = Year.now().getValue();
         if (year > currentYear) {
             throw new RestApiException("Year must be in the past");
         }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getYear() == year)
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+        return pageOfFleet(currentFleetOrThrow().activeByYear(year), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByType(CarType type) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getType().equals(type))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+    public PageResponseDto<CarResponseDto> getCarsByType(CarType type, Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().activeByType(type), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByFuelType(CarFuelType fuelType) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getFuelType().equals(fuelType))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+    public PageResponseDto<CarResponseDto> getCarsByFuelType(
+            CarFuelType fuelType, Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().activeByFuelType(fuelType), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByTransmissionType(CarTransmissionType transmissionType) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getTransmissionType().equals(transmissionType))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+    public PageResponseDto<CarResponseDto> getCarsByTransmissionType(
+            CarTransmissionType transmissionType, Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().activeByTransmissionType(transmissionType), pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByCarStatus(CarStatus carStatus) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> Objects.nonNull(car.getCarStatus()) && car.getCarStatus().equals(carStatus))
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+    public PageResponseDto<CarResponseDto> getCarsByCarStatus(
+            CarStatus carStatus, Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().activeByCarStatus(carStatus), pageable, withTotal);
+    }
+
+    @Override
+    public PageResponseDto<CarResponseDto> getCarsByDayRentalPrice(
+            BigDecimal minDayRentalPrice, BigDecimal maxDayRentalPrice, Pageable pageable, boolean withTotal) {
+        return pageOfFleet(currentFleetOrThrow().activeByDayRentalPrice(minDayRentalPrice, maxDayRentalPrice),
+                pageable, withTotal);
     }
 
     @Override
-    public List<CarResponseDto> getCarsByDayRentalPrice(BigDecimal minDayRentalPrice, BigDecimal maxDayRentalPrice) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
+    public FleetVersionDto getFleetVersion() {
+        FleetSnapshot fleet = fleetSnapshotService.current();
+        return new FleetVersionDto(fleet.version(), fleet.createdAt());
+    }
+
+    //текущий снимок автопарка, если в нём есть хотя бы одно авто
+    private FleetSnapshot currentFleetOrThrow() {
+        FleetSnapshot fleet = fleetSnapshotService.current();
+        if (fleet.isEmpty()) {
             throw new RestApiException("No cars found");
         }
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .filter(car -> car.getDayRentalPrice().compareTo(minDayRentalPrice) >= 0 &&
-                        car.getDayRentalPrice().compareTo(maxDayRentalPrice) <= 0)
-                .sorted(Comparator.comparing(Car::getDayRentalPrice))
-                .map(carMappingService::mapEntityToDto)
+        return fleet;
+    }
+
+    /**
+     * Страница списка из снимка автопарка: сортируется и вырезается в памяти без запросов к БД.
+     * Без явной сортировки сохраняется порядок списка в снимке, он уже однозначен
+     */
+    private static PageResponseDto<CarResponseDto> pageOfFleet(
+            List<CarResponseDto> cars, Pageable pageable, boolean withTotal) {
+        Pageable page = pageable;
+        Stream<CarResponseDto> ordered = cars.stream();
+        if (pageable.getSort().isSorted()) {
+            page = Paging.withStableSort(pageable, CAR_SORT.keySet(), "cars");
+            Comparator<CarResponseDto> order = null;
+            for (Sort.Order sortOrder : page.getSort()) {
+                Comparator<CarResponseDto> field = CAR_SORT.get(sortOrder.getProperty());
+                field = sortOrder.isDescending() ? field.reversed() : field;
+                order = order == null ? field : order.thenComparing(field);
+            }
+            ordered = ordered.sorted(order);
+        }
+        long offset = Math.min(page.getOffset(), cars.size());
+        List<CarResponseDto> content = ordered
+                .skip(offset)
+                .limit(page.getPageSize())
                 .toList();
+        boolean hasNext = offset + content.size() < cars.size();
+        return PageResponseDto.of(new SliceImpl<>(content, page, hasNext), withTotal ? (long) cars.size() : null);
+    }
+
+    /**
+     * Страница авто по условию из БД: читается size + 1 строк со смещением страницы,
+     * COUNT выполняется только по запросу общего количества
+     */
+    private PageResponseDto<CarResponseDto> findCarsPage(
+            Specification<Car> specification, Pageable pageable, boolean withTotal) {
+        Pageable page = Paging.withStableSort(pageable, CAR_SORT.keySet(), "cars");
+        Window<Car> window = carRepository.findBy(specification, query -> query
+                .sortBy(page.getSort())
+                .limit(page.getPageSize())
+                .scroll(scrollPosition(page)));
+        return Paging.toResponse(
+                new SliceImpl<>(window.getContent(), page, window.hasNext()),
+                carMappingService::mapEntityToDto,
+                withTotal,
+                () -> carRepository.count(specification));
+    }
+
+    //позиция смещения указывает на последнюю строку предыдущей страницы, выдача начинается со следующей
+    private static ScrollPosition scrollPosition(Pageable page) {
+        return page.getOffset() == 0 ? ScrollPosition.offset() : ScrollPosition.offset(page.getOffset() - 1);
     }
 
     @Override
@@ -248,6 +263,15 @@ public class CarServiceImpl implements CarService {
             Long carId,
             LocalDateTime from,
             LocalDateTime to) {
+        return checkIfCarAvailableByDates(carId, from, to, null);
+    }
+
+    @Override
+    public boolean checkIfCarAvailableByDates(
+            Long carId,
+            LocalDateTime from,
+            LocalDateTime to,
+            String holdOwnerEmail) {
         Car checkingCar = getOrThrow(carId);
         if(checkingCar.getCarStatus() == CarStatus.UNDER_REPAIR){
             throw new RestApiException("Car with id " + checkingCar.getId() + " is currently under repair. Please choose another car");
@@ -258,14 +282,13 @@ public class CarServiceImpl implements CarService {
         if(checkingCar.getCarStatus() == CarStatus.DELETED){
           throw new RestApiException("Car with id " + checkingCar.getId() + " is currently out of stock for renting. Please choose another car");
         }
-        return bookingRepository.findAllByCarId(carId)
-                .stream()
-                .filter(booking ->
-                        booking.getBookingStatus() == BookingStatus.PENDING ||
-                        booking.getBookingStatus() == BookingStatus.ACTIVE)
-                .noneMatch(booking ->
-                        booking.getRentalStartDate().isBefore(to) &&
-                                booking.getRentalEndDate().isAfter(from));
+        if (reservationHoldService.hasConflictingHold(carId, from, to, holdOwnerEmail)) {
+            return false;
+        }
+        if (bookingAvailabilityIndex.isReady()) {
+            return !bookingAvailabilityIndex.hasOverlap(carId, from, to);
+        }
+        return !bookingRepository.existsOverlappingBooking(carId, from, to, BookingStatus.BLOCKING_STATUSES);
     }
 
     @Override
@@ -279,9 +302,52 @@ public class CarServiceImpl implements CarService {
         existCar.setDayRentalPrice(carDto.dayRentalPrice());
         existCar.setCarStatus(CarStatus.valueOf(carDto.carStatus()));
         carRepository.save(existCar);
+        fleetSnapshotService.refreshAfterCommit();
         return carMappingService.mapEntityToDto(existCar);
     }
 
+    @Override
+    @Transactional
+    public BatchResultDto updateCarStatuses(CarStatusBatchRequestDto batchRequestDto) {
+        CarStatus carStatus = EnumMapper.toEnumIgnoreCase(CarStatus.class, batchRequestDto.carStatus());
+        if (carStatus == CarStatus.DELETED) {
+            throw new RestApiException("Cars can be deleted only one by one");
+        }
+        List<Long> ids = batchRequestDto.carIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+        //авто блокируются так же, как при бронировании: полосы по возрастанию номера, строки по возрастанию id,
+        //поэтому пакет не перезаписывает статус, изменённый параллельным бронированием
+        Map<Long, Car> carsById = new HashMap<>();
+        if (!ids.isEmpty()) {
+            carLockStripes.lockAllUntilTransactionCompletion(ids);
+            carRepository.findAllByIdForUpdate(ids).forEach(car -> carsById.put(car.getId(), car));
+        }
+        List<BatchItemResultDto> results = new ArrayList<>(ids.size());
+        List<Car> changedCars = new ArrayList<>();
+        for (Long id : ids) {
+            Car car = carsById.get(id);
+            if (car == null) {
+                results.add(BatchItemResultDto.failure(id, "Car with id " + id + " not found"));
+            } else if (!car.isActive()) {
+                results.add(BatchItemResultDto.failure(id, "Car with id " + id + " is deleted"));
+            } else {
+                car.setCarStatus(carStatus);
+                changedCars.add(car);
+                results.add(BatchItemResultDto.success(id, carStatus));
+            }
+        }
+        carRepository.saveAll(changedCars);
+        if (!changedCars.isEmpty()) {
+            fleetSnapshotService.refreshAfterCommit();
+        }
+        BatchResultDto result = BatchResultDto.of(results);
+        log.info("Car status {} applied in batch: {} succeeded, {} failed", carStatus, result.succeeded(), result.failed());
+        return result;
+    }
+
     @Override
     @Transactional
     public CarResponseDto deleteCarById(Long id) {
@@ -289,17 +355,13 @@ public class CarServiceImpl implements CarService {
             throw new RestApiException("Enter car id");
         }
         Car existingCar = this.getOrThrow(id);
-        List<Booking> carBookingdList = bookingRepository.findAllByCarId(id)
-                .stream()
-                .filter(booking -> List.of(BookingStatus.ACTIVE, BookingStatus.PENDING)
-                        .contains(booking.getBookingStatus()))
-                .toList();
-        if(!carBookingdList.isEmpty()) {
+        if (bookingRepository.existsByCarIdAndBookingStatusIn(id, List.of(BookingStatus.ACTIVE, BookingStatus.PENDING))) {
             throw new RestApiException("Car id " + id + " has opened bookings");
         }
         existingCar.setActive(false);
         existingCar.setCarStatus(CarStatus.DELETED);
         carRepository.save(existingCar);
+        fleetSnapshotService.refreshAfterCommit();
         return carMappingService.mapEntityToDto(existingCar);
     }
 
@@ -316,52 +378,30 @@ public class CarServiceImpl implements CarService {
         restoredCar.setActive(true);
         restoredCar.setCarStatus(CarStatus.AVAILABLE);
         carRepository.save(restoredCar);
+        fleetSnapshotService.refreshAfterCommit();
         return carMappingService.mapEntityToDto(restoredCar);
     }
 
     @Override
-    @Transactional
-    public List<CarResponseDto> getAllAvailableCarsByDates(
+    public PageResponseDto<CarResponseDto> getAllAvailableCarsByDates(
             LocalDateTime startDateTime,
-            LocalDateTime endDateTime) {
-        List<Car> carList = carRepository.findAll();
-        if (carList.isEmpty()) {
-            throw new RestApiException("No cars found");
-        }
+            LocalDateTime endDateTime,
+            Pageable pageable,
+            boolean withTotal) {
         if (startDateTime == null || endDateTime == null) {
             throw new RestApiException("Start and end dates cannot be null");
         }
-        // Округляем время начала до следующей целой минуты
-        LocalDateTime roundedStartDateTime = startDateTime
-                .withSecond(0)
-                .withNano(0)
-                .plusMinutes(1);
-
-        if (roundedStartDateTime.isBefore(LocalDateTime.now())) {
-            throw new RestApiException("Start date and time must be in the future");
-        }
-        if (endDateTime.isBefore(roundedStartDateTime)) {
-            throw new RestApiException("End date and time must be after the start date and time");
-        }
-        return carRepository.findAll()
-                .stream()
-                .filter(car -> {
-                    List<Booking> bookings = bookingRepository.findAllByCarId(car.getId());
-                    if (bookings == null || bookings.isEmpty()) {
-                        return true;
-                    }
-                    return bookings.stream()
-                            .noneMatch(booking ->
-                                    booking.getRentalStartDate().isBefore(endDateTime) &&
-                                            booking.getRentalEndDate().isAfter(roundedStartDateTime)
-                            );
-                })
-                .map(carMappingService::mapEntityToDto)
-                .toList();
+        CarSearchCriteriaDto criteria = new CarSearchCriteriaDto(
+                startDateTime, endDateTime, null, null, null, null, null, null);
+        PageResponseDto<CarResponseDto> page = findCarsPage(buildBaseSearchSpecification(criteria), pageable, withTotal);
+        if (page.content().isEmpty() && fleetSnapshotService.current().isEmpty()) {
+            throw new RestApiException("No cars found");
+        }
+        return page;
     }
 
     @Override
-    public List<CarResponseDto> filterAvailableCars(
+    public PageResponseDto<CarResponseDto> filterAvailableCars(
             LocalDateTime startDateTime,
             LocalDateTime endDateTime,
             List<String> brand,
@@ -369,62 +409,187 @@ public class CarServiceImpl implements CarService {
             List<String> fuel,
             List<String> transmissionType,
             BigDecimal minPrice,
-            BigDecimal maxPrice) {
-        //log.info("Start filtering available cars from [{}] to [{}]", startDateTime, endDateTime);
+            BigDecimal maxPrice,
+            Pageable pageable,
+            boolean withTotal) {
         if (startDateTime == null || endDateTime == null) {
-            //log.warn("❗️ Start or end date is null");
             throw new RestApiException("Start and end dates cannot be null");
         }
-        // Округляем время начала до следующей целой минуты
-        LocalDateTime roundedStartDateTime = startDateTime
-                .withSecond(0)
-                .withNano(0)
-                .plusMinutes(1);
-        //log.info("Rounded start time to [{}]", roundedStartDateTime);
-        if (roundedStartDateTime.isBefore(LocalDateTime.now())) {
-            //log.warn("❗️ Rounded start time [{}] is in the past", roundedStartDateTime);
-            throw new RestApiException("Start date and time must be in the future");
-        }
-        if (endDateTime.isBefore(roundedStartDateTime)) {
-            //log.warn("❗️ End time [{}] is before rounded start time [{}]", endDateTime, roundedStartDateTime);
-            throw new RestApiException("End date and time must be after the start date and time");
-        }
-        List<CarResponseDto> availableCars = getAllAvailableCarsByDates(roundedStartDateTime, endDateTime);
-        //log.info("✅ Total available cars by date: {}", availableCars.size());
-
-        List<CarResponseDto> filteredCars = availableCars.stream()
-                .peek(car -> log.debug("🔍 Checking car: id={}, brand={}, type={}, fuel={}, transmission={}, price={}",
-                        car.id(), car.brand(), car.type(), car.fuelType(), car.transmissionType(), car.dayRentalPrice()))
-                .filter(car ->
-                        brand == null || brand.isEmpty() ||
-                                brand.stream().anyMatch(item -> item.equalsIgnoreCase(car.brand())))
-                .filter(car ->
-                        type == null || type.isEmpty() ||
-                                type.stream().anyMatch(item -> item.equalsIgnoreCase(car.type())))
-                .filter(car ->
-                        fuel == null || fuel.isEmpty() ||
-                                fuel.stream().anyMatch(item -> item.equalsIgnoreCase(car.fuelType())))
-                .filter(car ->
-                        transmissionType == null || transmissionType.isEmpty() ||
-                                transmissionType.stream().anyMatch(item -> item.equalsIgnoreCase(car.transmissionType())))
-                .filter(car ->
-                        (minPrice == null || car.dayRentalPrice().compareTo(minPrice) >= 0) &&
-                                (maxPrice == null || car.dayRentalPrice().compareTo(maxPrice) <= 0))
-                .sorted(Comparator.comparing(CarResponseDto::dayRentalPrice))
+        CarSearchCriteriaDto criteria = new CarSearchCriteriaDto(
+                startDateTime, endDateTime, brand, type, fuel, transmissionType, minPrice, maxPrice);
+        return findCarsPage(buildSearchSpecification(criteria), pageable, withTotal);
+    }
+
+    @Override
+    public CarSearchResponseDto searchCars(CarSearchCriteriaDto criteria, String cursor, int size) {
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new RestApiException("Page size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        Specification<Car> specification = buildSearchSpecification(criteria);
+        if (cursor != null && !cursor.isBlank()) {
+            SearchCursor after = decodeSearchCursor(cursor);
+            specification = specification.and(
+                    CarSpecifications.afterPriceAndId(after.dayRentalPrice(), after.id()));
+        }
+        List<Car> foundCars = carRepository.findBy(specification, query -> query
+                .sortBy(SEARCH_SORT)
+                .limit(size + 1)
+                .all());
+        boolean hasNextPage = foundCars.size() > size;
+        List<Car> pageCars = hasNextPage ? foundCars.subList(0, size) : foundCars;
+        String nextCursor = hasNextPage ? encodeSearchCursor(pageCars.get(size - 1)) : null;
+        return new CarSearchResponseDto(
+                pageCars.stream()
+                        .map(carMappingService::mapEntityToDto)
+                        .toList(),
+                nextCursor);
+    }
+
+    @Override
+    public CarFacetsResponseDto getCarFacets(CarSearchCriteriaDto criteria) {
+        Set<String> selectedBrands = trimValues(criteria.brand()).stream()
+                .map(brand -> brand.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        Set<CarType> selectedTypes = parseEnums(CarType.class, criteria.type());
+        Set<CarFuelType> selectedFuelTypes = parseEnums(CarFuelType.class, criteria.fuel());
+        Set<CarTransmissionType> selectedTransmissionTypes =
+                parseEnums(CarTransmissionType.class, criteria.transmissionType());
+
+        // Период аренды отбирается в БД, а выбранные значения фасетов и цена применяются здесь:
+        // счётчики фасета учитывают выбор по всем остальным фасетам, кроме него самого
+        List<CarFacetCombinationDto> combinations = carRepository.countFacetCombinations(
+                buildBaseSearchSpecification(criteria),
+                CarSpecifications.dayRentalPriceBetween(criteria.minPrice(), criteria.maxPrice()),
+                PRICE_BUCKET_WIDTH);
+
+        Map<String, Long> brands = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, Long> types = new TreeMap<>();
+        Map<String, Long> fuelTypes = new TreeMap<>();
+        Map<String, Long> transmissionTypes = new TreeMap<>();
+        Map<Integer, Long> priceBuckets = new TreeMap<>();
+        for (CarFacetCombinationDto combination : combinations) {
+            boolean brandMatches = selectedBrands.isEmpty()
+                    || selectedBrands.contains(combination.brand().toLowerCase(Locale.ROOT));
+            boolean typeMatches = selectedTypes.isEmpty() || selectedTypes.contains(combination.type());
+            boolean fuelTypeMatches = selectedFuelTypes.isEmpty()
+                    || selectedFuelTypes.contains(combination.fuelType());
+            boolean transmissionTypeMatches = selectedTransmissionTypes.isEmpty()
+                    || selectedTransmissionTypes.contains(combination.transmissionType());
+            boolean priceMatches = combination.priceMatches();
+            long count = combination.count();
+
+            if (typeMatches && fuelTypeMatches && transmissionTypeMatches && priceMatches) {
+                brands.merge(combination.brand(), count, Long::sum);
+            }
+            if (brandMatches && fuelTypeMatches && transmissionTypeMatches && priceMatches) {
+                types.merge(combination.type().name(), count, Long::sum);
+            }
+            if (brandMatches && typeMatches && transmissionTypeMatches && priceMatches) {
+                fuelTypes.merge(combination.fuelType().name(), count, Long::sum);
+            }
+            if (brandMatches && typeMatches && fuelTypeMatches && priceMatches) {
+                transmissionTypes.merge(combination.transmissionType().name(), count, Long::sum);
+            }
+            if (brandMatches && typeMatches && fuelTypeMatches && transmissionTypeMatches) {
+                priceBuckets.merge(combination.priceBucket(), count, Long::sum);
+            }
+        }
+
+        Map<String, Long> priceRanges = new LinkedHashMap<>();
+        priceBuckets.forEach((bucket, count) -> priceRanges.put(
+                bucket * PRICE_BUCKET_WIDTH + "-" + (bucket + 1) * PRICE_BUCKET_WIDTH, count));
+        return new CarFacetsResponseDto(brands, types, fuelTypes, transmissionTypes, priceRanges);
+    }
+
+    /**
+     * Собирает условие поиска активных авто в статусах {@link CarStatus#BOOKABLE_STATUSES} по критериям.
+     * Период аренды учитывается, только если заданы обе даты
+     */
+    private Specification<Car> buildSearchSpecification(CarSearchCriteriaDto criteria) {
+        return Specification.allOf(
+                buildBaseSearchSpecification(criteria),
+                CarSpecifications.dayRentalPriceBetween(criteria.minPrice(), criteria.maxPrice()),
+                CarSpecifications.brandIn(trimValues(criteria.brand())),
+                CarSpecifications.typeIn(parseEnums(CarType.class, criteria.type())),
+                CarSpecifications.fuelTypeIn(parseEnums(CarFuelType.class, criteria.fuel())),
+                CarSpecifications.transmissionTypeIn(
+                        parseEnums(CarTransmissionType.class, criteria.transmissionType())));
+    }
+
+    //условие поиска без фильтров по бренду, типу кузова, топливу, коробке передач и цене
+    private Specification<Car> buildBaseSearchSpecification(CarSearchCriteriaDto criteria) {
+        LocalDateTime startDateTime = criteria.startDateTime();
+        LocalDateTime endDateTime = criteria.endDateTime();
+        if ((startDateTime == null) != (endDateTime == null)) {
+            throw new RestApiException("Enter both start and end dates or none of them");
+        }
+        LocalDateTime roundedStartDateTime = null;
+        if (startDateTime != null) {
+            // Округляем время начала до следующей целой минуты
+            roundedStartDateTime = startDateTime
+                    .withSecond(0)
+                    .withNano(0)
+                    .plusMinutes(1);
+            if (roundedStartDateTime.isBefore(LocalDateTime.now())) {
+                throw new RestApiException("Start date and time must be in the future");
+            }
+            if (endDateTime.isBefore(roundedStartDateTime)) {
+                throw new RestApiException("End date and time must be after the start date and time");
+            }
+        }
+        return Specification.allOf(
+                CarSpecifications.isActive(),
+                CarSpecifications.carStatusIn(CarStatus.BOOKABLE_STATUSES),
+                CarSpecifications.availableBetween(roundedStartDateTime, endDateTime),
+                CarSpecifications.idNotIn(roundedStartDateTime == null
+                        ? Set.of()
+                        : reservationHoldService.findHeldCarIds(roundedStartDateTime, endDateTime)));
+    }
+
+    private List<String> trimValues(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        return values.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
                 .toList();
+    }
+
+    private <T extends Enum<T>> Set<T> parseEnums(Class<T> enumType, List<String> values) {
+        Set<T> result = EnumSet.noneOf(enumType);
+        for (String value : trimValues(values)) {
+            try {
+                result.add(EnumMapper.toEnumIgnoreCase(enumType, value));
+            } catch (IllegalArgumentException e) {
+                throw new RestApiException("Unknown " + enumType.getSimpleName() + " value: " + value);
+            }
+        }
+        return result;
+    }
+
+    //курсор поиска - последняя пара (стоимость аренды в день, id) страницы в Base64
+    private String encodeSearchCursor(Car lastCar) {
+        String value = lastCar.getDayRentalPrice().toPlainString() + ":" + lastCar.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
 
-        //log.info("✅ Cars after full filtering: {}", filteredCars.size());
-        return filteredCars;
+    private SearchCursor decodeSearchCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new SearchCursor(
+                    new BigDecimal(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RestApiException("Invalid search cursor");
+        }
     }
 
     @Override
     public List<String> getAllAvailableBrands() {
-        return carRepository.findAll()
-                .stream()
-                .filter(Car::isActive)
-                .map(Car::getBrand)
-                .distinct()
-                .collect(Collectors.toList());
+        return carRepository.findAllActiveBrands();
     }
 
     @Override
@@ -450,10 +615,14 @@ public class CarServiceImpl implements CarService {
         String imageUrl = carImageService.uploadToSpaces(fileName, file);
         car.setCarImage(imageUrl);
         carRepository.save(car);
+        fleetSnapshotService.refreshAfterCommit();
         log.info("Image uploaded successfully for car ID: {}", id);
         return imageUrl;
     }
 
+    private record SearchCursor(BigDecimal dayRentalPrice, Long id) {
+    }
+
     private String getFileExtension(String fileName) {
         if (fileName == null || !fileName.contains(".")) {
             throw new IllegalArgumentException("Invalid file format. File must have an extension.");
@@ -4,35 +4,43 @@ package de.aittr.car_rent.service;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.domain.entity.Customer;
 import de.aittr.car_rent.exception_handling.exceptions.CustomerNotFoundException;
+import de.aittr.car_rent.repository.BookingRepository;
 import de.aittr.car_rent.repository.CustomerRepository;
+import de.aittr.car_rent.security.service.RefreshTokenStore;
+import de.aittr.car_rent.security.service.TokenRevocationService;
 import de.aittr.car_rent.service.interfaces.CustomerService;
 import de.aittr.car_rent.service.mapping.BookingMapper;
 import de.aittr.car_rent.service.mapping.CustomerMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CustomerServiceImpl implements CustomerService {
 
+    //поля клиента, по которым разрешена сортировка страниц
+    private static final Set<String> CUSTOMER_SORT_FIELDS = Set.of("id", "firstName", "lastName", "email", "isActive");
+
     private final CustomerRepository repository;
+    private final BookingRepository bookingRepository;
     private final CustomerMapper customerMapper;
     private final BookingMapper bookingMapper;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenStore refreshTokenStore;
 
     @Override
-    public List<CustomerResponseDto> getAllCustomers() {
-        return repository
-                .findAll()
-                .stream()
-                .map(customerMapper::toDto)
-                .toList();
+    public PageResponseDto<CustomerResponseDto> getAllCustomers(Pageable pageable, boolean withTotal) {
+        Pageable page = Paging.withStableSort(pageable, CUSTOMER_SORT_FIELDS, "customers");
+        return Paging.toResponse(repository.findSliceBy(page), customerMapper::toDto, withTotal, repository::count);
     }
 
     @Override
@@ -53,10 +61,16 @@ public class CustomerServiceImpl implements CustomerService {
         Customer customer = repository
                 .findById(customerId)
                 .orElseThrow(CustomerNotFoundException::new);
+        String previousEmail = customer.getEmail();
         customer.setFirstName(updateDto.firstName());
         customer.setLastName(updateDto.lastName());
         customer.setEmail(updateDto.email());
-        return customerMapper.toDto(repository.save(customer));
+        CustomerResponseDto updatedCustomer = customerMapper.toDto(repository.save(customer));
+        //токены выданы на прежний email, после его смены они отзываются
+        if (previousEmail != null && !previousEmail.equalsIgnoreCase(updateDto.email())) {
+            revokeTokens(previousEmail);
+        }
+        return updatedCustomer;
     }
 
     @Override
@@ -64,6 +78,13 @@ public class CustomerServiceImpl implements CustomerService {
         Customer customer = getOrThrow(id);
         customer.setActive(false);
         repository.save(customer);
+        revokeTokens(customer.getEmail());
+    }
+
+    //отзываются и access-токены, и refresh-токен, иначе по refresh-токену был бы выдан новый access-токен
+    private void revokeTokens(String email) {
+        tokenRevocationService.revokeAll(email);
+        refreshTokenStore.revokeAll(email);
     }
 
     @Override
@@ -74,22 +95,32 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public List<BookingResponseDto> getAllBookingsByCustomerId(Long customerId) {
-        return getOrThrow(customerId)
-                .getBookings()
-                .stream()
-                .map(bookingMapper::mapEntityToDto)
-                .toList();
+    public PageResponseDto<BookingResponseDto> getAllBookingsByCustomerId(
+            Long customerId, Pageable pageable, boolean withTotal) {
+        if (!repository.existsById(customerId)) {
+            throw new CustomerNotFoundException();
+        }
+        return getCustomerBookingsPage(customerId, pageable, withTotal);
     }
 
     @Override
-    public List<BookingResponseDto> getAllBookingsByCustomerEmail(String email) {
-        return repository.findByEmail(email)
+    public PageResponseDto<BookingResponseDto> getAllBookingsByCustomerEmail(
+            String email, Pageable pageable, boolean withTotal) {
+        Long customerId = repository.findByEmail(email)
                 .orElseThrow(CustomerNotFoundException::new)
-                .getBookings()
-                .stream()
-                .map(bookingMapper::mapEntityToDto)
-                .toList();
+                .getId();
+        return getCustomerBookingsPage(customerId, pageable, withTotal);
+    }
+
+    //страница бронирований клиента читается запросом по customer_id, а не через коллекцию Customer.bookings
+    private PageResponseDto<BookingResponseDto> getCustomerBookingsPage(
+            Long customerId, Pageable pageable, boolean withTotal) {
+        Pageable page = Paging.withStableSort(pageable, BookingServiceImpl.BOOKING_SORT_FIELDS, "bookings");
+        return Paging.toResponse(
+                bookingRepository.findSliceByCustomerId(customerId, page),
+                bookingMapper::mapEntityToDto,
+                withTotal,
+                () -> bookingRepository.countByCustomerId(customerId));
     }
 
     @Override
@@ -1,19 +1,18 @@
 package de.aittr.car_rent.service;
 
 import de.aittr.car_rent.domain.entity.Customer;
+import de.aittr.car_rent.domain.entity.MailOutbox;
+import de.aittr.car_rent.repository.MailOutboxRepository;
 import de.aittr.car_rent.service.interfaces.ConfirmationService;
 import de.aittr.car_rent.service.interfaces.EmailService;
 import freemarker.cache.ClassTemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
-import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,12 +21,13 @@ public class EmailServiceImpl implements EmailService {
 
     @Value("${host.url}")
     private String hostUrl;
-    private final JavaMailSender sender;
+    private final MailOutboxRepository mailOutboxRepository;
     private final Configuration mailConfig;
     private final ConfirmationService confirmationService;
 
-    public EmailServiceImpl(JavaMailSender sender, Configuration mailConfig, ConfirmationService confirmationService) {
-        this.sender = sender;
+    public EmailServiceImpl(MailOutboxRepository mailOutboxRepository, Configuration mailConfig,
+                            ConfirmationService confirmationService) {
+        this.mailOutboxRepository = mailOutboxRepository;
         this.mailConfig = mailConfig;
         this.confirmationService = confirmationService;
 
@@ -35,23 +35,13 @@ public class EmailServiceImpl implements EmailService {
         mailConfig.setTemplateLoader(new ClassTemplateLoader(EmailServiceImpl.class, "/mail"));
     }
 
-    @Async
+    //письмо формируется сразу (вместе с кодом подтверждения) и записывается в mail_outbox в текущей транзакции,
+    //отправляет его MailOutboxRelay после коммита
     @Override
     public void sendConfirmationEmail(Customer customer) {
-        MimeMessage message = sender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
         String text = generateConfirmationEmail(customer);
-
-        try {
-            helper.setFrom("el.riu.m8@gmail.com");
-            helper.setTo(customer.getEmail());
-            helper.setSubject("Registration Confirmation");
-            helper.setText(text, true);
-
-            sender.send(message);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        mailOutboxRepository.save(new MailOutbox(customer.getEmail(), "Registration Confirmation", text,
+                LocalDateTime.now()));
     }
 
     private String generateConfirmationEmail(Customer customer) {
@@ -0,0 +1,251 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.entity.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Неизменяемый снимок автопарка для чтения.
+ * <p>
+ * Авто хранятся в массиве, отсортированном по стоимости аренды в день и id.
+ * Для каждого значения бренда, модели, года выпуска и перечислений хранится битовая маска позиций
+ * в этом массиве, поэтому фильтр выполняется пересечением масок, а фильтр по цене - бинарным поиском.
+ * Снимок не изменяется после создания и читается без блокировок, номер версии растёт с каждым новым снимком.
+ * </p>
+ */
+public final class FleetSnapshot {
+
+    private static final Comparator<Car> PRICE_ORDER = Comparator
+            .comparing(Car::getDayRentalPrice, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Car::getId);
+
+    private static final Comparator<Car> PUBLIC_ORDER = Comparator
+            .comparing(Car::getType)
+            .thenComparing(Car::getId);
+
+    private static final Comparator<Car> ADMIN_ORDER = Comparator
+            .comparing(Car::isActive)
+            .thenComparing(Car::getCarStatus)
+            .thenComparing(Car::getType)
+            .thenComparing(Car::getTransmissionType)
+            .thenComparing(Car::getBrand)
+            .thenComparing(Car::getYear);
+
+    private final long version;
+    private final Instant createdAt;
+    private final CarResponseDto[] cars;
+    private final BigDecimal[] prices;
+    private final Map<Long, Integer> positionById;
+    private final BitSet active;
+    private final Map<String, BitSet> byBrand;
+    private final Map<String, BitSet> byModel;
+    private final Map<Integer, BitSet> byYear;
+    private final Map<CarType, BitSet> byType;
+    private final Map<CarFuelType, BitSet> byFuelType;
+    private final Map<CarTransmissionType, BitSet> byTransmissionType;
+    private final Map<CarStatus, BitSet> byCarStatus;
+    private final List<CarResponseDto> publicCars;
+    private final List<CarResponseDto> adminCars;
+
+    private FleetSnapshot(long version, List<Car> fleet, Function<Car, CarResponseDto> mapper) {
+        this.version = version;
+        this.createdAt = Instant.now();
+        List<Car> sortedFleet = fleet.stream().sorted(PRICE_ORDER).toList();
+        int size = sortedFleet.size();
+        this.cars = new CarResponseDto[size];
+        this.prices = new BigDecimal[size];
+        Map<Long, Integer> positions = new HashMap<>();
+        this.active = new BitSet(size);
+        Map<String, BitSet> brands = new HashMap<>();
+        Map<String, BitSet> models = new HashMap<>();
+        Map<Integer, BitSet> years = new HashMap<>();
+        Map<CarType, BitSet> types = new EnumMap<>(CarType.class);
+        Map<CarFuelType, BitSet> fuelTypes = new EnumMap<>(CarFuelType.class);
+        Map<CarTransmissionType, BitSet> transmissionTypes = new EnumMap<>(CarTransmissionType.class);
+        Map<CarStatus, BitSet> carStatuses = new EnumMap<>(CarStatus.class);
+        Map<Long, CarResponseDto> dtoById = new HashMap<>();
+
+        for (int position = 0; position < size; position++) {
+            Car car = sortedFleet.get(position);
+            CarResponseDto dto = mapper.apply(car);
+            cars[position] = dto;
+            prices[position] = car.getDayRentalPrice();
+            positions.put(car.getId(), position);
+            dtoById.put(car.getId(), dto);
+            if (car.isActive()) {
+                active.set(position);
+            }
+            mark(brands, normalize(car.getBrand()), position);
+            mark(models, normalize(car.getModel()), position);
+            mark(years, car.getYear(), position);
+            mark(types, car.getType(), position);
+            mark(fuelTypes, car.getFuelType(), position);
+            mark(transmissionTypes, car.getTransmissionType(), position);
+            mark(carStatuses, car.getCarStatus(), position);
+        }
+
+        this.positionById = Collections.unmodifiableMap(positions);
+        this.byBrand = Collections.unmodifiableMap(brands);
+        this.byModel = Collections.unmodifiableMap(models);
+        this.byYear = Collections.unmodifiableMap(years);
+        this.byType = Collections.unmodifiableMap(types);
+        this.byFuelType = Collections.unmodifiableMap(fuelTypes);
+        this.byTransmissionType = Collections.unmodifiableMap(transmissionTypes);
+        this.byCarStatus = Collections.unmodifiableMap(carStatuses);
+        this.publicCars = fleet.stream()
+                .filter(Car::isActive)
+                .filter(car -> car.getCarStatus() != null)
+                .filter(car -> CarStatus.BOOKABLE_STATUSES.contains(car.getCarStatus()))
+                .sorted(PUBLIC_ORDER)
+                .map(car -> dtoById.get(car.getId()))
+                .toList();
+        this.adminCars = fleet.stream()
+                .sorted(ADMIN_ORDER)
+                .map(car -> dtoById.get(car.getId()))
+                .toList();
+    }
+
+    /**
+     * Создаёт снимок автопарка
+     *
+     * @param version номер версии снимка
+     * @param fleet   все авто из БД
+     * @param mapper  маппинг авто в DTO
+     * @return новый снимок
+     */
+    public static FleetSnapshot of(long version, List<Car> fleet, Function<Car, CarResponseDto> mapper) {
+        return new FleetSnapshot(version, fleet, mapper);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    public boolean isEmpty() {
+        return cars.length == 0;
+    }
+
+    //активные авто в статусах, доступных для бронирования, отсортированные по типу кузова
+    public List<CarResponseDto> publicCars() {
+        return publicCars;
+    }
+
+    //все авто, отсортированные для администратора
+    public List<CarResponseDto> adminCars() {
+        return adminCars;
+    }
+
+    public Optional<CarResponseDto> findById(Long id) {
+        Integer position = positionById.get(id);
+        return position == null ? Optional.empty() : Optional.of(cars[position]);
+    }
+
+    public List<CarResponseDto> activeByBrand(String brand) {
+        return activeAt(byBrand.get(normalize(brand)));
+    }
+
+    public List<CarResponseDto> activeByModel(String model) {
+        return activeAt(byModel.get(normalize(model)));
+    }
+
+    public List<CarResponseDto> activeByYear(int year) {
+        return activeAt(byYear.get(year));
+    }
+
+    public List<CarResponseDto> activeByType(CarType type) {
+        return activeAt(byType.get(type));
+    }
+
+    public List<CarResponseDto> activeByFuelType(CarFuelType fuelType) {
+        return activeAt(byFuelType.get(fuelType));
+    }
+
+    public List<CarResponseDto> activeByTransmissionType(CarTransmissionType transmissionType) {
+        return activeAt(byTransmissionType.get(transmissionType));
+    }
+
+    public List<CarResponseDto> activeByCarStatus(CarStatus carStatus) {
+        return activeAt(byCarStatus.get(carStatus));
+    }
+
+    //активные авто со стоимостью аренды в день в пределах (включительно), null - без ограничения
+    public List<CarResponseDto> activeByDayRentalPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+        int from = minPrice == null ? 0 : firstPositionNotBelow(minPrice);
+        int to = maxPrice == null ? pricedCount() : firstPositionAbove(maxPrice);
+        List<CarResponseDto> result = new ArrayList<>();
+        for (int position = active.nextSetBit(from); position >= 0 && position < to;
+             position = active.nextSetBit(position + 1)) {
+            result.add(cars[position]);
+        }
+        return result;
+    }
+
+    private List<CarResponseDto> activeAt(BitSet positions) {
+        if (positions == null) {
+            return List.of();
+        }
+        BitSet matching = (BitSet) positions.clone();
+        matching.and(active);
+        List<CarResponseDto> result = new ArrayList<>(matching.cardinality());
+        for (int position = matching.nextSetBit(0); position >= 0; position = matching.nextSetBit(position + 1)) {
+            result.add(cars[position]);
+        }
+        return result;
+    }
+
+    //авто без цены стоят в конце массива и в фильтр по цене не попадают
+    private int pricedCount() {
+        int count = prices.length;
+        while (count > 0 && prices[count - 1] == null) {
+            count--;
+        }
+        return count;
+    }
+
+    private int firstPositionNotBelow(BigDecimal price) {
+        int low = 0;
+        int high = pricedCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prices[middle].compareTo(price) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstPositionAbove(BigDecimal price) {
+        int low = 0;
+        int high = pricedCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prices[middle].compareTo(price) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //сравнение строк без учёта регистра и пробелов по краям, как в collation колонок MySQL
+    private static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static <K> void mark(Map<K, BitSet> index, K key, int position) {
+        if (key != null) {
+            index.computeIfAbsent(key, ignored -> new BitSet()).set(position);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.mapping.CarMappingService;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Хранит текущий снимок автопарка {@link FleetSnapshot}.
+ * <p>
+ * Снимок создаётся при первом чтении и пересоздаётся после коммита транзакций, изменивших авто.
+ * Пересоздание выполняется в отдельном потоке, а не в потоке запроса, и не занимает второе соединение
+ * пула на время запроса. Запросы на обновление, пришедшие до начала пересоздания, объединяются в одно,
+ * поэтому частые изменения не вызывают загрузку автопарка на каждый коммит. До окончания пересоздания
+ * читатели получают предыдущий снимок. Автопарк читается порциями по {@code fleet.snapshot.page-size} авто,
+ * контекст персистентности очищается после каждой порции.
+ * Изменения, закоммиченные другими экземплярами приложения (в том числе планировщиком бронирований),
+ * попадают в снимок при сверке с БД раз в {@code fleet.snapshot.resync-delay-millis} мс. Сверка выполняется
+ * в том же потоке обновления, номер версии меняется, только если автопарк в БД отличается от снимка.
+ * </p>
+ */
+@Service
+@Slf4j
+public class FleetSnapshotService {
+
+    private final CarRepository carRepository;
+    private final CarMappingService carMappingService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readTransaction;
+    private final int pageSize;
+    //все пересоздания снимка выполняются по очереди в одном потоке
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fleet-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<FleetSnapshot> snapshot = new AtomicReference<>();
+    //номер версии последнего созданного снимка, не сбрасывается при сбросе снимка
+    private final AtomicLong lastVersion = new AtomicLong();
+    //обновление запрошено, но ещё не начато
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    //ключ отложенного обновления снимка в рамках транзакции
+    private final Object refreshKey = new Object();
+
+    public FleetSnapshotService(
+            CarRepository carRepository,
+            CarMappingService carMappingService,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${fleet.snapshot.page-size:500}") int pageSize) {
+        this.carRepository = carRepository;
+        this.carMappingService = carMappingService;
+        this.entityManager = entityManager;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.pageSize = pageSize;
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Возвращает текущий снимок автопарка, при первом обращении загружает его из БД
+     *
+     * @return текущий снимок
+     */
+    public FleetSnapshot current() {
+        FleetSnapshot current = snapshot.get();
+        return current != null ? current : initialize();
+    }
+
+    /**
+     * Возвращает номер версии текущего снимка автопарка
+     *
+     * @return номер версии
+     */
+    public long version() {
+        return current().version();
+    }
+
+    /**
+     * Загружает автопарк из БД и атомарно подменяет снимок новым с увеличенным номером версии.
+     * Загрузка выполняется в потоке обновления снимка, вызывающий поток ждёт её окончания
+     *
+     * @return новый снимок
+     */
+    public FleetSnapshot refresh() {
+        try {
+            return refreshExecutor.submit(this::rebuild).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to load fleet snapshot", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading fleet snapshot", e);
+        }
+    }
+
+    /**
+     * Запрашивает пересоздание снимка в потоке обновления, не дожидаясь его.
+     * Запросы, пришедшие до начала пересоздания, выполняются одним пересозданием
+     */
+    public void requestRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(this::runRequestedRefresh);
+        } catch (RejectedExecutionException e) {
+            refreshPending.set(false);
+            log.warn("Fleet snapshot refresh rejected, the service is shutting down");
+        }
+    }
+
+    /**
+     * Сверяет загруженный снимок с БД в потоке обновления, не дожидаясь сверки.
+     * Пока снимок не загружен или уже запрошено его пересоздание, сверка не выполняется
+     */
+    @Scheduled(
+            initialDelayString = "${fleet.snapshot.resync-delay-millis:30000}",
+            fixedDelayString = "${fleet.snapshot.resync-delay-millis:30000}")
+    public void scheduledResync() {
+        if (snapshot.get() == null || refreshPending.get()) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(this::resync);
+        } catch (RejectedExecutionException e) {
+            log.warn("Fleet snapshot resync rejected, the service is shutting down");
+        }
+    }
+
+    /**
+     * Запрашивает пересоздание снимка после коммита текущей транзакции (один раз на транзакцию)
+     */
+    public void refreshAfterCommit() {
+        TransactionHooks.afterCommitOnce(refreshKey, this::requestRefresh);
+    }
+
+    private void runRequestedRefresh() {
+        //изменения, закоммиченные после этого момента, запросят следующее пересоздание
+        refreshPending.set(false);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            //изменения уже закоммичены, поэтому снимок сбрасывается и будет загружен при следующем чтении
+            log.error("Failed to refresh fleet snapshot, it will be reloaded on next read", e);
+            snapshot.set(null);
+        }
+    }
+
+    //снимок подменяется только в потоке обновления, поэтому текущий снимок не меняется до конца сверки
+    private void resync() {
+        FleetSnapshot current = snapshot.get();
+        if (current == null) {
+            return;
+        }
+        try {
+            List<Car> fleet = readTransaction.execute(status -> loadFleet());
+            FleetSnapshot loaded = FleetSnapshot.of(current.version(), fleet, carMappingService::mapEntityToDto);
+            if (!loaded.adminCars().equals(current.adminCars())) {
+                log.debug("Fleet snapshot differs from the database, refreshing");
+                publish(fleet);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to resync fleet snapshot, keeping version {}", current.version(), e);
+        }
+    }
+
+    private FleetSnapshot rebuild() {
+        return publish(readTransaction.execute(status -> loadFleet()));
+    }
+
+    private FleetSnapshot publish(List<Car> fleet) {
+        long version = lastVersion.incrementAndGet();
+        FleetSnapshot next = FleetSnapshot.of(version, fleet, carMappingService::mapEntityToDto);
+        snapshot.set(next);
+        log.debug("Fleet snapshot refreshed to version {}", version);
+        return next;
+    }
+
+    //читает авто порциями по id, загруженные авто отсоединяются от контекста персистентности после каждой порции
+    private List<Car> loadFleet() {
+        List<Car> fleet = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<Car> page = carRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(pageSize));
+            entityManager.clear();
+            fleet.addAll(page);
+            if (page.size() < pageSize) {
+                return fleet;
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private synchronized FleetSnapshot initialize() {
+        FleetSnapshot current = snapshot.get();
+        return current != null ? current : refresh();
+    }
+}
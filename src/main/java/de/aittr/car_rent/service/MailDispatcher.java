@@ -0,0 +1,303 @@
+package de.aittr.car_rent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.*;
+
+/**
+ * Очередь исходящих писем.
+ * <p>
+ * Письма кладутся в ограниченную очередь и отправляются пулом рабочих потоков. Каждый поток держит одно
+ * аутентифицированное SMTP-соединение и отправляет через него письма подряд, соединение закрывается
+ * после {@code idle-close-millis} без писем или после ошибки отправки. Неудачная отправка повторяется
+ * с экспоненциальной задержкой, письмо, не отправленное за {@code max-attempts} попыток или не поместившееся
+ * в очередь при повторе, признаётся недоставленным (dead letter) и пишется в лог. О результате отправки
+ * сообщается переданному при постановке в очередь {@link DeliveryListener}, он же хранит недоставленные письма.
+ * Метрики: {@code mail.queue.size}, {@code mail.send} (время отправки), {@code mail.send.failures}
+ * (тег {@code outcome}: retry или dead-letter) и {@code mail.smtp.connections}.
+ * </p>
+ */
+@Service
+@Slf4j
+public class MailDispatcher {
+
+    private final JavaMailSenderImpl mailSender;
+    private final String from;
+    private final int workers;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long idleCloseMillis;
+    private final BlockingQueue<QueuedMail> queue;
+    private final Timer sendTimer;
+    private final Counter retriedFailures;
+    private final Counter deadLetteredFailures;
+    private final Counter smtpConnections;
+    private ExecutorService workerExecutor;
+    private ScheduledExecutorService retryExecutor;
+    private volatile boolean running;
+
+    public MailDispatcher(
+            JavaMailSenderImpl mailSender,
+            @Value("${mail.dispatch.from:el.riu.m8@gmail.com}") String from,
+            @Value("${mail.dispatch.queue-capacity:1000}") int queueCapacity,
+            @Value("${mail.dispatch.workers:2}") int workers,
+            @Value("${mail.dispatch.max-attempts:5}") int maxAttempts,
+            @Value("${mail.dispatch.initial-backoff-millis:2000}") long initialBackoffMillis,
+            @Value("${mail.dispatch.max-backoff-millis:300000}") long maxBackoffMillis,
+            @Value("${mail.dispatch.idle-close-millis:30000}") long idleCloseMillis,
+            MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.from = from;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.idleCloseMillis = idleCloseMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.sendTimer = Timer.builder("mail.send")
+                .description("Duration of sending one message over an open SMTP connection")
+                .register(meterRegistry);
+        this.retriedFailures = failureCounter("retry", meterRegistry);
+        this.deadLetteredFailures = failureCounter("dead-letter", meterRegistry);
+        this.smtpConnections = Counter.builder("mail.smtp.connections")
+                .description("SMTP connections opened by mail workers")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.size", queue, BlockingQueue::size)
+                .description("Messages waiting for a mail worker")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        workerExecutor = Executors.newFixedThreadPool(workers, daemonThreads("mail-worker"));
+        for (int i = 0; i < workers; i++) {
+            workerExecutor.execute(this::work);
+        }
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreads("mail-retry"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Mail dispatcher stopped with {} unsent messages", queue.size());
+        }
+    }
+
+    /**
+     * Ставит письмо в очередь на отправку, если в очереди есть место
+     *
+     * @param mail     письмо
+     * @param listener получатель результата отправки
+     * @return false, если очередь заполнена и письмо не принято
+     */
+    public boolean offer(OutgoingMail mail, DeliveryListener listener) {
+        return queue.offer(new QueuedMail(mail, 0, listener));
+    }
+
+    /**
+     * Количество писем, которое очередь ещё может принять
+     *
+     * @return свободное место в очереди
+     */
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    private void work() {
+        Transport transport = null;
+        try {
+            while (running) {
+                QueuedMail queued = queue.poll(idleCloseMillis, TimeUnit.MILLISECONDS);
+                if (queued == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                try {
+                    if (transport == null || !transport.isConnected()) {
+                        transport = connect();
+                    }
+                    MimeMessage message = toMimeMessage(queued.mail());
+                    Timer.Sample sample = Timer.start();
+                    transport.sendMessage(message, message.getAllRecipients());
+                    sample.stop(sendTimer);
+                    notify(() -> queued.listener().delivered(queued.mail()));
+                } catch (MessagingException | RuntimeException e) {
+                    //после ошибки соединение может быть в неизвестном состоянии, следующая отправка откроет новое
+                    transport = close(transport);
+                    handleFailure(queued, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(transport);
+        }
+    }
+
+    private void handleFailure(QueuedMail queued, Exception e) {
+        int attempts = queued.attempts() + 1;
+        //письмо с недопустимыми адресами повторять бессмысленно
+        boolean permanent = e instanceof SendFailedException sendFailed
+                && sendFailed.getValidUnsentAddresses() == null && sendFailed.getInvalidAddresses() != null;
+        if (permanent || attempts >= maxAttempts || !running) {
+            deadLetteredFailures.increment();
+            deadLetter(queued, attempts, e.getMessage());
+            return;
+        }
+        retriedFailures.increment();
+        long backoffMillis = backoffMillis(attempts);
+        log.warn("Sending mail to {} failed (attempt {} of {}), retry in {} ms. Reason: {}",
+                queued.mail().to(), attempts, maxAttempts, backoffMillis, e.getMessage());
+        try {
+            retryExecutor.schedule(() -> {
+                if (!queue.offer(new QueuedMail(queued.mail(), attempts, queued.listener()))) {
+                    deadLetteredFailures.increment();
+                    deadLetter(queued, attempts, "Mail queue is full");
+                }
+            }, backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            deadLetteredFailures.increment();
+            deadLetter(queued, attempts, e.getMessage());
+        }
+    }
+
+    long backoffMillis(int attempts) {
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 30);
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    private void deadLetter(QueuedMail queued, int attempts, String error) {
+        OutgoingMail mail = queued.mail();
+        log.error("Mail to {} with subject '{}' was not delivered after {} attempts: {}",
+                mail.to(), mail.subject(), attempts, error);
+        DeadLetter deadLetter = new DeadLetter(mail, attempts, error, Instant.now());
+        notify(() -> queued.listener().deadLettered(deadLetter));
+    }
+
+    //ошибка получателя результата не должна останавливать рабочий поток
+    private static void notify(Runnable notification) {
+        try {
+            notification.run();
+        } catch (RuntimeException e) {
+            log.error("Mail delivery listener failed", e);
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        //протокол выбирается так же, как в JavaMailSenderImpl
+        String protocol = mailSender.getProtocol();
+        if (protocol == null) {
+            protocol = mailSender.getSession().getProperty("mail.transport.protocol");
+        }
+        Transport transport = mailSender.getSession().getTransport(protocol == null ? "smtp" : protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        smtpConnections.increment();
+        return transport;
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private MimeMessage toMimeMessage(OutgoingMail mail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
+        helper.setFrom(from);
+        helper.setTo(mail.to());
+        helper.setSubject(mail.subject());
+        helper.setText(mail.html(), true);
+        return message;
+    }
+
+    private static Counter failureCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("mail.send.failures")
+                .description("Failed attempts to send a message")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Готовое к отправке письмо
+     *
+     * @param to      адрес получателя
+     * @param subject тема
+     * @param html    текст письма в HTML
+     */
+    public record OutgoingMail(String to, String subject, String html) {
+    }
+
+    /**
+     * Недоставленное письмо
+     *
+     * @param mail     письмо
+     * @param attempts количество попыток отправки
+     * @param error    причина последней ошибки
+     * @param failedAt время, когда письмо признано недоставленным
+     */
+    public record DeadLetter(OutgoingMail mail, int attempts, String error, Instant failedAt) {
+    }
+
+    /**
+     * Получатель результата отправки письма. Методы вызываются в рабочем потоке очереди
+     */
+    public interface DeliveryListener {
+
+        /**
+         * Письмо принято SMTP-сервером
+         *
+         * @param mail письмо
+         */
+        default void delivered(OutgoingMail mail) {
+        }
+
+        /**
+         * Письмо признано недоставленным
+         *
+         * @param deadLetter недоставленное письмо
+         */
+        default void deadLettered(DeadLetter deadLetter) {
+        }
+    }
+
+    private record QueuedMail(OutgoingMail mail, int attempts, DeliveryListener listener) {
+    }
+}
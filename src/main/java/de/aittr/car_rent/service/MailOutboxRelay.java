@@ -0,0 +1,144 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.MailOutbox;
+import de.aittr.car_rent.domain.entity.MailOutboxStatus;
+import de.aittr.car_rent.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Передача писем из таблицы mail_outbox в очередь отправки {@link MailDispatcher}.
+ * <p>
+ * Письма записываются в mail_outbox в той же транзакции, что и данные, к которым они относятся, поэтому
+ * запрос не ждёт SMTP, а письмо не теряется при падении экземпляра. По расписанию письма, которые пора отправлять,
+ * выбираются порциями по {@code mail.outbox.batch-size} запросом {@code select ... for update skip locked}, так что
+ * несколько экземпляров разбирают разные строки. Выбранные строки арендуются на {@code mail.outbox.lease-millis}
+ * (переносится время следующей попытки), после коммита письма передаются в очередь отправки.
+ * Отправленное письмо удаляется, недоставленное помечается FAILED. Если экземпляр упал до отправки или до удаления
+ * строки, письмо снова выбирается после окончания аренды - доставка как минимум один раз, повтор письма возможен.
+ * Аренда должна быть больше времени всех повторов в {@link MailDispatcher}.
+ * Количество переданных писем считается метрикой {@code mail.outbox.relayed}.
+ * </p>
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "mail.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class MailOutboxRelay {
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final MailDispatcher mailDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long leaseMillis;
+    private final Counter relayedCounter;
+
+    public MailOutboxRelay(
+            MailOutboxRepository mailOutboxRepository,
+            MailDispatcher mailDispatcher,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${mail.outbox.batch-size:50}") int batchSize,
+            @Value("${mail.outbox.lease-millis:600000}") long leaseMillis) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailDispatcher = mailDispatcher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.leaseMillis = leaseMillis;
+        this.relayedCounter = Counter.builder("mail.outbox.relayed")
+                .description("Messages handed from the outbox to the mail queue")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${mail.outbox.poll-delay-millis:1000}",
+            fixedDelayString = "${mail.outbox.poll-delay-millis:1000}")
+    public void scheduledRun() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.error("Mail outbox relay run failed", e);
+        }
+    }
+
+    /**
+     * Передаёт в очередь отправки письма, которые пора отправлять, пока они есть и очередь их принимает
+     *
+     * @return количество переданных писем
+     */
+    public int relay() {
+        int total = 0;
+        while (true) {
+            //не выбираются письма, для которых нет места в очереди
+            int limit = Math.min(batchSize, mailDispatcher.remainingCapacity());
+            if (limit == 0) {
+                return total;
+            }
+            List<MailOutbox> claimed = claim(limit);
+            List<Long> rejected = new ArrayList<>();
+            for (MailOutbox outbox : claimed) {
+                MailDispatcher.OutgoingMail mail = new MailDispatcher.OutgoingMail(
+                        outbox.getRecipient(), outbox.getSubject(), outbox.getBody());
+                if (mailDispatcher.offer(mail, new OutboxDeliveryListener(outbox.getId()))) {
+                    total++;
+                    relayedCounter.increment();
+                } else {
+                    rejected.add(outbox.getId());
+                }
+            }
+            if (!rejected.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status ->
+                        mailOutboxRepository.release(rejected, LocalDateTime.now()));
+                return total;
+            }
+            if (claimed.size() < limit) {
+                return total;
+            }
+        }
+    }
+
+    //выбирает и арендует порцию писем в отдельной транзакции, блокировки снимаются до передачи в очередь
+    private List<MailOutbox> claim(int limit) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<MailOutbox> due = mailOutboxRepository.findDueForUpdateSkipLocked(
+                    MailOutboxStatus.PENDING, now, PageRequest.of(0, limit));
+            LocalDateTime leaseEnd = now.plus(leaseMillis, ChronoUnit.MILLIS);
+            due.forEach(outbox -> outbox.setNextAttemptAt(leaseEnd));
+            return due;
+        });
+    }
+
+    private class OutboxDeliveryListener implements MailDispatcher.DeliveryListener {
+
+        private final Long outboxId;
+
+        private OutboxDeliveryListener(Long outboxId) {
+            this.outboxId = outboxId;
+        }
+
+        @Override
+        public void delivered(MailDispatcher.OutgoingMail mail) {
+            transactionTemplate.executeWithoutResult(status -> mailOutboxRepository.deleteSent(outboxId));
+        }
+
+        @Override
+        public void deadLettered(MailDispatcher.DeadLetter deadLetter) {
+            String error = StringUtils.abbreviate(deadLetter.error(), 1000);
+            transactionTemplate.executeWithoutResult(status -> mailOutboxRepository.markFailed(outboxId, error));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.PageResponseDto;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Общие правила постраничной выдачи списков.
+ * <p>
+ * Страницы читаются как {@link Slice} (size + 1 строк, без COUNT), общее количество считается
+ * отдельным запросом только по явному запросу клиента. Сортировка разрешена только по перечисленным полям,
+ * а id всегда добавляется последним, чтобы порядок строк между страницами был однозначным.
+ * </p>
+ */
+final class Paging {
+
+    private Paging() {
+    }
+
+    /**
+     * Проверяет поля сортировки и добавляет сортировку по id
+     *
+     * @param pageable      запрошенная страница
+     * @param sortableFields поля, по которым разрешена сортировка
+     * @param listName      название списка для сообщения об ошибке
+     * @return страница с однозначной сортировкой
+     */
+    static Pageable withStableSort(Pageable pageable, Set<String> sortableFields, String listName) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!sortableFields.contains(order.getProperty())) {
+                throw new RestApiException("Cannot sort " + listName + " by " + order.getProperty()
+                        + ". Sortable fields: " + new TreeSet<>(sortableFields));
+            }
+        }
+        Sort sort = pageable.getSort().getOrderFor("id") == null
+                ? pageable.getSort().and(Sort.by("id"))
+                : pageable.getSort();
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
+
+    /**
+     * Собирает ответ из страницы сущностей
+     *
+     * @param slice     страница сущностей
+     * @param mapper    преобразование сущности в DTO
+     * @param withTotal нужно ли общее количество элементов
+     * @param counter   COUNT-запрос, вызывается только если количество нельзя вычислить по последней странице
+     * @return страница DTO
+     */
+    static <E, D> PageResponseDto<D> toResponse(
+            Slice<E> slice, Function<E, D> mapper, boolean withTotal, LongSupplier counter) {
+        Slice<D> content = slice.map(mapper);
+        if (!withTotal) {
+            return PageResponseDto.of(content, null);
+        }
+        //на последней непустой (или первой) странице количество известно без COUNT
+        long total = !slice.hasNext() && (slice.hasContent() || slice.isFirst())
+                ? slice.getPageable().getOffset() + slice.getNumberOfElements()
+                : counter.getAsLong();
+        return PageResponseDto.of(content, total);
+    }
+}
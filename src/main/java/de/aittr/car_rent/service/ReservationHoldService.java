@@ -0,0 +1,243 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Временные удержания авто на период аренды на время оформления бронирования.
+ * <p>
+ * Удержания хранятся только в памяти приложения: для каждого авто - неизменяемый список удержаний,
+ * который заменяется целиком при добавлении или снятии, поэтому проверки занятости читают его без блокировок.
+ * Истёкшие удержания не учитываются при проверках сразу, а удаляются таймерным колесом:
+ * удержание попадает в ячейку колеса по времени истечения, и раз в такт колесо освобождает
+ * удержания из пройденных ячеек, не обращаясь к БД.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ReservationHoldService {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final Duration ttl;
+    private final Clock clock;
+    private final Map<Long, List<ReservationHold>> holdsByCarId = new ConcurrentHashMap<>();
+    private final Map<String, ReservationHold> holdsById = new ConcurrentHashMap<>();
+    private final Queue<ReservationHold>[] wheel;
+    private long lastProcessedTick;
+    private ScheduledExecutorService wheelExecutor;
+
+    @Autowired
+    public ReservationHoldService(@Value("${booking.hold.ttl-seconds:600}") long ttlSeconds) {
+        this(Duration.ofSeconds(ttlSeconds), Clock.systemDefaultZone());
+    }
+
+    @SuppressWarnings("unchecked")
+    ReservationHoldService(Duration ttl, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+        //колесо охватывает весь срок удержания, поэтому каждая ячейка обходится не раньше истечения её удержаний
+        int slots = (int) (ttl.toMillis() / TICK_MILLIS) + 2;
+        this.wheel = new Queue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastProcessedTick = clock.millis() / TICK_MILLIS;
+    }
+
+    @PostConstruct
+    public void startWheel() {
+        wheelExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-hold-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheelExecutor.scheduleAtFixedRate(this::releaseExpired, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopWheel() {
+        if (wheelExecutor != null) {
+            wheelExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Удерживает авто на период аренды на время оформления бронирования.
+     * Занятость авто бронированиями должна быть проверена вызывающим кодом под блокировкой авто
+     *
+     * @param carId         id авто
+     * @param from          начало периода аренды
+     * @param to            окончание периода аренды
+     * @param customerEmail email клиента, оформляющего бронирование
+     * @return созданное удержание
+     */
+    public ReservationHold hold(Long carId, LocalDateTime from, LocalDateTime to, String customerEmail) {
+        Instant now = clock.instant();
+        ReservationHold hold = new ReservationHold(
+                UUID.randomUUID().toString(), carId, from, to, customerEmail, now.plus(ttl));
+        boolean[] conflict = new boolean[1];
+        holdsByCarId.compute(carId, (id, holds) -> {
+            List<ReservationHold> activeHolds = holds == null ? List.of() : holds.stream()
+                    .filter(existing -> existing.isActiveAt(now))
+                    .toList();
+            if (activeHolds.stream().anyMatch(existing -> existing.overlaps(from, to))) {
+                conflict[0] = true;
+                return holds;
+            }
+            List<ReservationHold> updated = new ArrayList<>(activeHolds);
+            updated.add(hold);
+            return List.copyOf(updated);
+        });
+        if (conflict[0]) {
+            throw new RestApiException("Car with id " + carId + " is currently held by another customer for this period",
+                    HttpStatus.CONFLICT);
+        }
+        holdsById.put(hold.id(), hold);
+        wheel[slotOf(hold.expiresAt())].add(hold);
+        return hold;
+    }
+
+    /**
+     * Возвращает действующее удержание по id
+     *
+     * @param holdId id удержания
+     * @return удержание, если оно есть и не истекло
+     */
+    public Optional<ReservationHold> findActive(String holdId) {
+        ReservationHold hold = holdsById.get(holdId);
+        return hold != null && hold.isActiveAt(clock.instant()) ? Optional.of(hold) : Optional.empty();
+    }
+
+    /**
+     * Снимает удержание
+     *
+     * @param holdId id удержания
+     */
+    public void release(String holdId) {
+        ReservationHold hold = holdsById.remove(holdId);
+        if (hold != null) {
+            removeFromCar(hold);
+        }
+    }
+
+    /**
+     * Проверяет, удерживает ли другой клиент авто на пересекающийся период
+     *
+     * @param carId       id авто
+     * @param from        начало периода
+     * @param to          окончание периода
+     * @param ownerEmail  email клиента, собственные удержания которого не учитываются, или null
+     * @return true, если есть пересекающееся действующее удержание
+     */
+    public boolean hasConflictingHold(Long carId, LocalDateTime from, LocalDateTime to, String ownerEmail) {
+        List<ReservationHold> holds = holdsByCarId.get(carId);
+        if (holds == null) {
+            return false;
+        }
+        Instant now = clock.instant();
+        return holds.stream().anyMatch(hold -> hold.isActiveAt(now)
+                && hold.overlaps(from, to)
+                && !hold.customerEmail().equalsIgnoreCase(Objects.toString(ownerEmail, "")));
+    }
+
+    /**
+     * Возвращает id авто, удерживаемых на период, пересекающийся с переданным
+     *
+     * @param from начало периода
+     * @param to   окончание периода
+     * @return id удерживаемых авто
+     */
+    public Set<Long> findHeldCarIds(LocalDateTime from, LocalDateTime to) {
+        Instant now = clock.instant();
+        Set<Long> heldCarIds = new HashSet<>();
+        holdsByCarId.forEach((carId, holds) -> {
+            if (holds.stream().anyMatch(hold -> hold.isActiveAt(now) && hold.overlaps(from, to))) {
+                heldCarIds.add(carId);
+            }
+        });
+        return heldCarIds;
+    }
+
+    /**
+     * Освобождает удержания из ячеек колеса, пройденных с предыдущего такта
+     */
+    void releaseExpired() {
+        Instant now = clock.instant();
+        long currentTick = now.toEpochMilli() / TICK_MILLIS;
+        long firstTick = Math.max(lastProcessedTick + 1, currentTick - wheel.length + 1);
+        int released = 0;
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            Queue<ReservationHold> slot = wheel[(int) (tick % wheel.length)];
+            int size = slot.size();
+            for (int i = 0; i < size; i++) {
+                ReservationHold hold = slot.poll();
+                if (hold == null) {
+                    break;
+                }
+                if (hold.isActiveAt(now)) {
+                    slot.add(hold);
+                } else if (holdsById.remove(hold.id(), hold)) {
+                    removeFromCar(hold);
+                    released++;
+                }
+            }
+        }
+        lastProcessedTick = currentTick;
+        if (released > 0) {
+            log.debug("Released {} expired reservation holds", released);
+        }
+    }
+
+    private void removeFromCar(ReservationHold hold) {
+        holdsByCarId.computeIfPresent(hold.carId(), (carId, holds) -> {
+            List<ReservationHold> updated = holds.stream()
+                    .filter(existing -> !existing.id().equals(hold.id()))
+                    .toList();
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    //ячейка первого такта, к началу которого удержание уже истекло
+    private int slotOf(Instant expiresAt) {
+        long expiryTick = (expiresAt.toEpochMilli() + TICK_MILLIS - 1) / TICK_MILLIS;
+        return (int) (expiryTick % wheel.length);
+    }
+
+    /**
+     * Удержание авто клиентом на период [from, to) до момента expiresAt
+     */
+    public record ReservationHold(
+            String id,
+            Long carId,
+            LocalDateTime from,
+            LocalDateTime to,
+            String customerEmail,
+            Instant expiresAt) {
+
+        boolean isActiveAt(Instant now) {
+            return expiresAt.isAfter(now);
+        }
+
+        boolean overlaps(LocalDateTime otherFrom, LocalDateTime otherTo) {
+            return from.isBefore(otherTo) && to.isAfter(otherFrom);
+        }
+    }
+}
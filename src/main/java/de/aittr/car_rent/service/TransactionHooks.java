@@ -0,0 +1,62 @@
+package de.aittr.car_rent.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Вспомогательные методы для выполнения действий по завершении текущей транзакции
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Выполняет действие после успешного коммита текущей транзакции.
+     * Если транзакции нет, действие выполняется сразу
+     *
+     * @param action действие
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Выполняет действие после успешного коммита текущей транзакции один раз,
+     * сколько бы раз метод ни вызывался с тем же ключом в рамках этой транзакции.
+     * Если транзакции нет, действие выполняется сразу
+     *
+     * @param key    ключ действия в рамках транзакции
+     * @param action действие
+     */
+    public static void afterCommitOnce(Object key, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+    }
+}
@@ -1,33 +1,87 @@
 package de.aittr.car_rent.service.interfaces;
 
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.BookingBatchRequestDto;
 import de.aittr.car_rent.domain.dto.BookingRequestDto;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
+import de.aittr.car_rent.domain.dto.ReservationHoldResponseDto;
 import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.security.AuthInfo;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
 
 public interface BookingService {
 
-    BookingResponseDto createBooking(BookingRequestDto bookingRequestDto, String email);
+    BookingResponseDto createBooking(BookingRequestDto bookingRequestDto, AuthInfo caller);
+
+    /**
+     * Удерживает авто на период аренды на время оформления бронирования.
+     * Пока удержание действует, другие клиенты не могут забронировать или удержать авто на пересекающийся период
+     *
+     * @param bookingRequestDto - авто и период аренды
+     * @param caller            - аутентифицированный клиент
+     * @return ReservationHoldResponseDto с id удержания и временем его истечения
+     */
+    ReservationHoldResponseDto createHold(BookingRequestDto bookingRequestDto, AuthInfo caller);
+
+    /**
+     * Создаёт бронирование по действующему удержанию клиента и снимает удержание
+     *
+     * @param holdId - id удержания
+     * @param caller - аутентифицированный клиент, создавший удержание
+     * @return BookingResponseDto созданного бронирования
+     */
+    BookingResponseDto confirmHold(String holdId, AuthInfo caller);
+
+    /**
+     * Снимает действующее удержание клиента до истечения его срока
+     *
+     * @param holdId - id удержания
+     * @param email  - email клиента, создавшего удержание
+     */
+    void releaseHold(String holdId, String email);
 
     BookingResponseDto getBookingByBookingId(Long id);
 
-    List<BookingResponseDto> getAllBookings();
+    /**
+     * Страница всех бронирований
+     *
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal считать ли общее количество бронирований (дополнительный COUNT-запрос)
+     * @return страница бронирований
+     */
+    PageResponseDto<BookingResponseDto> getAllBookings(Pageable pageable, boolean withTotal);
+
+    PageResponseDto<BookingResponseDto> getBookingsByCarId(Long carId, Pageable pageable, boolean withTotal);
 
-    List<BookingResponseDto> getBookingsByCarId(Long carId);
+    PageResponseDto<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(
+            LocalDate rentalStartDate,
+            LocalDate rentalEndDate,
+            BookingStatus bookingStatus,
+            Pageable pageable,
+            boolean withTotal);
 
-    List<BookingResponseDto> getBookingsByRentalDaysOrByBookingStatus(LocalDate rentalStartDate, LocalDate rentalEndDate, BookingStatus bookingStatus);
+    BookingResponseDto activateBooking(Long bookingId, AuthInfo caller);
 
-    BookingResponseDto activateBooking(Long bookingId, String email);
+    BookingResponseDto extendBooking(Long id, AuthInfo caller, LocalDateTime newEndDate);
 
-    BookingResponseDto extendBooking(Long id, String email, LocalDateTime newEndDate);
+    BookingResponseDto cancelBooking(Long id, AuthInfo caller);
 
-    BookingResponseDto cancelBooking(Long id, String email);
+    BookingResponseDto closeBooking(Long id, AuthInfo caller);
 
-    BookingResponseDto closeBooking(Long id, String email);
+    /**
+     * Применяет одну операцию (активация, закрытие или отмена администратором) к списку бронирований
+     * в одной транзакции. Бронирования, к которым операция неприменима, пропускаются и попадают в результат с ошибкой
+     *
+     * @param batchRequestDto - операция и id бронирований
+     * @param caller          - аутентифицированный администратор
+     * @return BatchResultDto с результатом по каждому бронированию
+     */
+    BatchResultDto applyBatchOperation(BookingBatchRequestDto batchRequestDto, AuthInfo caller);
 
     BigDecimal calculateBookingTotalPrice(BigDecimal rentalDayPrice, LocalDateTime fromDate, LocalDateTime toDate);
 
@@ -1,9 +1,17 @@
 package de.aittr.car_rent.service.interfaces;
 
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.CarFacetsResponseDto;
 import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.dto.CarSearchCriteriaDto;
+import de.aittr.car_rent.domain.dto.CarSearchResponseDto;
+import de.aittr.car_rent.domain.dto.CarStatusBatchRequestDto;
 import de.aittr.car_rent.domain.dto.CarUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.FleetVersionDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.domain.entity.*;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
@@ -21,18 +29,23 @@ public interface CarService {
     CarResponseDto saveCar(CarResponseDto carDto);
 
     /**
-     * Метод получения всех активных (существующих физически) авто, имеющихся в БД
+     * Метод получения страницы активных (существующих физически) авто, имеющихся в БД.
+     * Без сортировки авто упорядочены по типу кузова
      *
-     * @return список активных авто
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница активных авто
      */
-    List<CarResponseDto> getAllCars();
+    PageResponseDto<CarResponseDto> getAllCars(Pageable pageable, boolean withTotal);
 
     /**
-     * Метод получения всех существующих в БД авто
+     * Метод получения страницы всех существующих в БД авто
      *
-     * @return список всех авто, существующих в БД
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница всех авто, существующих в БД
      */
-    List<CarResponseDto> getAllCarsToAdmin();
+    PageResponseDto<CarResponseDto> getAllCarsToAdmin(Pageable pageable, boolean withTotal);
 
     /**
      * Метод нахождения авто по его id
@@ -51,69 +64,87 @@ public interface CarService {
     Car getOrThrow(Long id);
 
     /**
-     * Метод нахождения авто по их бренду. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по их бренду. Если машины не найдена, будет возвращена пустая страница
      *
      * @param brand авто
-     * @return список CarResponseDto машин переданного в метод бренда
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданного в метод бренда
      */
-    List<CarResponseDto> getCarsByBrand(String brand);
+    PageResponseDto<CarResponseDto> getCarsByBrand(String brand, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по их модели. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по их модели. Если машины не найдена, будет возвращена пустая страница
      *
      * @param model авто
-     * @return список CarResponseDto машин переданной в метод модели
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданной в метод модели
      */
-    List<CarResponseDto> getCarsByModel(String model);
+    PageResponseDto<CarResponseDto> getCarsByModel(String model, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по году выпуска. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по году выпуска. Если машины не найдена, будет возвращена пустая страница
      *
      * @param year авто
-     * @return список CarResponseDto машин переданного в метод года выпуска
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданного в метод года выпуска
      */
-    List<CarResponseDto> getCarsByYear(int year);
+    PageResponseDto<CarResponseDto> getCarsByYear(int year, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по типу кузова. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по типу кузова. Если машины не найдена, будет возвращена пустая страница
      *
      * @param type кузова авто
-     * @return список CarResponseDto машин переданного в метод типа кузова
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданного в метод типа кузова
      */
-    List<CarResponseDto> getCarsByType(CarType type);
+    PageResponseDto<CarResponseDto> getCarsByType(CarType type, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по типу топлива. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по типу топлива. Если машины не найдена, будет возвращена пустая страница
      *
      * @param fuelType авто
-     * @return список CarResponseDto машин переданного в метод типа топлива
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданного в метод типа топлива
      */
-    List<CarResponseDto> getCarsByFuelType(CarFuelType fuelType);
+    PageResponseDto<CarResponseDto> getCarsByFuelType(CarFuelType fuelType, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по типу коробки передач. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по типу коробки передач. Если машины не найдена, будет возвращена пустая страница
      *
      * @param transmissionType авто
-     * @return список CarResponseDto машин переданного в метод типа коробки передач
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин переданного в метод типа коробки передач
      */
-    List<CarResponseDto> getCarsByTransmissionType(CarTransmissionType transmissionType);
+    PageResponseDto<CarResponseDto> getCarsByTransmissionType(
+            CarTransmissionType transmissionType, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по статусу авто (доступно, арендовано, в ремонте, снято с аренды). Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по статусу авто (доступно, арендовано, в ремонте, снято с аренды). Если машины не найдена, будет возвращена пустая страница
      *
      * @param carStatus авто
-     * @return список CarResponseDto машин c переданным в метод статусом
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин c переданным в метод статусом
      */
-    List<CarResponseDto> getCarsByCarStatus(CarStatus carStatus);
+    PageResponseDto<CarResponseDto> getCarsByCarStatus(CarStatus carStatus, Pageable pageable, boolean withTotal);
 
     /**
-     * Метод нахождения авто по стоимости их аренды в день. Если машины не найдена, будет возвращён пустой список
+     * Метод нахождения авто по стоимости их аренды в день. Если машины не найдена, будет возвращена пустая страница
      *
      * @param minDayRentalPrice
      * @param maxDayRentalPrice
-     * @return список CarResponseDto машин c арендой в день, попадающей в переданные в метод пределы включительно
+     * @param pageable  номер, размер и сортировка страницы
+     * @param withTotal возвращать ли общее количество авто
+     * @return страница CarResponseDto машин c арендой в день, попадающей в переданные в метод пределы включительно
      */
-    List<CarResponseDto> getCarsByDayRentalPrice(BigDecimal minDayRentalPrice, BigDecimal maxDayRentalPrice);
+    PageResponseDto<CarResponseDto> getCarsByDayRentalPrice(
+            BigDecimal minDayRentalPrice, BigDecimal maxDayRentalPrice, Pageable pageable, boolean withTotal);
 
     /**
      * Метод проверяет, свободна ли машина в промежутке времени между указанными датами
@@ -128,6 +159,22 @@ public interface CarService {
             LocalDateTime from,
             LocalDateTime to);
 
+    /**
+     * Метод проверяет, свободна ли машина в промежутке времени между указанными датами
+     * с учётом временных удержаний авто другими клиентами
+     *
+     * @param carId          - id авто, доступность которого проверяется
+     * @param from           - дата начала периода проверки доступности авто
+     * @param to             - дата окончания периода проверки доступности авто
+     * @param holdOwnerEmail - email клиента, собственные удержания которого не учитываются, или null
+     * @return - true/false в зависимости от результата проверки
+     */
+    boolean checkIfCarAvailableByDates(
+            Long carId,
+            LocalDateTime from,
+            LocalDateTime to,
+            String holdOwnerEmail);
+
     /**
      * Метод изменения статуса и стоимости аренды в день авто. Если машина не найдена метод выбросит исключение
      *
@@ -135,6 +182,14 @@ public interface CarService {
      */
     CarResponseDto updateCar(CarUpdateRequestDto carDto, Long carId);
 
+    /**
+     * Метод изменения статуса списка авто в одной транзакции. Ненайденные авто пропускаются и попадают в результат с ошибкой
+     *
+     * @param batchRequestDto - id авто и новый статус
+     * @return BatchResultDto с результатом по каждому авто
+     */
+    BatchResultDto updateCarStatuses(CarStatusBatchRequestDto batchRequestDto);
+
     /**
      * Метод удаления авто из спискка доступных пользователю. Если машина не найдена метод выбросит исключение
      *
@@ -160,9 +215,10 @@ public interface CarService {
     @Transactional
     String attachImageToCar(Long id, MultipartFile file);
 
-    List<CarResponseDto> getAllAvailableCarsByDates(LocalDateTime startDate, LocalDateTime endDate);
+    PageResponseDto<CarResponseDto> getAllAvailableCarsByDates(
+            LocalDateTime startDate, LocalDateTime endDate, Pageable pageable, boolean withTotal);
 
-    List<CarResponseDto> filterAvailableCars(
+    PageResponseDto<CarResponseDto> filterAvailableCars(
             LocalDateTime startDateTime,
             LocalDateTime endDateTime,
             List<String> brand,
@@ -170,7 +226,39 @@ public interface CarService {
             List<String> fuel,
             List<String> transmissionType,
             BigDecimal minPrice,
-            BigDecimal maxPrice);
+            BigDecimal maxPrice,
+            Pageable pageable,
+            boolean withTotal);
+
+    /**
+     * Метод поиска активных авто по критериям одним запросом к БД с keyset-пагинацией.
+     * Авто отсортированы по стоимости аренды в день и id, следующая страница запрашивается
+     * по курсору из предыдущей, поэтому стоимость любой страницы не зависит от её номера
+     *
+     * @param criteria критерии поиска (период аренды, бренды, типы кузова, топлива, коробки передач, цены)
+     * @param cursor   курсор страницы из предыдущего ответа, null для первой страницы
+     * @param size     размер страницы
+     * @return страница найденных авто и курсор следующей страницы
+     */
+    CarSearchResponseDto searchCars(CarSearchCriteriaDto criteria, String cursor, int size);
+
+    /**
+     * Метод возвращает количество активных авто по брендам, типам кузова, типам топлива,
+     * коробкам передач и диапазонам цены для текущего выбора фильтров.
+     * Счётчики каждого фасета учитывают выбор по всем остальным фасетам, кроме него самого
+     *
+     * @param criteria критерии поиска (период аренды, бренды, типы кузова, топлива, коробки передач, цены)
+     * @return количество авто по значениям каждого фасета
+     */
+    CarFacetsResponseDto getCarFacets(CarSearchCriteriaDto criteria);
+
+    /**
+     * Метод возвращает номер версии снимка автопарка, который меняется после каждого изменения авто,
+     * и время создания снимка. Используется для проверки актуальности закэшированных списков авто
+     *
+     * @return версия снимка автопарка
+     */
+    FleetVersionDto getFleetVersion();
 
     List<String> getAllAvailableBrands();
 
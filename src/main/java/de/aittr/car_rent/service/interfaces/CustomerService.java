@@ -3,11 +3,12 @@ package de.aittr.car_rent.service.interfaces;
 import de.aittr.car_rent.domain.dto.BookingResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerResponseDto;
 import de.aittr.car_rent.domain.dto.CustomerUpdateRequestDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
 import de.aittr.car_rent.domain.entity.Booking;
 import de.aittr.car_rent.domain.entity.Customer;
 import de.aittr.car_rent.exception_handling.exceptions.CustomerNotFoundException;
+import org.springframework.data.domain.Pageable;
 
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,11 +28,13 @@ import java.util.Optional;
 public interface CustomerService {
 
     /**
-     * Возвращает список всех активных клиентов.
+     * Возвращает страницу всех клиентов.
      *
-     * @return список {@link CustomerResponseDto} активных клиентов.
+     * @param pageable  номер, размер и сортировка страницы.
+     * @param withTotal считать ли общее количество клиентов (дополнительный COUNT-запрос).
+     * @return страница {@link CustomerResponseDto} клиентов.
      */
-    List<CustomerResponseDto> getAllCustomers();
+    PageResponseDto<CustomerResponseDto> getAllCustomers(Pageable pageable, boolean withTotal);
 
     /**
      * Возвращает активного клиента по идентификатору.
@@ -81,20 +84,24 @@ public interface CustomerService {
     void restoreById(Long id);
 
     /**
-     * Возвращает список бронирований, принадлежащих клиенту.
+     * Возвращает страницу бронирований, принадлежащих клиенту.
      *
      * @param customerId идентификатор клиента.
-     * @return список объектов {@link Booking} клиента.
+     * @param pageable   номер, размер и сортировка страницы.
+     * @param withTotal  считать ли общее количество бронирований клиента.
+     * @return страница бронирований {@link Booking} клиента.
      * @throws CustomerNotFoundException если клиент не найден.
      */
-    List<BookingResponseDto> getAllBookingsByCustomerId(Long customerId);
+    PageResponseDto<BookingResponseDto> getAllBookingsByCustomerId(Long customerId, Pageable pageable, boolean withTotal);
 
     /**
-     * Находит все букинги клиента по email
-     * @param
-     * @return List<BookingDto>
+     * Находит страницу букингов клиента по email
+     * @param email email клиента
+     * @param pageable номер, размер и сортировка страницы
+     * @param withTotal считать ли общее количество бронирований клиента
+     * @return страница BookingResponseDto
      */
-    List<BookingResponseDto> getAllBookingsByCustomerEmail(String email);
+    PageResponseDto<BookingResponseDto> getAllBookingsByCustomerEmail(String email, Pageable pageable, boolean withTotal);
 
     /**
      * Возвращает объект клиента по его идентификатору или выбрасывает исключение,
@@ -1,12 +1,19 @@
-INSERT INTO car (brand, model, type, year, fuel_type, transmission_type, day_rental_price, active)
+-- id авто выдаются пулами из car_seq, у колонки car.id нет auto_increment, поэтому id задаются явно:
+-- после текущего значения последовательности и максимального id, чтобы не пересечься с уже выданными пулами
+SET @base_id = (SELECT GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) FROM car)) FROM car_seq);
+
+INSERT INTO car (id, brand, model, type, year, fuel_type, transmission_type, day_rental_price, active)
 VALUES
-    ('BMW', 'X5', 'SUV', 2021, 'Diesel', 'Automatic', 150.00, true),
-    ('Audi', 'A4', 'Sedan', 2020, 'Petrol', 'Manual', 120.00, true),
-    ('Toyota', 'Corolla', 'Sedan', 2019, 'Hybrid', 'Automatic', 100.00, true),
-    ('Ford', 'Focus', 'Hatchback', 2018, 'Petrol', 'Manual', 90.00, true),
-    ('Tesla', 'Model S', 'Sedan', 2022, 'Electric', 'Automatic', 180.00, true),
-    ('Volkswagen', 'Golf', 'Hatchback', 2021, 'Diesel', 'Manual', 80.00, true),
-    ('Mercedes-Benz', 'C-Class', 'Sedan', 2020, 'Petrol', 'Automatic', 140.00, true),
-    ('Honda', 'Civic', 'Sedan', 2019, 'Petrol', 'Manual', 85.00, true),
-    ('Nissan', 'Qashqai', 'SUV', 2021, 'Diesel', 'Automatic', 130.00, true),
-    ('Chevrolet', 'Camaro', 'Coupe', 2020, 'Petrol', 'Manual', 160.00, true);
+    (@base_id + 1, 'BMW', 'X5', 'SUV', 2021, 'Diesel', 'Automatic', 150.00, true),
+    (@base_id + 2, 'Audi', 'A4', 'Sedan', 2020, 'Petrol', 'Manual', 120.00, true),
+    (@base_id + 3, 'Toyota', 'Corolla', 'Sedan', 2019, 'Hybrid', 'Automatic', 100.00, true),
+    (@base_id + 4, 'Ford', 'Focus', 'Hatchback', 2018, 'Petrol', 'Manual', 90.00, true),
+    (@base_id + 5, 'Tesla', 'Model S', 'Sedan', 2022, 'Electric', 'Automatic', 180.00, true),
+    (@base_id + 6, 'Volkswagen', 'Golf', 'Hatchback', 2021, 'Diesel', 'Manual', 80.00, true),
+    (@base_id + 7, 'Mercedes-Benz', 'C-Class', 'Sedan', 2020, 'Petrol', 'Automatic', 140.00, true),
+    (@base_id + 8, 'Honda', 'Civic', 'Sedan', 2019, 'Petrol', 'Manual', 85.00, true),
+    (@base_id + 9, 'Nissan', 'Qashqai', 'SUV', 2021, 'Diesel', 'Automatic', 130.00, true),
+    (@base_id + 10, 'Chevrolet', 'Camaro', 'Coupe', 2020, 'Petrol', 'Manual', 160.00, true);
+
+-- следующий пул последовательности начинается после вставленных id
+UPDATE car_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 51 FROM car);
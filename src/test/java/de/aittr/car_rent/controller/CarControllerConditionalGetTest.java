@@ -0,0 +1,133 @@
+package de.aittr.car_rent.controller;
+
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.domain.entity.CarFuelType;
+import de.aittr.car_rent.domain.entity.CarTransmissionType;
+import de.aittr.car_rent.domain.entity.CarType;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.BookingAvailabilityIndex;
+import de.aittr.car_rent.service.CarImageService;
+import de.aittr.car_rent.service.CarImportService;
+import de.aittr.car_rent.service.CarLockStripes;
+import de.aittr.car_rent.service.CarServiceImpl;
+import de.aittr.car_rent.service.FleetSnapshotService;
+import de.aittr.car_rent.service.ReservationHoldService;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class CarControllerConditionalGetTest {
+
+    private CarRepository carRepository;
+    private FleetSnapshotService fleetSnapshotService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = mock(CarRepository.class);
+        Car car = new Car("BMW", "X5", 2020, CarType.SUV, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                new BigDecimal("120.00"));
+        ReflectionTestUtils.setField(car, "id", 1L);
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(car));
+        when(carRepository.findAllActiveBrands()).thenReturn(List.of("BMW"));
+        when(carRepository.findById(1L)).thenReturn(Optional.of(car));
+
+        fleetSnapshotService = new FleetSnapshotService(carRepository, new CarMappingServiceImpl(),
+                mock(EntityManager.class), mock(PlatformTransactionManager.class), 100);
+        CarServiceImpl carService = new CarServiceImpl(
+                carRepository,
+                new CarMappingServiceImpl(),
+                mock(BookingRepository.class),
+                mock(CarImageService.class),
+                mock(BookingAvailabilityIndex.class),
+                fleetSnapshotService,
+                mock(ReservationHoldService.class),
+                mock(CarLockStripes.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(new CarController(carService, mock(CarImportService.class)))
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .build();
+    }
+
+    @Test
+    void matchingETagReturnsNotModifiedWithoutTouchingRepository() throws Exception {
+        String eTag = mockMvc.perform(get("/cars"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, public"))
+                .andExpect(jsonPath("$.content[0].brand").value("BMW"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertNotNull(eTag);
+        clearInvocations(carRepository);
+
+        for (String path : List.of("/cars", "/cars/1", "/cars/brands", "/cars/types")) {
+            mockMvc.perform(get(path).header("If-None-Match", eTag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", eTag))
+                    .andExpect(content().string(""));
+        }
+        verifyNoInteractions(carRepository);
+    }
+
+    @Test
+    void carMutationChangesETag() throws Exception {
+        String eTag = mockMvc.perform(get("/cars/brands"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        long version = fleetSnapshotService.version();
+
+        fleetSnapshotService.refreshAfterCommit();
+        //снимок пересоздаётся в фоновом потоке
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fleetSnapshotService.version() == version && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        mockMvc.perform(get("/cars/brands").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("BMW"));
+    }
+
+    @Test
+    void unsortedAdminPageKeepsSnapshotOrder() throws Exception {
+        Car cheap = new Car("Audi", "A4", 2020, CarType.SEDAN, CarFuelType.PETROL, CarTransmissionType.MANUAL,
+                new BigDecimal("60.00"));
+        ReflectionTestUtils.setField(cheap, "id", 2L);
+        Car inactive = new Car("Audi", "A6", 2021, CarType.SEDAN, CarFuelType.PETROL, CarTransmissionType.MANUAL,
+                new BigDecimal("150.00"));
+        ReflectionTestUtils.setField(inactive, "id", 3L);
+        inactive.setActive(false);
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(cheap, inactive));
+        fleetSnapshotService.refresh();
+
+        //неактивные авто в списке администратора идут первыми
+        mockMvc.perform(get("/cars/all"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(3))
+                .andExpect(jsonPath("$.content[1].id").value(2));
+        mockMvc.perform(get("/cars/all").param("sort", "dayRentalPrice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(2))
+                .andExpect(jsonPath("$.content[1].id").value(3));
+    }
+}
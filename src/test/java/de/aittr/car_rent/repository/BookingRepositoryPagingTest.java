@@ -0,0 +1,139 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.dto.BookingResponseDto;
+import de.aittr.car_rent.domain.dto.CustomerResponseDto;
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.service.mapping.BookingMapper;
+import de.aittr.car_rent.service.mapping.BookingMapperImpl;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import de.aittr.car_rent.service.mapping.CustomerMapper;
+import de.aittr.car_rent.service.mapping.CustomerMapperImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({BookingMapperImpl.class, CustomerMapperImpl.class, CarMappingServiceImpl.class})
+class BookingRepositoryPagingTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private BookingMapper bookingMapper;
+    @Autowired
+    private CustomerMapper customerMapper;
+
+    private Statistics statistics;
+    private Car firstCar;
+
+    @BeforeEach
+    void setUp() {
+        Role role = entityManager.persist(new Role("ROLE_CUSTOMER"));
+        List<Customer> customers = List.of(
+                entityManager.persist(new Customer("Anna", "Schmidt", "secret", "anna@example.com", role)),
+                entityManager.persist(new Customer("Ben", "Meyer", "secret", "ben@example.com", role)),
+                entityManager.persist(new Customer("Clara", "Weber", "secret", "clara@example.com", role)));
+        List<Car> cars = List.of(
+                entityManager.persist(car("BMW", "X5")),
+                entityManager.persist(car("Audi", "A4")),
+                entityManager.persist(car("Ford", "Focus")));
+        firstCar = cars.get(0);
+        for (int i = 0; i < 12; i++) {
+            Booking booking = new Booking();
+            booking.setCustomer(customers.get(i % 3));
+            booking.setCar(cars.get(i % 3));
+            booking.setRentalStartDate(START.plusDays(i));
+            booking.setRentalEndDate(START.plusDays(i + 2));
+            booking.setBookingStatus(i % 2 == 0 ? BookingStatus.PENDING : BookingStatus.ACTIVE);
+            booking.setTotalPrice(new BigDecimal("200.00"));
+            entityManager.persist(booking);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void loadsBookingPageWithCarsAndCustomersInOneQuery() {
+        Slice<Booking> page = bookingRepository.findSliceBy(PageRequest.of(1, 5, Sort.by("id")));
+        List<BookingResponseDto> bookings = page.map(bookingMapper::mapEntityToDto).getContent();
+
+        assertEquals(5, bookings.size());
+        assertTrue(page.hasNext());
+        assertNotNull(bookings.get(0).customerDto().role());
+        assertNotNull(bookings.get(0).carDto().brand());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void everyPageOfCarBookingsCostsOneQuery() {
+        Slice<Booking> first = bookingRepository.findSliceByCarId(
+                firstCar.getId(), PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "rentalStartDate")));
+        first.map(bookingMapper::mapEntityToDto);
+        Slice<Booking> second = bookingRepository.findSliceByCarId(firstCar.getId(), first.nextPageable());
+        second.map(bookingMapper::mapEntityToDto);
+
+        assertEquals(3, first.getNumberOfElements());
+        assertEquals(1, second.getNumberOfElements());
+        assertFalse(second.hasNext());
+        assertEquals(START.plusDays(9), first.getContent().get(0).getRentalStartDate());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void filtersByRentalDayAndStatusWithoutLoadingOtherRows() {
+        Slice<Booking> page = bookingRepository.findSliceByRentalDayAndStatus(
+                START.plusDays(4).toLocalDate().atStartOfDay(), START.plusDays(5).toLocalDate().atStartOfDay(),
+                null, null, BookingStatus.PENDING, PageRequest.of(0, 20, Sort.by("id")));
+        page.map(bookingMapper::mapEntityToDto);
+        long total = bookingRepository.countByRentalDayAndStatus(
+                null, null, null, null, BookingStatus.ACTIVE);
+
+        assertEquals(1, page.getNumberOfElements());
+        assertEquals(6, total);
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void loadsCustomerPageWithRolesInOneQuery() {
+        Slice<Customer> page = customerRepository.findSliceBy(PageRequest.of(0, 2, Sort.by("email")));
+        List<CustomerResponseDto> customers = page.map(customerMapper::toDto).getContent();
+
+        assertEquals(List.of("anna@example.com", "ben@example.com"),
+                customers.stream().map(CustomerResponseDto::email).toList());
+        assertEquals("ROLE_CUSTOMER", customers.get(0).role());
+        assertTrue(page.hasNext());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private static Car car(String brand, String model) {
+        return new Car(brand, model, 2021, CarType.SEDAN, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                new BigDecimal("100.00"));
+    }
+}
@@ -0,0 +1,62 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.dto.CarFacetCombinationDto;
+import de.aittr.car_rent.domain.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class CarFacetRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        entityManager.persist(new Car("BMW", "X5", 2021, CarType.SUV, CarFuelType.DIESEL,
+                CarTransmissionType.AUTOMATIC, new BigDecimal("150.00")));
+        entityManager.persist(new Car("BMW", "X3", 2022, CarType.SUV, CarFuelType.DIESEL,
+                CarTransmissionType.AUTOMATIC, new BigDecimal("60.00")));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void countsPriceBucketsWithoutPriceCondition() {
+        List<CarFacetCombinationDto> combinations = carRepository.countFacetCombinations(
+                CarSpecifications.isActive(),
+                CarSpecifications.dayRentalPriceBetween(null, new BigDecimal("100")),
+                50);
+
+        //авто дороже выбранной цены остаётся в своём диапазоне, но отмечено как не подходящее по цене
+        assertEquals(2, combinations.size());
+        assertTrue(combinations.contains(new CarFacetCombinationDto(
+                "BMW", CarType.SUV, CarFuelType.DIESEL, CarTransmissionType.AUTOMATIC, 1, true, 1)));
+        assertTrue(combinations.contains(new CarFacetCombinationDto(
+                "BMW", CarType.SUV, CarFuelType.DIESEL, CarTransmissionType.AUTOMATIC, 3, false, 1)));
+    }
+
+    @Test
+    void treatsAllCarsAsMatchingWithoutPriceCondition() {
+        List<CarFacetCombinationDto> combinations = carRepository.countFacetCombinations(
+                CarSpecifications.isActive(), Specification.where(null), 200);
+
+        assertEquals(List.of(new CarFacetCombinationDto(
+                "BMW", CarType.SUV, CarFuelType.DIESEL, CarTransmissionType.AUTOMATIC, 0, true, 2)), combinations);
+    }
+}
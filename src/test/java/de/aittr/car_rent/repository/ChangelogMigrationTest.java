@@ -0,0 +1,129 @@
+package de.aittr.car_rent.repository;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Миграции Liquibase на H2 в режиме MySQL: на схеме, созданной ddl-auto до миграций, и на пустой БД
+ */
+class ChangelogMigrationTest {
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void seedsSequencesPastExistingIds() throws Exception {
+        createLegacySchema();
+        //последовательность, созданная ddl-auto без миграции, начинается с 1
+        jdbc.execute("create table car_seq (next_val bigint)");
+        jdbc.execute("insert into car_seq values (1)");
+
+        migrate("db/changelog/changes/004-pooled-id-sequences.xml");
+
+        assertEquals(120 + 51, nextVal("car_seq"));
+        assertEquals(51, nextVal("booking_seq"));
+        assertEquals(7 + 51, nextVal("customer_seq"));
+    }
+
+    @Test
+    void neverLowersSequenceAlreadyPastExistingIds() throws Exception {
+        createLegacySchema();
+        jdbc.execute("create table car_seq (next_val bigint)");
+        jdbc.execute("insert into car_seq values (1000)");
+
+        migrate("db/changelog/changes/004-pooled-id-sequences.xml");
+
+        assertEquals(1000, nextVal("car_seq"));
+    }
+
+    @Test
+    void widensBookingStatusEnumToVarchar() throws Exception {
+        createLegacySchema();
+
+        migrate("db/changelog/changes/003-booking-status-varchar.xml");
+
+        jdbc.update("insert into booking (id, booking_status) values (1, 'COMPLETED'), (2, 'EXPIRED')");
+        assertEquals(2, jdbc.queryForObject("select count(*) from booking", Integer.class));
+    }
+
+    @Test
+    void normalizesCustomerEmails() throws Exception {
+        createLegacySchema();
+        jdbc.update("insert into customer (id, email) values (8, ' Ben.Meyer@Example.com ')");
+
+        migrate("db/changelog/changes/005-normalize-customer-email.xml");
+
+        assertEquals("ben.meyer@example.com",
+                jdbc.queryForObject("select email from customer where id = 8", String.class));
+    }
+
+    @Test
+    void haltsOnEmailsDifferingOnlyInCase() {
+        createLegacySchema();
+        jdbc.update("insert into customer (id, email) values (8, 'Anna@example.com')");
+
+        assertThrows(Exception.class, () -> migrate("db/changelog/changes/005-normalize-customer-email.xml"));
+        assertEquals("Anna@example.com",
+                jdbc.queryForObject("select email from customer where id = 8", String.class));
+    }
+
+    @Test
+    void masterChangelogRunsOnEmptyDatabase() throws Exception {
+        migrate("db/changelog/changelog-master.xml");
+
+        //схему потом создаёт ddl-auto, все изменения отмечены выполненными без действий
+        assertEquals(0, jdbc.queryForObject(
+                "select count(*) from information_schema.tables where lower(table_name) = 'car'", Integer.class));
+        assertTrue(jdbc.queryForObject("select count(*) from databasechangelog", Integer.class) > 0);
+    }
+
+    @Test
+    void masterChangelogMigratesExistingSchema() throws Exception {
+        createLegacySchema();
+
+        migrate("db/changelog/changelog-master.xml");
+
+        assertEquals(120 + 51, nextVal("car_seq"));
+        jdbc.update("insert into booking (id, booking_status) values (1, 'COMPLETED')");
+        assertEquals("anna@example.com", jdbc.queryForObject("select email from customer where id = 7", String.class));
+    }
+
+    private void createLegacySchema() {
+        jdbc.execute("create table car (id bigint primary key)");
+        jdbc.execute("create table booking (id bigint primary key, booking_status enum('PENDING','ACTIVE',"
+                + "'CANCELLED_BY_ADMIN','CANCELLED_BY_USER','CLOSED_BY_ADMIN') not null)");
+        jdbc.execute("create table customer (id bigint primary key, email varchar(255) unique)");
+        jdbc.execute("create table role (id bigint primary key)");
+        jdbc.execute("create table confirm_code (id bigint primary key)");
+        jdbc.update("insert into car (id) values (3), (120)");
+        jdbc.update("insert into customer (id, email) values (7, 'anna@example.com')");
+    }
+
+    private long nextVal(String table) {
+        return jdbc.queryForObject("select next_val from " + table, Long.class);
+    }
+
+    private void migrate(String changeLog) throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:" + changeLog);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+}
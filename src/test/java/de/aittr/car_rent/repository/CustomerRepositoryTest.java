@@ -0,0 +1,70 @@
+package de.aittr.car_rent.repository;
+
+import de.aittr.car_rent.domain.entity.Customer;
+import de.aittr.car_rent.domain.entity.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class CustomerRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Role role = entityManager.persist(new Role("ROLE_CUSTOMER"));
+        entityManager.persist(new Customer("Anna", "Schmidt", "secret", "  Anna.Schmidt@Example.COM ", role));
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void storesEmailNormalized() {
+        String stored = (String) entityManager.getEntityManager()
+                .createNativeQuery("select email from customer").getSingleResult();
+
+        assertEquals("anna.schmidt@example.com", stored);
+    }
+
+    @Test
+    void findsCustomerByEmailInAnyCaseWithOneQuery() {
+        Optional<Customer> customer = customerRepository.findByEmail("ANNA.schmidt@example.com ");
+
+        assertTrue(customer.isPresent());
+        assertEquals("ROLE_CUSTOMER", customer.get().getRole().getTitle());
+        assertTrue(customerRepository.existsByEmailIgnoreCase("Anna.Schmidt@example.com"));
+        assertFalse(customerRepository.existsByEmailIgnoreCase("ben@example.com"));
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void keepsEmailNormalizedOnUpdate() {
+        Customer customer = customerRepository.findByEmail("anna.schmidt@example.com").orElseThrow();
+        customer.setEmail("Anna@Example.com");
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals("anna@example.com", customerRepository.findByEmail("ANNA@EXAMPLE.COM").orElseThrow().getEmail());
+    }
+}
@@ -0,0 +1,100 @@
+package de.aittr.car_rent.security.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.aittr.car_rent.domain.entity.Role;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.security.config.RateLimitProperties;
+import de.aittr.car_rent.security.service.InMemoryRateLimitStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitFilter filter;
+
+    RateLimitFilterTest() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(
+                route("POST", "/auth/login", RateLimitProperties.KeyType.IP, 2, Duration.ofMinutes(1)),
+                route("POST", "/bookings", RateLimitProperties.KeyType.PRINCIPAL, 1, Duration.ofMinutes(1))));
+        filter = new RateLimitFilter(properties, new InMemoryRateLimitStore(properties), new ObjectMapper(),
+                meterRegistry);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rejectsRequestsOverCapacityWithRetryAfter() throws Exception {
+        assertEquals(200, send("POST", "/auth/login", "10.0.0.1").getStatus());
+        assertEquals(200, send("POST", "/auth/login", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse rejected = send("POST", "/auth/login", "10.0.0.1");
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("30", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("Too many requests"));
+        assertEquals(200, send("POST", "/auth/login", "10.0.0.2").getStatus());
+        assertEquals(1.0, meterRegistry.get("rate.limit.rejected").tag("route", "POST /auth/login").counter().count());
+    }
+
+    @Test
+    void leavesOtherRoutesAndMethodsUnlimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send("GET", "/cars", "10.0.0.1").getStatus());
+            assertEquals(200, send("GET", "/bookings", "10.0.0.1").getStatus());
+        }
+    }
+
+    @Test
+    void limitsAuthenticatedCustomerAcrossAddresses() throws Exception {
+        AuthInfo anna = new AuthInfo(7L, "anna@example.com", new Role("ROLE_CUSTOMER"));
+        anna.setAuthenticated(true);
+        SecurityContextHolder.getContext().setAuthentication(anna);
+
+        assertEquals(200, send("POST", "/bookings", "10.0.0.1").getStatus());
+        assertEquals(429, send("POST", "/bookings", "10.0.0.2").getStatus());
+
+        SecurityContextHolder.clearContext();
+        assertEquals(200, send("POST", "/bookings", "10.0.0.1").getStatus());
+    }
+
+    private MockHttpServletResponse send(String method, String path, String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api" + path);
+        request.setServletPath("/api");
+        request.setPathInfo(path);
+        request.setRemoteAddr(address);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+        filter.doFilter(request, response, chain);
+        if (response.getStatus() == 200) {
+            verify(chain).doFilter(request, response);
+        }
+        return response;
+    }
+
+    private static RateLimitProperties.Route route(String method, String path, RateLimitProperties.KeyType key,
+                                                   long capacity, Duration period) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setMethod(method);
+        route.setPath(path);
+        route.setKey(key);
+        route.setCapacity(capacity);
+        route.setPeriod(period);
+        return route;
+    }
+}
@@ -0,0 +1,72 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.domain.entity.Customer;
+import de.aittr.car_rent.domain.entity.Role;
+import de.aittr.car_rent.security.dto.TokenResponseDto;
+import de.aittr.car_rent.service.interfaces.CustomerService;
+import de.aittr.car_rent.service.interfaces.EmailService;
+import de.aittr.car_rent.service.mapping.CustomerMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthServiceTest {
+
+    private static final String ACCESS_KEY = "19ygUzxSxy8m8F3SzRbeEaywX8nkqqPk0euCrgTtwq0=";
+    private static final String REFRESH_KEY = "0UtUSEbMUokc1UUfte1F1C8rN5wJb0y4X0fSypUCUVw=";
+
+    private final CustomerService customerService = mock(CustomerService.class);
+    private final RefreshTokenStore refreshTokenStore = new InMemoryRefreshTokenStore(100);
+    private TokenService tokenService;
+    private AuthService authService;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        TokenRevocationService tokenRevocationService = new TokenRevocationService();
+        tokenService = new TokenService(ACCESS_KEY, REFRESH_KEY, customerService, tokenRevocationService,
+                new VerifiedClaimsCache(true, 100, new SimpleMeterRegistry()));
+        authService = new AuthService(refreshTokenStore, tokenRevocationService, customerService, tokenService,
+                mock(BCryptPasswordEncoder.class), mock(PasswordHashingService.class), mock(CustomerMapper.class),
+                mock(EmailService.class), mock(TransactionTemplate.class), Runnable::run);
+        customer = new Customer("Anna", "Schmidt", "secret", "anna@example.com", new Role("ROLE_CUSTOMER"));
+        ReflectionTestUtils.setField(customer, "id", 42L);
+        customer.setActive(true);
+        when(customerService.findByEmailOrThrow("anna@example.com")).thenReturn(customer);
+    }
+
+    @Test
+    void rotatesRefreshTokenOfActiveCustomer() {
+        String refreshToken = issueRefreshToken();
+
+        TokenResponseDto tokens = authService.getNewAccessToken(refreshToken);
+
+        assertNotNull(tokens.getAccessToken());
+        assertNotNull(tokens.getRefreshToken());
+    }
+
+    @Test
+    void refusesAndRevokesRefreshTokenOfInactiveCustomer() {
+        String refreshToken = issueRefreshToken();
+        customer.setActive(false);
+
+        assertNull(authService.getNewAccessToken(refreshToken).getAccessToken());
+
+        //токен отозван: после восстановления клиента нужен новый вход
+        customer.setActive(true);
+        assertNull(authService.getNewAccessToken(refreshToken).getAccessToken());
+    }
+
+    private String issueRefreshToken() {
+        String refreshToken = tokenService.generateRefreshToken(customer);
+        refreshTokenStore.issue(customer.getEmail(), refreshToken,
+                tokenService.getRafreshClaims(refreshToken).getExpiration().toInstant());
+        return refreshToken;
+    }
+}
@@ -0,0 +1,99 @@
+package de.aittr.car_rent.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimitStoreTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void allowsBurstOfCapacityThenReportsWaitForNextToken() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(100);
+        //5 запросов в минуту: токен раз в 12 секунд, допуск на 4 токена
+        long interval = MINUTE / 5;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, store.tryAcquire("login|ip:10.0.0.1", interval, interval * 4));
+        }
+        long wait = store.tryAcquire("login|ip:10.0.0.1", interval, interval * 4);
+
+        assertTrue(wait > interval - TimeUnit.SECONDS.toNanos(1) && wait <= interval, "wait " + wait);
+        assertEquals(0, store.tryAcquire("login|ip:10.0.0.2", interval, interval * 4));
+    }
+
+    @Test
+    void refillsTokensOverTime() throws Exception {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(100);
+        long interval = TimeUnit.MILLISECONDS.toNanos(20);
+
+        assertEquals(0, store.tryAcquire("key", interval, 0));
+        assertTrue(store.tryAcquire("key", interval, 0) > 0);
+        Thread.sleep(40);
+
+        assertEquals(0, store.tryAcquire("key", interval, 0));
+    }
+
+    @Test
+    void parallelRequestsNeverTakeMoreThanCapacity() throws Exception {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(100);
+        long interval = MINUTE;
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < 16; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        if (store.tryAcquire("bookings|customer:anna@example.com", interval, interval * 49) == 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, allowed.get());
+    }
+
+    @Test
+    void evictsFullBucketsWhenKeyLimitIsReached() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(10);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, store.tryAcquire("ip:10.0.0." + i, 1, 0));
+        }
+
+        assertTrue(store.size() <= 10);
+    }
+
+    @Test
+    void rejectsNewKeysInsteadOfDroppingUsedBuckets() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(10);
+        assertEquals(0, store.tryAcquire("ip:10.0.0.1", MINUTE, 0));
+
+        //поток запросов с новых адресов не сбрасывает корзину клиента, исчерпавшего лимит
+        for (int i = 2; i < 100; i++) {
+            store.tryAcquire("ip:10.0.0." + i, MINUTE, 0);
+        }
+
+        assertEquals(10, store.size());
+        assertTrue(store.tryAcquire("ip:10.0.0.1", MINUTE, 0) > 0);
+        assertEquals(MINUTE, store.tryAcquire("ip:10.0.1.1", MINUTE, 0));
+    }
+}
@@ -0,0 +1,70 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.security.service.RefreshTokenStore.RotationResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRefreshTokenStoreTest {
+
+    private static final String EMAIL = "anna@example.com";
+
+    private final InMemoryRefreshTokenStore store = new InMemoryRefreshTokenStore(1000);
+    private final Instant expiresAt = Instant.now().plusSeconds(3600);
+
+    @Test
+    void rotatesTokenAndDetectsReuse() {
+        store.issue(EMAIL, "first", expiresAt);
+
+        assertEquals(RotationResult.ROTATED, store.rotate(EMAIL, "first", "second", expiresAt));
+        assertEquals(RotationResult.REUSED, store.rotate(EMAIL, "first", "third", expiresAt));
+        //после обнаружения повторного использования действующий токен тоже отозван
+        assertEquals(RotationResult.INVALID, store.rotate(EMAIL, "second", "fourth", expiresAt));
+    }
+
+    @Test
+    void newLoginReplacesPreviousTokenAndExpiredTokensAreInvalid() {
+        store.issue(EMAIL, "first", expiresAt);
+        store.issue(EMAIL, "second", expiresAt);
+        store.issue("bob@example.com", "expired", Instant.now().minusSeconds(1));
+
+        assertEquals(RotationResult.INVALID, store.rotate(EMAIL, "first", "third", expiresAt));
+        assertEquals(RotationResult.INVALID, store.rotate("bob@example.com", "expired", "new", expiresAt));
+        assertEquals(RotationResult.INVALID, store.rotate("bob@example.com", "second", "new", expiresAt));
+        assertEquals(RotationResult.ROTATED, store.rotate(EMAIL, "second", "third", expiresAt));
+    }
+
+    @Test
+    void onlyOneOfParallelRotationsOfSameTokenSucceeds() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String token = "token-" + round;
+                store.issue(EMAIL, token, expiresAt);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<RotationResult>> results = IntStream.range(0, threads)
+                        .mapToObj(thread -> executor.submit(() -> {
+                            start.await();
+                            return store.rotate(EMAIL, token, token + "-next-" + thread, expiresAt);
+                        }))
+                        .toList();
+                start.countDown();
+                long rotated = 0;
+                for (Future<RotationResult> result : results) {
+                    if (result.get(5, TimeUnit.SECONDS) == RotationResult.ROTATED) {
+                        rotated++;
+                    }
+                }
+                assertEquals(1, rotated);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.aittr.car_rent.security.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = "security.rate-limit.store=jpa")
+@Import(JpaRateLimitStore.class)
+class JpaRateLimitStoreTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(12);
+
+    @Autowired
+    private JpaRateLimitStore store;
+
+    @Test
+    void sharesBucketThroughTable() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, store.tryAcquire("POST /auth/login|ip:10.0.0.1", INTERVAL, INTERVAL * 4));
+        }
+        long wait = store.tryAcquire("POST /auth/login|ip:10.0.0.1", INTERVAL, INTERVAL * 4);
+
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(11) && wait <= INTERVAL, "wait " + wait);
+        assertEquals(0, store.tryAcquire("POST /auth/login|ip:10.0.0.2", INTERVAL, INTERVAL * 4));
+    }
+
+    @Test
+    void deletesFullBuckets() {
+        store.tryAcquire("POST /bookings|customer:anna@example.com", TimeUnit.MILLISECONDS.toNanos(1), 0);
+
+        store.deleteFullBuckets();
+
+        assertEquals(0, store.tryAcquire("POST /bookings|customer:anna@example.com", INTERVAL, 0));
+    }
+}
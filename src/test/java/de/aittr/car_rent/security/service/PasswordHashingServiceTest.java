@@ -0,0 +1,92 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.exception_handling.exceptions.RetryLaterException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PasswordHashingServiceTest {
+
+    private final BCryptPasswordEncoder passwordEncoder = mock(BCryptPasswordEncoder.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch hashingStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseHashing = new CountDownLatch(1);
+    private PasswordHashingService hashingService;
+
+    @AfterEach
+    void tearDown() {
+        releaseHashing.countDown();
+        hashingService.shutdown();
+    }
+
+    @Test
+    void hashesOnPoolAndRecordsLatency() throws Exception {
+        hashingService = new PasswordHashingService(new BCryptPasswordEncoder(4), 1, 1, 2000, 1, meterRegistry);
+
+        String hash = hashingService.encode("User-pass#007").get(5, TimeUnit.SECONDS);
+
+        assertTrue(hashingService.matches("User-pass#007", hash).get(5, TimeUnit.SECONDS));
+        assertFalse(hashingService.matches("wrong", hash).get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("password.hashing").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("password.hashing").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void rejectsImmediatelyWhenQueueIsFull() throws Exception {
+        hashingService = new PasswordHashingService(passwordEncoder, 1, 1, 2000, 3, meterRegistry);
+        blockHashingThread();
+
+        CompletableFuture<String> queued = hashingService.encode("second");
+        CompletableFuture<String> rejected = hashingService.encode("third");
+
+        RetryLaterException exception = busyException(rejected);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(3, exception.getRetryAfterSeconds());
+        assertFalse(queued.isDone());
+        assertEquals(1.0, meterRegistry.get("password.hashing.queue.size").gauge().value());
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").tag("reason", "queue-full").counter().count());
+    }
+
+    @Test
+    void dropsTasksThatWaitedLongerThanQueueTimeout() throws Exception {
+        hashingService = new PasswordHashingService(passwordEncoder, 1, 4, 50, 1, meterRegistry);
+        blockHashingThread();
+        CompletableFuture<String> queued = hashingService.encode("second");
+
+        Thread.sleep(100);
+        releaseHashing.countDown();
+
+        busyException(queued);
+        verify(passwordEncoder, never()).encode("second");
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").tag("reason", "queue-timeout").counter().count());
+    }
+
+    //первая задача занимает единственный поток пула, пока тест не отпустит её
+    private void blockHashingThread() throws InterruptedException {
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            if ("first".equals(invocation.getArgument(0))) {
+                hashingStarted.countDown();
+                releaseHashing.await();
+            }
+            return "hash";
+        });
+        hashingService.encode("first");
+        assertTrue(hashingStarted.await(5, TimeUnit.SECONDS));
+    }
+
+    private static RetryLaterException busyException(CompletableFuture<?> future) {
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(RetryLaterException.class, exception.getCause());
+    }
+}
@@ -0,0 +1,93 @@
+package de.aittr.car_rent.security.service;
+
+import de.aittr.car_rent.domain.entity.Customer;
+import de.aittr.car_rent.domain.entity.Role;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.service.interfaces.CustomerService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenServiceTest {
+
+    private static final String ACCESS_KEY = "19ygUzxSxy8m8F3SzRbeEaywX8nkqqPk0euCrgTtwq0=";
+    private static final String REFRESH_KEY = "0UtUSEbMUokc1UUfte1F1C8rN5wJb0y4X0fSypUCUVw=";
+
+    private CustomerService customerService;
+    private TokenRevocationService tokenRevocationService;
+    private TokenService tokenService;
+    private SimpleMeterRegistry meterRegistry;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customerService = mock(CustomerService.class);
+        tokenRevocationService = new TokenRevocationService();
+        meterRegistry = new SimpleMeterRegistry();
+        tokenService = new TokenService(ACCESS_KEY, REFRESH_KEY, customerService, tokenRevocationService,
+                new VerifiedClaimsCache(true, 100, meterRegistry));
+        customer = new Customer("Anna", "Schmidt", "secret", "anna@example.com", new Role("ROLE_ADMIN"));
+        ReflectionTestUtils.setField(customer, "id", 42L);
+    }
+
+    @Test
+    void authenticatesFromTokenClaimsWithoutCustomerLookup() {
+        Claims claims = tokenService.getAccessClaims(tokenService.generateAccessToken(customer));
+
+        AuthInfo authInfo = tokenService.mapClaimsToAuthInfo(claims);
+
+        assertEquals("anna@example.com", authInfo.getName());
+        assertEquals("ROLE_ADMIN", authInfo.getAuthorities().iterator().next().getAuthority());
+        assertEquals(42L, claims.get(TokenService.CUSTOMER_ID_CLAIM, Long.class));
+        assertEquals(42L, authInfo.getCustomerId());
+        assertTrue(authInfo.isAdmin());
+        verifyNoInteractions(customerService);
+    }
+
+    @Test
+    void cachesVerifiedClaimsUntilTokenExpires() {
+        String token = tokenService.generateAccessToken(customer);
+
+        Claims first = tokenService.verifyAccessToken(token).orElseThrow();
+        Claims second = tokenService.verifyAccessToken(token).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals(1.0, meterRegistry.get("jwt.claims.cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("jwt.claims.cache").tag("result", "miss").counter().count());
+        assertTrue(tokenService.verifyAccessToken(token + "x").isEmpty());
+    }
+
+    @Test
+    void rejectsTokensIssuedBeforeRevocation() {
+        Claims claims = tokenService.getAccessClaims(tokenService.generateAccessToken(customer));
+
+        tokenRevocationService.revokeAll("Anna@Example.com");
+
+        assertThrows(RestApiException.class, () -> tokenService.mapClaimsToAuthInfo(claims));
+    }
+
+    @Test
+    void fallsBackToCustomerLookupForTokensWithoutRoleClaim() {
+        when(customerService.findByEmail("anna@example.com")).thenReturn(Optional.of(customer));
+        String legacyToken = Jwts.builder()
+                .subject("anna@example.com")
+                .signWith((SecretKey) ReflectionTestUtils.getField(tokenService, "accessKey"))
+                .compact();
+
+        AuthInfo authInfo = tokenService.mapClaimsToAuthInfo(tokenService.getAccessClaims(legacyToken));
+
+        assertEquals("ROLE_ADMIN", authInfo.getAuthorities().iterator().next().getAuthority());
+        assertEquals(42L, authInfo.getCustomerId());
+        verify(customerService).findByEmail("anna@example.com");
+    }
+}
@@ -0,0 +1,101 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
+import de.aittr.car_rent.domain.entity.Booking;
+import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookingAvailabilityIndexTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2030, 5, 10, 0, 0);
+
+    private BookingRepository bookingRepository;
+    private BookingAvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findAllIntervalsByBookingStatusIn(any())).thenReturn(List.of(
+                new BookingIntervalDto(1L, 7L, DAY.plusHours(10), DAY.plusDays(2)),
+                new BookingIntervalDto(2L, 7L, DAY.plusDays(5), DAY.plusDays(6)),
+                new BookingIntervalDto(3L, 8L, DAY, DAY.plusDays(1))));
+        index = new BookingAvailabilityIndex(bookingRepository, true, false);
+        index.warmUp();
+        when(bookingRepository.existsOverlappingBooking(any(), any(), any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void detectsOverlapsWithWarmedUpBookings() {
+        assertTrue(index.isReady());
+        assertTrue(index.hasOverlap(7L, DAY.plusDays(1), DAY.plusDays(3)));
+        assertTrue(index.hasOverlap(7L, DAY, DAY.plusDays(10)));
+        assertFalse(index.hasOverlap(7L, DAY.plusDays(2), DAY.plusDays(5)));
+        assertFalse(index.hasOverlap(7L, DAY, DAY.plusHours(10)));
+        assertFalse(index.hasOverlap(9L, DAY, DAY.plusDays(10)));
+        //свободный период определяется без БД, занятый подтверждается БД
+        verify(bookingRepository, times(2)).existsOverlappingBooking(any(), any(), any(), any());
+    }
+
+    @Test
+    void reloadsCarWhoseBookingWasReleasedElsewhere() {
+        //бронирование 1 отменено на другом экземпляре, в БД у авто 7 осталось только бронирование 2
+        when(bookingRepository.existsOverlappingBooking(eq(7L), any(), any(), any())).thenReturn(false);
+        when(bookingRepository.findIntervalsByCarIdAndBookingStatusIn(eq(7L), any())).thenReturn(List.of(
+                new BookingIntervalDto(2L, 7L, DAY.plusDays(5), DAY.plusDays(6))));
+
+        assertFalse(index.hasOverlap(7L, DAY.plusDays(1), DAY.plusDays(3)));
+        assertFalse(index.hasOverlap(7L, DAY.plusDays(1), DAY.plusDays(3)));
+
+        verify(bookingRepository, times(1)).existsOverlappingBooking(any(), any(), any(), any());
+        verify(bookingRepository, times(1)).findIntervalsByCarIdAndBookingStatusIn(eq(7L), any());
+    }
+
+    @Test
+    void longEarlierBookingStillBlocksLaterPeriods() {
+        index.updateAfterCommit(booking(4L, 8L, DAY.minusDays(10), DAY.plusDays(20), BookingStatus.ACTIVE));
+
+        assertTrue(index.hasOverlap(8L, DAY.plusDays(15), DAY.plusDays(16)));
+    }
+
+    @Test
+    void followsExtensionsAndCancellations() {
+        index.updateAfterCommit(booking(2L, 7L, DAY.plusDays(5), DAY.plusDays(8), BookingStatus.PENDING));
+        assertTrue(index.hasOverlap(7L, DAY.plusDays(7), DAY.plusDays(9)));
+
+        index.updateAfterCommit(booking(2L, 7L, DAY.plusDays(5), DAY.plusDays(8), BookingStatus.CANCELLED_BY_USER));
+        assertFalse(index.hasOverlap(7L, DAY.plusDays(4), DAY.plusDays(9)));
+    }
+
+    @Test
+    void reportsCarsThatDifferFromDatabase() {
+        assertTrue(index.findInconsistentCarIds().isEmpty());
+
+        index.updateAfterCommit(booking(5L, 9L, DAY, DAY.plusDays(1), BookingStatus.PENDING));
+
+        assertEquals(List.of(9L), List.copyOf(index.findInconsistentCarIds()));
+    }
+
+    private static Booking booking(Long id, Long carId, LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        Car car = new Car();
+        ReflectionTestUtils.setField(car, "id", carId);
+        Booking booking = new Booking();
+        ReflectionTestUtils.setField(booking, "id", id);
+        booking.setCar(car);
+        booking.setRentalStartDate(start);
+        booking.setRentalEndDate(end);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+}
@@ -0,0 +1,92 @@
+package de.aittr.car_rent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BookingExportServiceTest {
+
+    private final ResultSet resultSet = mock(ResultSet.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final BookingExportService exportService;
+
+    BookingExportServiceTest() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong("id")).thenReturn(1L, 2L);
+        when(resultSet.getString("booking_status")).thenReturn("ACTIVE", "CLOSED_BY_ADMIN");
+        when(resultSet.getTimestamp("rental_start_date"))
+                .thenReturn(Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 10, 0)));
+        when(resultSet.getBigDecimal("total_price")).thenReturn(new BigDecimal("300.00"));
+        when(resultSet.getLong("customer_id")).thenReturn(7L);
+        when(resultSet.getString("email")).thenReturn("anna@example.com");
+        when(resultSet.getString("first_name")).thenReturn("Anna");
+        when(resultSet.getString("last_name")).thenReturn("O\"Neil, Jr");
+        when(resultSet.getLong("car_id")).thenReturn(12L);
+        when(resultSet.getString("brand")).thenReturn("BMW");
+        when(resultSet.getString("model")).thenReturn("X5");
+        when(resultSet.getInt("year")).thenReturn(2021);
+        when(resultSet.getBigDecimal("day_rental_price")).thenReturn(new BigDecimal("150.00"));
+
+        exportService = new BookingExportService(
+                dataSource, new ObjectMapper().registerModule(new JavaTimeModule()), Integer.MIN_VALUE);
+    }
+
+    @Test
+    void streamsFlatCsvRowsWithEscapedValues() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long rows = exportService.writeBookings(output, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                BookingExportService.ExportFormat.CSV);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, rows);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("booking_id,booking_status,rental_start_date"));
+        assertEquals("1,ACTIVE,2025-03-01T10:00,,,,300.00,7,anna@example.com,Anna,\"O\"\"Neil, Jr\",12,BMW,X5,2021,150.00",
+                lines[1]);
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        verify(statement).setObject(1, Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 0, 0)));
+        verify(statement).setObject(2, Timestamp.valueOf(LocalDateTime.of(2025, 4, 1, 0, 0)));
+    }
+
+    @Test
+    void streamsOneJsonObjectPerLine() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        exportService.writeBookings(output, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1),
+                BookingExportService.ExportFormat.NDJSON);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"bookingId\":1,\"bookingStatus\":\"ACTIVE\",\"rentalStartDate\":\"2025-03-01T10:00\""));
+        assertTrue(lines[1].contains("\"carBrand\":\"BMW\""));
+    }
+
+    @Test
+    void rejectsInvertedPeriodAndUnknownFormat() {
+        assertThrows(RestApiException.class,
+                () -> exportService.validatePeriod(LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 1)));
+        assertThrows(RestApiException.class, () -> BookingExportService.ExportFormat.of("xlsx"));
+    }
+}
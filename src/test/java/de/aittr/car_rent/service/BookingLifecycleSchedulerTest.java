@@ -0,0 +1,92 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BookingIntervalDto;
+import de.aittr.car_rent.domain.entity.BookingStatus;
+import de.aittr.car_rent.domain.entity.CarStatus;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CarRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BookingLifecycleSchedulerTest {
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final CarRepository carRepository = mock(CarRepository.class);
+    private final BookingAvailabilityIndex bookingAvailabilityIndex = mock(BookingAvailabilityIndex.class);
+    private final FleetSnapshotService fleetSnapshotService = mock(FleetSnapshotService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final BookingLifecycleScheduler scheduler = new BookingLifecycleScheduler(
+            bookingRepository, carRepository, bookingAvailabilityIndex, fleetSnapshotService,
+            mock(PlatformTransactionManager.class), meterRegistry, 2, 60, false);
+
+    @Test
+    void expiresStalePendingBookingsInChunks() {
+        when(bookingRepository.findStartedIntervals(eq(BookingStatus.PENDING), any(), eq(0L), any()))
+                .thenReturn(List.of(interval(1L, 10L), interval(4L, 11L)));
+        when(bookingRepository.findStartedIntervals(eq(BookingStatus.PENDING), any(), eq(4L), any()))
+                .thenReturn(List.of(interval(7L, 12L)));
+        when(bookingRepository.findEndedIntervals(any(), any(), anyLong(), any())).thenReturn(List.of());
+        when(bookingRepository.updateBookingStatus(anyCollection(), eq(BookingStatus.PENDING), eq(BookingStatus.EXPIRED), any()))
+                .thenReturn(2, 1);
+
+        BookingLifecycleScheduler.LifecycleRunResult result = scheduler.runLifecycle();
+
+        assertEquals(new BookingLifecycleScheduler.LifecycleRunResult(0, 3, 0), result);
+        verify(bookingRepository).updateBookingStatus(eq(List.of(1L, 4L)), eq(BookingStatus.PENDING), eq(BookingStatus.EXPIRED), any());
+        verify(bookingRepository).updateBookingStatus(eq(List.of(7L)), eq(BookingStatus.PENDING), eq(BookingStatus.EXPIRED), any());
+        verify(bookingAvailabilityIndex, times(2)).removeAfterCommit(anyCollection());
+        verify(bookingRepository, never()).findDueIntervals(any(), any(), anyLong(), any());
+        verifyNoInteractions(carRepository, fleetSnapshotService);
+        assertEquals(3.0, meterRegistry.get("booking.lifecycle.transitions").tag("transition", "expired").counter().count());
+    }
+
+    @Test
+    void completesEndedActiveBookingsAndInspectsCars() {
+        when(bookingRepository.findStartedIntervals(any(), any(), anyLong(), any())).thenReturn(List.of());
+        when(bookingRepository.findEndedIntervals(eq(BookingStatus.ACTIVE), any(), eq(0L), any()))
+                .thenReturn(List.of(interval(5L, 20L)));
+        when(bookingRepository.updateBookingStatus(anyCollection(), eq(BookingStatus.ACTIVE), eq(BookingStatus.COMPLETED), any()))
+                .thenReturn(1);
+        when(carRepository.updateCarStatusByBookings(List.of(5L), BookingStatus.COMPLETED,
+                EnumSet.of(CarStatus.RENTED), CarStatus.UNDER_INSPECTION)).thenReturn(1);
+
+        BookingLifecycleScheduler.LifecycleRunResult result = scheduler.runLifecycle();
+
+        assertEquals(new BookingLifecycleScheduler.LifecycleRunResult(0, 0, 1), result);
+        verify(fleetSnapshotService).refreshAfterCommit();
+        verify(bookingAvailabilityIndex).removeAfterCommit(List.of(interval(5L, 20L)));
+        assertEquals(1, meterRegistry.get("booking.lifecycle.run").timer().count());
+    }
+
+    @Test
+    void keepsBookingsChangedConcurrentlyInAvailabilityIndex() {
+        when(bookingRepository.findStartedIntervals(eq(BookingStatus.PENDING), any(), eq(0L), any()))
+                .thenReturn(List.of(interval(1L, 10L), interval(2L, 11L)));
+        when(bookingRepository.findEndedIntervals(any(), any(), anyLong(), any())).thenReturn(List.of());
+        //бронирование 2 администратор активировал между выборкой и update
+        when(bookingRepository.updateBookingStatus(anyCollection(), eq(BookingStatus.PENDING), eq(BookingStatus.EXPIRED), any()))
+                .thenReturn(1);
+        when(bookingRepository.findIdsByIdInAndBookingStatus(List.of(1L, 2L), BookingStatus.EXPIRED))
+                .thenReturn(List.of(1L));
+
+        BookingLifecycleScheduler.LifecycleRunResult result = scheduler.runLifecycle();
+
+        assertEquals(new BookingLifecycleScheduler.LifecycleRunResult(0, 1, 0), result);
+        verify(bookingAvailabilityIndex).removeAfterCommit(List.of(interval(1L, 10L)));
+    }
+
+    private static BookingIntervalDto interval(Long id, Long carId) {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 10, 0);
+        return new BookingIntervalDto(id, carId, start, start.plusDays(2));
+    }
+}
@@ -0,0 +1,125 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.security.service.TokenRevocationService;
+import de.aittr.car_rent.service.interfaces.CarService;
+import de.aittr.car_rent.service.mapping.BookingMapperImpl;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import de.aittr.car_rent.service.mapping.CustomerMapperImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Бюджет SQL-запросов для изменения бронирований. Роль и id клиента берутся из {@link AuthInfo},
+ * поэтому операция читает только бронирование (и авто под блокировкой), клиент из БД не загружается
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({BookingServiceImpl.class, BookingMapperImpl.class, CustomerMapperImpl.class, CarMappingServiceImpl.class})
+class BookingMutationQueryBudgetTest {
+
+    @MockitoBean
+    private CarService carService;
+    @MockitoBean
+    private BookingAvailabilityIndex bookingAvailabilityIndex;
+    @MockitoBean
+    private FleetSnapshotService fleetSnapshotService;
+    @MockitoBean
+    private CarLockStripes carLockStripes;
+    @MockitoBean
+    private ReservationHoldService reservationHoldService;
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private BookingServiceImpl bookingService;
+
+    private Statistics statistics;
+    private Car car;
+    private Customer anna;
+    private AuthInfo admin;
+    private AuthInfo owner;
+
+    @BeforeEach
+    void setUp() {
+        Role customerRole = entityManager.persist(new Role("ROLE_CUSTOMER"));
+        Role adminRole = entityManager.persist(new Role("ROLE_ADMIN"));
+        anna = entityManager.persist(new Customer("Anna", "Schmidt", "secret", "anna@example.com", customerRole));
+        Customer boss = entityManager.persist(new Customer("Admin", "Admin", "secret", "admin@example.com", adminRole));
+        car = entityManager.persist(new Car("BMW", "X5", 2021, CarType.SUV, CarFuelType.DIESEL,
+                CarTransmissionType.AUTOMATIC, new BigDecimal("150.00")));
+        entityManager.flush();
+        owner = new AuthInfo(anna.getId(), anna.getEmail(), new Role(customerRole.getTitle()));
+        admin = new AuthInfo(boss.getId(), boss.getEmail(), new Role(adminRole.getTitle()));
+        when(carService.checkIfCarAvailableByDates(anyLong(), any(), any(), anyString())).thenReturn(true);
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void adminMutationsReadOnlyTheBooking() {
+        //чтение бронирования с авто и клиентом + update бронирования и авто
+        Long pending = booking(LocalDateTime.now().minusHours(2), LocalDateTime.now().plusDays(2), BookingStatus.PENDING);
+        assertStatementBudget("PUT /bookings/activate/{id}", 3, () -> bookingService.activateBooking(pending, admin));
+
+        Long active = booking(LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1), BookingStatus.ACTIVE);
+        assertStatementBudget("PUT /bookings/close/{id}", 3, () -> bookingService.closeBooking(active, admin));
+    }
+
+    @Test
+    void ownerMutationsCheckOwnershipWithoutCustomerLookup() {
+        Long cancelled = booking(LocalDateTime.now().plusDays(3), LocalDateTime.now().plusDays(5), BookingStatus.PENDING);
+        assertStatementBudget("PUT /bookings/cancel/{id}", 3, () -> bookingService.cancelBooking(cancelled, owner));
+
+        //id авто до транзакции + блокировка авто + чтение бронирования + проверка пересечений + update бронирования
+        Long extended = booking(LocalDateTime.now().plusDays(6), LocalDateTime.now().plusDays(8), BookingStatus.PENDING);
+        assertStatementBudget("PUT /bookings/extend/{id}", 5,
+                () -> bookingService.extendBooking(extended, owner, LocalDateTime.now().plusDays(9)));
+    }
+
+    private Long booking(LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setCustomer(anna);
+        booking.setCar(car);
+        booking.setRentalStartDate(start);
+        booking.setRentalEndDate(end);
+        booking.setBookingStatus(status);
+        booking.setTotalPrice(new BigDecimal("300.00"));
+        Long id = entityManager.persistAndFlush(booking).getId();
+        entityManager.clear();
+        return id;
+    }
+
+    private void assertStatementBudget(String endpoint, long budget, Runnable mutation) {
+        statistics.clear();
+        mutation.run();
+        entityManager.flush();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= budget,
+                endpoint + " executed " + statements + " SQL statements, budget is " + budget);
+        assertEquals(0, statistics.getEntityStatistics(Customer.class.getName()).getFetchCount(),
+                endpoint + " loaded the customer separately");
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BatchItemResultDto;
+import de.aittr.car_rent.domain.dto.BatchResultDto;
+import de.aittr.car_rent.domain.dto.BookingBatchRequestDto;
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.repository.CustomerRepository;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.service.interfaces.CarService;
+import de.aittr.car_rent.service.mapping.BookingMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class BookingServiceBatchTest {
+
+    private static final String ADMIN_EMAIL = "admin@example.com";
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final CarRepository carRepository = mock(CarRepository.class);
+    private final CustomerRepository customerRepository = mock(CustomerRepository.class);
+    private final BookingAvailabilityIndex bookingAvailabilityIndex = mock(BookingAvailabilityIndex.class);
+    private final FleetSnapshotService fleetSnapshotService = mock(FleetSnapshotService.class);
+
+    private final BookingServiceImpl bookingService = new BookingServiceImpl(
+            bookingRepository,
+            carRepository,
+            customerRepository,
+            mock(BookingMapper.class),
+            mock(CarService.class),
+            bookingAvailabilityIndex,
+            fleetSnapshotService,
+            new CarLockStripes(16, 5000),
+            mock(ReservationHoldService.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    //блокировки авто держатся до конца транзакции, поэтому тест работает с синхронизацией транзакции
+    @BeforeEach
+    void setUp() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void closesBookingsInOneFetchAndReportsEveryId() {
+        AuthInfo admin = new AuthInfo(1L, ADMIN_EMAIL, new Role("ROLE_ADMIN"));
+        Booking active = booking(3L, 30L, BookingStatus.ACTIVE);
+        Booking cancelled = booking(5L, 50L, BookingStatus.CANCELLED_BY_USER);
+        when(bookingRepository.findCarIdsByIdIn(List.of(3L, 4L, 5L))).thenReturn(List.of(50L, 30L));
+        when(bookingRepository.findAllWithCarByIdIn(List.of(3L, 4L, 5L))).thenReturn(List.of(active, cancelled));
+
+        BatchResultDto result = bookingService.applyBatchOperation(
+                new BookingBatchRequestDto("close", List.of(5L, 3L, 4L, 3L)), admin);
+
+        assertEquals(1, result.succeeded());
+        assertEquals(2, result.failed());
+        assertEquals(List.of(3L, 4L, 5L), result.results().stream().map(BatchItemResultDto::id).toList());
+        assertEquals("CLOSED_BY_ADMIN", result.results().get(0).status());
+        assertEquals("Booking with id 4 not found", result.results().get(1).error());
+        assertEquals("Cannot close a cancelled booking", result.results().get(2).error());
+        assertEquals(CarStatus.UNDER_INSPECTION, active.getCar().getCarStatus());
+        assertEquals(CarStatus.AVAILABLE, cancelled.getCar().getCarStatus());
+        verifyNoInteractions(customerRepository);
+        verify(bookingRepository).saveAll(List.of(active));
+        verify(carRepository).saveAll(List.of(active.getCar()));
+        verify(bookingAvailabilityIndex).removeAfterCommit(anyCollection());
+        verify(fleetSnapshotService).refreshAfterCommit();
+        verify(bookingRepository, never()).findById(any());
+        //строки авто блокируются до загрузки бронирований
+        InOrder order = inOrder(carRepository, bookingRepository);
+        order.verify(carRepository).findAllByIdForUpdate(List.of(50L, 30L));
+        order.verify(bookingRepository).findAllWithCarByIdIn(List.of(3L, 4L, 5L));
+    }
+
+    private static Booking booking(Long id, Long carId, BookingStatus status) {
+        Car car = new Car("BMW", "X5", 2020, CarType.SUV, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(car, "id", carId);
+        Booking booking = new Booking();
+        ReflectionTestUtils.setField(booking, "id", id);
+        booking.setCar(car);
+        booking.setBookingStatus(status);
+        booking.setRentalStartDate(LocalDateTime.now().minusDays(2));
+        booking.setRentalEndDate(LocalDateTime.now().plusDays(1));
+        return booking;
+    }
+}
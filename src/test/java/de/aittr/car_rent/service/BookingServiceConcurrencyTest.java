@@ -0,0 +1,268 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.BookingRequestDto;
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.repository.CustomerRepository;
+import de.aittr.car_rent.security.AuthInfo;
+import de.aittr.car_rent.service.interfaces.CarService;
+import de.aittr.car_rent.service.mapping.BookingMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Параллельные бронирования пересекающихся периодов: проверка занятости и сохранение бронирования
+ * должны выполняться атомарно для каждого авто.
+ * Неблокирующие чтения бронирований видят снимок, зафиксированный первым таким чтением в транзакции,
+ * как в InnoDB при REPEATABLE READ
+ */
+class BookingServiceConcurrencyTest {
+
+    private static final int CARS = 4;
+    private static final int REQUESTS = 2000;
+    private static final int THREADS = 32;
+    private static final LocalDateTime DAY = LocalDateTime.now().plusDays(10).withHour(0).withMinute(0)
+            .withSecond(0).withNano(0);
+    private static final AuthInfo CUSTOMER = new AuthInfo(7L, "anna@example.com", new Role("ROLE_CUSTOMER"));
+    private static final AuthInfo ADMIN = new AuthInfo(1L, "admin@example.com", new Role("ROLE_ADMIN"));
+
+    private final List<Booking> savedBookings = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Long, Car> carsForBookings = new HashMap<>();
+    private final ThreadLocal<List<Interval>> snapshot = new ThreadLocal<>();
+    //вызывается при чтении бронирования по id, после фиксации снимка
+    private Runnable onDetailedRead = () -> {
+    };
+
+    @Test
+    void parallelOverlappingRequestsNeverDoubleBookCar() throws Exception {
+        BookingServiceImpl bookingService = bookingService();
+        TransactionTemplate transaction = new TransactionTemplate(new NoOpTransactionManager());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger rejected = new AtomicInteger();
+        Random random = new Random(42);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                long carId = 1 + random.nextInt(CARS);
+                LocalDateTime start = DAY.plusDays(random.nextInt(30));
+                LocalDateTime end = start.plusDays(1 + random.nextInt(3));
+                BookingRequestDto request = new BookingRequestDto(start, end, carId);
+                futures.add(executor.submit(() -> {
+                    try {
+                        transaction.executeWithoutResult(status ->
+                                bookingService.createBooking(request, CUSTOMER));
+                    } catch (RestApiException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(REQUESTS, savedBookings.size() + rejected.get());
+        assertTrue(rejected.get() > 0);
+        for (Booking booking : savedBookings) {
+            for (Booking other : savedBookings) {
+                if (booking != other && booking.getCar().getId().equals(other.getCar().getId())) {
+                    assertFalse(overlaps(booking, other), "Car " + booking.getCar().getId() + " is double-booked");
+                }
+            }
+        }
+    }
+
+    @Test
+    void extendSeesBookingCommittedWhileWaitingForCarLock() throws Exception {
+        BookingServiceImpl bookingService = bookingService();
+        Booking existing = existingBooking(100L, 1L, DAY, DAY.plusDays(1));
+        TransactionTemplate transaction = new TransactionTemplate(new NoOpTransactionManager());
+        CountDownLatch extendReadBooking = new CountDownLatch(1);
+        CountDownLatch createFinished = new CountDownLatch(1);
+        //продление ждёт параллельное бронирование после чтения бронирования; если чтение выполнено до блокировки авто,
+        //бронирование сохраняется в это время и не попадает в снимок продления
+        onDetailedRead = () -> {
+            extendReadBooking.countDown();
+            try {
+                createFinished.await(300, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> extend = executor.submit(() -> bookingService.extendBooking(100L, ADMIN, DAY.plusDays(3)));
+            Future<?> create = executor.submit(() -> {
+                try {
+                    assertTrue(extendReadBooking.await(5, TimeUnit.SECONDS));
+                    transaction.executeWithoutResult(status -> bookingService.createBooking(
+                            new BookingRequestDto(DAY.plusDays(2), DAY.plusDays(3), 1L), CUSTOMER));
+                } finally {
+                    createFinished.countDown();
+                }
+                return null;
+            });
+            extend.get(10, TimeUnit.SECONDS);
+            ExecutionException rejected = assertThrows(ExecutionException.class, () -> create.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(RestApiException.class, rejected.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(DAY.plusDays(3), existing.getRentalEndDate());
+        assertEquals(List.of(existing), savedBookings);
+    }
+
+    private BookingServiceImpl bookingService() {
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        CarRepository carRepository = mock(CarRepository.class);
+        CustomerRepository customerRepository = mock(CustomerRepository.class);
+        CarService carService = mock(CarService.class);
+
+        Map<Long, Car> cars = new HashMap<>();
+        for (long id = 1; id <= CARS; id++) {
+            Car car = new Car("BMW", "X5", 2020, CarType.SUV, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                    new BigDecimal("100.00"));
+            ReflectionTestUtils.setField(car, "id", id);
+            cars.put(id, car);
+        }
+        when(carRepository.findByIdForUpdate(anyLong()))
+                .thenAnswer(invocation -> Optional.of(cars.get(invocation.<Long>getArgument(0))));
+        when(customerRepository.findById(CUSTOMER.getCustomerId()))
+                .thenReturn(Optional.of(new Customer("Anna", "Schmidt", "secret", "anna@example.com", null)));
+        when(carService.checkIfCarAvailableByDates(anyLong(), any(), any(), any())).thenReturn(true);
+        when(bookingRepository.existsOverlappingBooking(anyLong(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Long carId = invocation.getArgument(0);
+                    LocalDateTime from = invocation.getArgument(1);
+                    LocalDateTime to = invocation.getArgument(2);
+                    return consistentRead().stream().anyMatch(interval -> interval.carId().equals(carId)
+                            && interval.start().isBefore(to)
+                            && interval.end().isAfter(from));
+                });
+        when(bookingRepository.findCarIdById(anyLong()))
+                .thenAnswer(invocation -> findSaved(invocation.getArgument(0)).map(booking -> booking.getCar().getId()));
+        when(bookingRepository.findDetailedById(anyLong())).thenAnswer(invocation -> {
+            consistentRead();
+            onDetailedRead.run();
+            return findSaved(invocation.getArgument(0));
+        });
+        for (Car car : cars.values()) {
+            carsForBookings.put(car.getId(), car);
+        }
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> {
+            //расширяем окно между проверкой и сохранением, чтобы гонка проявилась без блокировки
+            Thread.yield();
+            Booking booking = invocation.getArgument(0);
+            synchronized (savedBookings) {
+                if (savedBookings.stream().noneMatch(saved -> saved == booking)) {
+                    savedBookings.add(booking);
+                }
+            }
+            return booking;
+        });
+
+        return new BookingServiceImpl(
+                bookingRepository,
+                carRepository,
+                customerRepository,
+                mock(BookingMapper.class),
+                carService,
+                mock(BookingAvailabilityIndex.class),
+                mock(FleetSnapshotService.class),
+                new CarLockStripes(16, 5000),
+                mock(ReservationHoldService.class),
+                new TransactionTemplate(new NoOpTransactionManager()));
+    }
+
+    private Booking existingBooking(Long id, Long carId, LocalDateTime from, LocalDateTime to) {
+        Booking booking = new Booking();
+        ReflectionTestUtils.setField(booking, "id", id);
+        booking.setCar(carsForBookings.get(carId));
+        booking.setRentalStartDate(from);
+        booking.setRentalEndDate(to);
+        booking.setBookingStatus(BookingStatus.PENDING);
+        booking.setTotalPrice(new BigDecimal("100.00"));
+        savedBookings.add(booking);
+        return booking;
+    }
+
+    private Optional<Booking> findSaved(Long id) {
+        synchronized (savedBookings) {
+            return savedBookings.stream().filter(booking -> id.equals(booking.getId())).findFirst();
+        }
+    }
+
+    //первое неблокирующее чтение в транзакции фиксирует снимок бронирований до её завершения
+    private List<Interval> consistentRead() {
+        List<Interval> intervals = snapshot.get();
+        if (intervals != null) {
+            return intervals;
+        }
+        synchronized (savedBookings) {
+            intervals = savedBookings.stream()
+                    .map(booking -> new Interval(booking.getCar().getId(), booking.getRentalStartDate(),
+                            booking.getRentalEndDate()))
+                    .toList();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            snapshot.set(intervals);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    snapshot.remove();
+                }
+            });
+        }
+        return intervals;
+    }
+
+    private record Interval(Long carId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    private static boolean overlaps(Booking first, Booking second) {
+        return first.getRentalStartDate().isBefore(second.getRentalEndDate())
+                && first.getRentalEndDate().isAfter(second.getRentalStartDate());
+    }
+
+    //менеджер транзакций без ресурсов: нужен только для синхронизаций (снятия блокировки после завершения)
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
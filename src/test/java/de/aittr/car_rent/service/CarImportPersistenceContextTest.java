@@ -0,0 +1,76 @@
+package de.aittr.car_rent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.aittr.car_rent.domain.dto.CarImportResultDto;
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Импорт внутри одного контекста персистентности на весь запрос (как при open-in-view):
+ * сохранённые порции не остаются в контексте
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class CarImportPersistenceContextTest {
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void clearsPersistenceContextAfterEachChunk() {
+        List<Integer> managedBeforeChunk = new ArrayList<>();
+        CarRepository repository = mock(CarRepository.class, delegatesTo(carRepository));
+        doAnswer(invocation -> {
+            managedBeforeChunk.add(managedEntities());
+            return carRepository.saveAll(invocation.<List<Car>>getArgument(0));
+        }).when(repository).saveAll(anyList());
+        CarImportService importService = new CarImportService(repository, new CarMappingServiceImpl(),
+                mock(FleetSnapshotService.class), entityManager,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), transactionManager, 2, 100);
+        String csv = """
+                brand,model,year,type,fuel_type,transmission_type,day_rental_price
+                BMW,X5,2021,SUV,DIESEL,AUTOMATIC,150.00
+                Audi,A4,2020,SEDAN,PETROL,MANUAL,120.00
+                Toyota,Corolla,2019,SEDAN,HYBRID,AUTOMATIC,100.00
+                Ford,Focus,2018,HATCHBACK,PETROL,MANUAL,90.00
+                Honda,Civic,2019,SEDAN,PETROL,MANUAL,85.00
+                """;
+
+        CarImportResultDto result = importService.importCars(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), CarImportService.ImportFormat.CSV, 1);
+
+        assertEquals(5, result.imported());
+        assertEquals(List.of(0, 0, 0), managedBeforeChunk);
+        assertEquals(0, managedEntities());
+        assertEquals(5, carRepository.count());
+    }
+
+    private int managedEntities() {
+        return entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+    }
+}
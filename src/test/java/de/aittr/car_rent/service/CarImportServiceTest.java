@@ -0,0 +1,115 @@
+package de.aittr.car_rent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.aittr.car_rent.domain.dto.CarImportErrorDto;
+import de.aittr.car_rent.domain.dto.CarImportResultDto;
+import de.aittr.car_rent.domain.entity.Car;
+import de.aittr.car_rent.domain.entity.CarStatus;
+import de.aittr.car_rent.domain.entity.CarType;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class CarImportServiceTest {
+
+    private static final String CSV = """
+            brand,model,year,type,fuel_type,transmission_type,day_rental_price
+            BMW,X5,2021,SUV,DIESEL,AUTOMATIC,150.00
+            Audi,A4,2020,Flying,PETROL,MANUAL,120.00
+            "Mercedes-Benz","C Class",2020,SEDAN,PETROL,AUTOMATIC,140
+            Toyota,Corolla,2019,SEDAN,HYBRID,AUTOMATIC,-5
+
+            Ford,Focus,2018,HATCHBACK,PETROL,MANUAL,90.00
+            """;
+
+    private final CarRepository carRepository = mock(CarRepository.class);
+    private final FleetSnapshotService fleetSnapshotService = mock(FleetSnapshotService.class);
+    private final List<List<Car>> savedChunks = new ArrayList<>();
+
+    private final CarImportService importService = new CarImportService(
+            carRepository,
+            new CarMappingServiceImpl(),
+            fleetSnapshotService,
+            mock(EntityManager.class),
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new ObjectMapper(),
+            mock(PlatformTransactionManager.class),
+            2,
+            100);
+
+    CarImportServiceTest() {
+        when(carRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Car> chunk = List.copyOf(invocation.<List<Car>>getArgument(0));
+            savedChunks.add(chunk);
+            return chunk;
+        });
+    }
+
+    @Test
+    void importsValidCsvRowsInChunksAndReportsInvalidLines() {
+        CarImportResultDto result = importService.importCars(stream(CSV), CarImportService.ImportFormat.CSV, 1);
+
+        assertTrue(result.completed());
+        assertEquals(5, result.processedLines());
+        assertEquals(3, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(7, result.lastCommittedLine());
+        assertEquals(List.of(3L, 5L), result.errors().stream().map(CarImportErrorDto::line).toList());
+        assertEquals(List.of(2, 1), savedChunks.stream().map(List::size).toList());
+        Car mercedes = savedChunks.get(0).get(1);
+        assertEquals("C Class", mercedes.getModel());
+        assertEquals(CarType.SEDAN, mercedes.getType());
+        assertEquals(CarStatus.AVAILABLE, mercedes.getCarStatus());
+        verify(fleetSnapshotService).requestRefresh();
+    }
+
+    @Test
+    void resumesFromStartLine() {
+        CarImportResultDto result = importService.importCars(stream(CSV), CarImportService.ImportFormat.CSV, 6);
+
+        assertEquals(1, result.processedLines());
+        assertEquals(1, result.imported());
+        assertEquals("Focus", savedChunks.get(0).get(0).getModel());
+    }
+
+    @Test
+    void stopsWhenChunkCannotBeSaved() {
+        when(carRepository.saveAll(anyList())).thenThrow(new IllegalStateException("Connection lost"));
+
+        CarImportResultDto result = importService.importCars(stream(CSV), CarImportService.ImportFormat.CSV, 1);
+
+        assertFalse(result.completed());
+        assertEquals(0, result.imported());
+        assertEquals(1, result.lastCommittedLine());
+        verify(fleetSnapshotService, never()).requestRefresh();
+    }
+
+    @Test
+    void importsNdjson() {
+        String ndjson = """
+                {"brand":"Tesla","model":"Model S","year":2022,"type":"sedan","fuelType":"ELECTRIC","transmissionType":"AUTOMATIC","dayRentalPrice":180}
+                {"brand":"Tesla","model":"Model 3","year":2022}
+                """;
+
+        CarImportResultDto result = importService.importCars(stream(ndjson), CarImportService.ImportFormat.NDJSON, 1);
+
+        assertEquals(1, result.imported());
+        assertEquals(List.of(new CarImportErrorDto(2, "Car type must not be not blank")), result.errors());
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
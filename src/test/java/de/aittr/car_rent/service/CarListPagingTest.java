@@ -0,0 +1,98 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.dto.PageResponseDto;
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Постраничная выдача фильтров авто, которые читаются из БД: страница - один запрос size + 1 строк,
+ * COUNT - только по запросу общего количества
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({CarServiceImpl.class, CarMappingServiceImpl.class})
+class CarListPagingTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.now().plusDays(10).withNano(0);
+
+    @MockitoBean
+    private CarImageService carImageService;
+    @MockitoBean
+    private BookingAvailabilityIndex bookingAvailabilityIndex;
+    @MockitoBean
+    private FleetSnapshotService fleetSnapshotService;
+    @MockitoBean
+    private ReservationHoldService reservationHoldService;
+    @MockitoBean
+    private CarLockStripes carLockStripes;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CarServiceImpl carService;
+
+    private Statistics statistics;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        ids = List.of("90", "60", "150", "60", "120").stream()
+                .map(price -> entityManager.persist(new Car("BMW", "X5", 2021, CarType.SUV, CarFuelType.DIESEL,
+                        CarTransmissionType.AUTOMATIC, new BigDecimal(price))).getId())
+                .toList();
+        entityManager.flush();
+        entityManager.clear();
+        when(reservationHoldService.findHeldCarIds(any(), any())).thenReturn(Set.of());
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void readsPageOfAvailableCarsWithOneQuery() {
+        PageResponseDto<CarResponseDto> page = carService.getAllAvailableCarsByDates(
+                FROM, FROM.plusDays(2), PageRequest.of(1, 2, Sort.by("dayRentalPrice")), false);
+
+        //цены 60, 60, 90, 120, 150 - вторая страница: 90 и 120
+        assertEquals(List.of(ids.get(0), ids.get(4)), page.content().stream().map(CarResponseDto::id).toList());
+        assertTrue(page.hasNext());
+        assertNull(page.totalElements());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void countsTotalOnlyWhenRequested() {
+        PageResponseDto<CarResponseDto> page = carService.filterAvailableCars(FROM, FROM.plusDays(2),
+                List.of("BMW"), null, null, null, new BigDecimal("70"), null,
+                PageRequest.of(0, 2, Sort.by("dayRentalPrice")), true);
+
+        assertEquals(List.of(ids.get(0), ids.get(4)), page.content().stream().map(CarResponseDto::id).toList());
+        assertEquals(3, page.totalElements());
+        assertEquals(2, page.totalPages());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
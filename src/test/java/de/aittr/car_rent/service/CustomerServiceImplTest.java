@@ -0,0 +1,57 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.CustomerUpdateRequestDto;
+import de.aittr.car_rent.domain.entity.Customer;
+import de.aittr.car_rent.domain.entity.Role;
+import de.aittr.car_rent.repository.BookingRepository;
+import de.aittr.car_rent.repository.CustomerRepository;
+import de.aittr.car_rent.security.service.RefreshTokenStore;
+import de.aittr.car_rent.security.service.TokenRevocationService;
+import de.aittr.car_rent.service.mapping.BookingMapper;
+import de.aittr.car_rent.service.mapping.CustomerMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CustomerServiceImplTest {
+
+    private final CustomerRepository customerRepository = mock(CustomerRepository.class);
+    private final TokenRevocationService tokenRevocationService = mock(TokenRevocationService.class);
+    private final RefreshTokenStore refreshTokenStore = mock(RefreshTokenStore.class);
+    private final CustomerServiceImpl customerService = new CustomerServiceImpl(customerRepository,
+            mock(BookingRepository.class), mock(CustomerMapper.class), mock(BookingMapper.class),
+            tokenRevocationService, refreshTokenStore);
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer("Anna", "Schmidt", "secret", "anna@example.com", new Role("ROLE_CUSTOMER"));
+        ReflectionTestUtils.setField(customer, "id", 42L);
+        customer.setActive(true);
+        when(customerRepository.findById(42L)).thenReturn(Optional.of(customer));
+        when(customerRepository.save(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void deactivationRevokesAccessAndRefreshTokens() {
+        customerService.deleteById(42L);
+
+        assertFalse(customer.isActive());
+        verify(tokenRevocationService).revokeAll("anna@example.com");
+        verify(refreshTokenStore).revokeAll("anna@example.com");
+    }
+
+    @Test
+    void emailChangeRevokesTokensOfPreviousEmail() {
+        customerService.update(new CustomerUpdateRequestDto("Anna", "Schmidt", "anna.schmidt@example.com"), 42L);
+
+        verify(tokenRevocationService).revokeAll("anna@example.com");
+        verify(refreshTokenStore).revokeAll("anna@example.com");
+    }
+}
@@ -0,0 +1,115 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.repository.CarRepository;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FleetSnapshotServiceTest {
+
+    private final CarRepository carRepository = mock(CarRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final FleetSnapshotService service = new FleetSnapshotService(carRepository, new CarMappingServiceImpl(),
+            entityManager, mock(PlatformTransactionManager.class), 2);
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void loadsFleetInPagesAndClearsPersistenceContext() {
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(List.of(car(1L), car(2L)));
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(2))).thenReturn(List.of(car(5L)));
+
+        FleetSnapshot snapshot = service.current();
+
+        assertEquals(3, snapshot.adminCars().size());
+        assertTrue(snapshot.findById(5L).isPresent());
+        verify(entityManager, times(2)).clear();
+        verify(carRepository, never()).findAll();
+    }
+
+    @Test
+    void coalescesRefreshesRequestedDuringRebuild() throws Exception {
+        CountDownLatch rebuildStarted = new CountDownLatch(1);
+        CountDownLatch releaseRebuild = new CountDownLatch(1);
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenAnswer(invocation -> {
+            rebuildStarted.countDown();
+            releaseRebuild.await(5, TimeUnit.SECONDS);
+            return List.of(car(1L));
+        });
+
+        //первое обновление занимает поток, следующие запросы ждут его окончания и объединяются в одно
+        service.requestRefresh();
+        assertTrue(rebuildStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            service.requestRefresh();
+        }
+        releaseRebuild.countDown();
+
+        verify(carRepository, timeout(5000).times(2)).findByIdGreaterThanOrderByIdAsc(eq(0L), any());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.version() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, service.version());
+        verify(carRepository, times(2)).findByIdGreaterThanOrderByIdAsc(eq(0L), any());
+    }
+
+    @Test
+    void resyncPicksUpChangesCommittedByOtherInstances() throws Exception {
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(car(1L)));
+        assertEquals(1, service.version());
+
+        //автопарк в БД не изменился: версия и снимок остаются прежними
+        service.scheduledResync();
+        verify(carRepository, timeout(5000).times(2)).findByIdGreaterThanOrderByIdAsc(eq(0L), any());
+        //пересоздание выполняется после сверки в том же потоке: сверка не увеличила версию
+        service.refresh();
+        assertEquals(2, service.version());
+
+        //статус авто изменён другим экземпляром приложения
+        Car rented = car(1L);
+        rented.setCarStatus(CarStatus.RENTED);
+        when(carRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(rented));
+        service.scheduledResync();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.version() == 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, service.version());
+        assertEquals(CarStatus.RENTED.name(), service.current().findById(1L).orElseThrow().carStatus());
+    }
+
+    @Test
+    void resyncSkipsSnapshotThatWasNotLoaded() {
+        service.scheduledResync();
+        service.stop();
+
+        verifyNoInteractions(carRepository);
+    }
+
+    private static Car car(Long id) {
+        Car car = new Car("BMW", "X5", 2020, CarType.SUV, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                new BigDecimal("120.00"));
+        car.setCarStatus(CarStatus.AVAILABLE);
+        ReflectionTestUtils.setField(car, "id", id);
+        return car;
+    }
+}
@@ -0,0 +1,67 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.dto.CarResponseDto;
+import de.aittr.car_rent.domain.entity.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetSnapshotTest {
+
+    private final FleetSnapshot snapshot = FleetSnapshot.of(3, List.of(
+            car(1L, "BMW", CarType.SEDAN, "120", CarStatus.AVAILABLE, true),
+            car(2L, "Audi", CarType.SUV, "80", CarStatus.RENTED, true),
+            car(3L, "bmw", CarType.SUV, "80", CarStatus.AVAILABLE, true),
+            car(4L, "BMW", CarType.SEDAN, "60", CarStatus.DELETED, false),
+            car(5L, "Opel", CarType.SEDAN, "200", CarStatus.UNDER_REPAIR, true)
+    ), FleetSnapshotTest::toDto);
+
+    @Test
+    void filtersActiveCarsInPriceOrder() {
+        assertEquals(List.of(3L, 1L), ids(snapshot.activeByBrand(" Bmw ")));
+        assertEquals(List.of(2L, 3L), ids(snapshot.activeByType(CarType.SUV)));
+        assertEquals(List.of(), ids(snapshot.activeByBrand("VW")));
+        assertEquals(List.of(5L), ids(snapshot.activeByCarStatus(CarStatus.UNDER_REPAIR)));
+    }
+
+    @Test
+    void filtersByPriceRangeInclusive() {
+        assertEquals(List.of(2L, 3L, 1L),
+                ids(snapshot.activeByDayRentalPrice(new BigDecimal("60"), new BigDecimal("120.00"))));
+        assertEquals(List.of(1L, 5L), ids(snapshot.activeByDayRentalPrice(new BigDecimal("100"), null)));
+        assertEquals(List.of(), ids(snapshot.activeByDayRentalPrice(new BigDecimal("300"), null)));
+    }
+
+    @Test
+    void keepsPublicAndAdminListsAndVersion() {
+        assertEquals(3, snapshot.version());
+        assertEquals(List.of(1L, 2L, 3L), ids(snapshot.publicCars()));
+        assertEquals(5, snapshot.adminCars().size());
+        assertEquals(4L, snapshot.adminCars().get(0).id());
+        assertTrue(snapshot.findById(4L).isPresent());
+        assertTrue(snapshot.findById(9L).isEmpty());
+    }
+
+    private static List<Long> ids(List<CarResponseDto> cars) {
+        return cars.stream().map(CarResponseDto::id).toList();
+    }
+
+    private static Car car(Long id, String brand, CarType type, String price, CarStatus status, boolean active) {
+        Car car = new Car(brand, "Model", 2020, type, CarFuelType.PETROL, CarTransmissionType.AUTOMATIC,
+                new BigDecimal(price));
+        car.setCarStatus(status);
+        car.setActive(active);
+        ReflectionTestUtils.setField(car, "id", id);
+        return car;
+    }
+
+    private static CarResponseDto toDto(Car car) {
+        return new CarResponseDto(car.getId(), car.getBrand(), car.getModel(), car.getYear(),
+                car.getType().name(), car.getFuelType().name(), car.getTransmissionType().name(),
+                car.isActive(), car.getCarStatus().name(), car.getDayRentalPrice(), car.getCarImage());
+    }
+}
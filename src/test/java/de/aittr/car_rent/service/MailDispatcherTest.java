@@ -0,0 +1,104 @@
+package de.aittr.car_rent.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Отправка писем на SMTP-сервер GreenMail, запущенный в тесте
+ */
+class MailDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<MailDispatcher.DeadLetter> deadLetters = new CopyOnWriteArrayList<>();
+    private final MailDispatcher.DeliveryListener listener = new MailDispatcher.DeliveryListener() {
+        @Override
+        public void deadLettered(MailDispatcher.DeadLetter deadLetter) {
+            deadLetters.add(deadLetter);
+        }
+    };
+    private MailDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void sendsQueuedMessagesOverOneSmtpConnection() throws Exception {
+        dispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 3);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(dispatcher.offer(new MailDispatcher.OutgoingMail(
+                    "customer" + i + "@example.com", "Registration Confirmation", "<p>Hello " + i + "</p>"), listener));
+        }
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 5));
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(5, messages.length);
+        assertEquals("Registration Confirmation", messages[0].getSubject());
+        assertEquals("noreply@car-rent.de", messages[0].getFrom()[0].toString());
+        //сервер получает письмо раньше, чем рабочий поток записывает время отправки
+        await(() -> meterRegistry.get("mail.send").timer().count() == 5);
+        assertEquals(5, meterRegistry.get("mail.send").timer().count());
+        assertEquals(1.0, meterRegistry.get("mail.smtp.connections").counter().count());
+        assertTrue(deadLetters.isEmpty());
+    }
+
+    @Test
+    void deadLettersMessageAfterMaxAttempts() throws Exception {
+        //на этом порту SMTP-сервера нет, каждая попытка завершается ошибкой соединения
+        dispatcher = dispatcher(ServerSetupTest.SMTP.getPort() + 1, 3);
+
+        assertTrue(dispatcher.offer(
+                new MailDispatcher.OutgoingMail("anna@example.com", "Registration Confirmation", "<p>Hi</p>"), listener));
+
+        await(() -> !deadLetters.isEmpty());
+        assertEquals(1, deadLetters.size());
+        assertEquals("anna@example.com", deadLetters.get(0).mail().to());
+        assertEquals(3, deadLetters.get(0).attempts());
+        assertEquals(2.0, meterRegistry.get("mail.send.failures").tag("outcome", "retry").counter().count());
+        assertEquals(1.0, meterRegistry.get("mail.send.failures").tag("outcome", "dead-letter").counter().count());
+    }
+
+    @Test
+    void backoffGrowsExponentiallyUpToMaximum() {
+        dispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 10);
+
+        assertEquals(10, dispatcher.backoffMillis(1));
+        assertEquals(20, dispatcher.backoffMillis(2));
+        assertEquals(80, dispatcher.backoffMillis(4));
+        assertEquals(100, dispatcher.backoffMillis(9));
+    }
+
+    private MailDispatcher dispatcher(int port, int maxAttempts) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        MailDispatcher mailDispatcher = new MailDispatcher(mailSender, "noreply@car-rent.de",
+                10, 1, maxAttempts, 10, 100, 30000, meterRegistry);
+        mailDispatcher.start();
+        return mailDispatcher;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.MailOutbox;
+import de.aittr.car_rent.domain.entity.MailOutboxStatus;
+import de.aittr.car_rent.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Передача писем из mail_outbox в очередь отправки. Тест работает без общей транзакции,
+ * чтобы выборка с блокировкой строк шла в отдельных транзакциях, как в приложении.
+ * Опрос по расписанию отложен, письма передаются только вызовами из теста
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = "mail.outbox.poll-delay-millis=3600000")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({MailOutboxRelay.class, MailOutboxRelayTest.MetricsConfig.class})
+class MailOutboxRelayTest {
+
+    @MockitoBean
+    private MailDispatcher mailDispatcher;
+
+    @Autowired
+    private MailOutboxRelay relay;
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        when(mailDispatcher.remainingCapacity()).thenReturn(100);
+        when(mailDispatcher.offer(any(), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void relaysDueMailsOnceAndLeasesThem() {
+        LocalDateTime now = LocalDateTime.now();
+        MailOutbox due = mailOutboxRepository.save(new MailOutbox("anna@example.com", "Welcome", "<p>1</p>", now));
+        MailOutbox later = new MailOutbox("ben@example.com", "Welcome", "<p>2</p>", now);
+        later.setNextAttemptAt(now.plusHours(1));
+        mailOutboxRepository.save(later);
+
+        assertEquals(1, relay.relay());
+        assertEquals(0, relay.relay());
+
+        ArgumentCaptor<MailDispatcher.OutgoingMail> mail = ArgumentCaptor.forClass(MailDispatcher.OutgoingMail.class);
+        verify(mailDispatcher).offer(mail.capture(), any());
+        assertEquals(new MailDispatcher.OutgoingMail("anna@example.com", "Welcome", "<p>1</p>"), mail.getValue());
+        assertTrue(mailOutboxRepository.findById(due.getId()).orElseThrow().getNextAttemptAt().isAfter(now.plusMinutes(5)));
+    }
+
+    @Test
+    void deletesDeliveredMailAndKeepsDeadLetter() {
+        LocalDateTime now = LocalDateTime.now();
+        MailOutbox delivered = mailOutboxRepository.save(new MailOutbox("anna@example.com", "Welcome", "<p>1</p>", now));
+        MailOutbox failed = mailOutboxRepository.save(new MailOutbox("ben@example", "Welcome", "<p>2</p>", now));
+
+        relay.relay();
+
+        ArgumentCaptor<MailDispatcher.OutgoingMail> mail = ArgumentCaptor.forClass(MailDispatcher.OutgoingMail.class);
+        ArgumentCaptor<MailDispatcher.DeliveryListener> listener =
+                ArgumentCaptor.forClass(MailDispatcher.DeliveryListener.class);
+        verify(mailDispatcher, times(2)).offer(mail.capture(), listener.capture());
+        listener.getAllValues().get(0).delivered(mail.getAllValues().get(0));
+        listener.getAllValues().get(1).deadLettered(new MailDispatcher.DeadLetter(
+                mail.getAllValues().get(1), 5, "Invalid Addresses", Instant.now()));
+
+        assertTrue(mailOutboxRepository.findById(delivered.getId()).isEmpty());
+        MailOutbox deadLetter = mailOutboxRepository.findById(failed.getId()).orElseThrow();
+        assertEquals(MailOutboxStatus.FAILED, deadLetter.getStatus());
+        assertEquals("Invalid Addresses", deadLetter.getLastError());
+    }
+
+    @Test
+    void claimsNoMoreThanQueueAcceptsAndReleasesRejected() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 3; i++) {
+            mailOutboxRepository.save(new MailOutbox("customer" + i + "@example.com", "Welcome", "<p>" + i + "</p>", now));
+        }
+        when(mailDispatcher.remainingCapacity()).thenReturn(2);
+        when(mailDispatcher.offer(any(), any())).thenReturn(true, false);
+
+        assertEquals(1, relay.relay());
+
+        verify(mailDispatcher, times(2)).offer(any(), any());
+        //отклонённое очередью и ещё не выбранное письма ждут следующего опроса
+        assertEquals(2, dueIds().size());
+    }
+
+    @Test
+    void skipsRowsLockedByAnotherRelayWithoutWaiting() throws Exception {
+        MailOutbox locked = mailOutboxRepository.save(
+                new MailOutbox("anna@example.com", "Welcome", "<p>1</p>", LocalDateTime.now()));
+        CountDownLatch lockTaken = new CountDownLatch(1);
+        CountDownLatch relayDone = new CountDownLatch(1);
+        TransactionTemplate otherRelay = new TransactionTemplate(transactionManager);
+
+        //другой экземпляр держит блокировку первой строки до конца проверки
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> otherRelay.executeWithoutResult(status -> {
+            mailOutboxRepository.findDueForUpdateSkipLocked(MailOutboxStatus.PENDING, LocalDateTime.now(),
+                    PageRequest.of(0, 10));
+            lockTaken.countDown();
+            try {
+                relayDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(lockTaken.await(5, TimeUnit.SECONDS));
+        mailOutboxRepository.save(new MailOutbox("ben@example.com", "Welcome", "<p>2</p>", LocalDateTime.now()));
+
+        try {
+            assertEquals(1, relay.relay());
+        } finally {
+            relayDone.countDown();
+            other.get(5, TimeUnit.SECONDS);
+        }
+
+        ArgumentCaptor<MailDispatcher.OutgoingMail> mail = ArgumentCaptor.forClass(MailDispatcher.OutgoingMail.class);
+        verify(mailDispatcher).offer(mail.capture(), any());
+        assertEquals("ben@example.com", mail.getValue().to());
+        assertEquals(List.of(locked.getId()), dueIds());
+    }
+
+    private List<Long> dueIds() {
+        LocalDateTime now = LocalDateTime.now();
+        return mailOutboxRepository.findAll().stream()
+                .filter(outbox -> outbox.getStatus() == MailOutboxStatus.PENDING && !outbox.getNextAttemptAt().isAfter(now))
+                .map(MailOutbox::getId)
+                .toList();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.domain.entity.*;
+import de.aittr.car_rent.security.service.RefreshTokenStore;
+import de.aittr.car_rent.security.service.TokenRevocationService;
+import de.aittr.car_rent.service.interfaces.CarService;
+import de.aittr.car_rent.service.mapping.BookingMapperImpl;
+import de.aittr.car_rent.service.mapping.CarMappingServiceImpl;
+import de.aittr.car_rent.service.mapping.CustomerMapperImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Бюджет SQL-запросов для путей чтения, отдающих DTO бронирований и клиентов.
+ * Каждый вызов выполняется с пустым контекстом персистентности, поэтому любая ленивая загрузка
+ * связи при маппинге (N+1) увеличивает число запросов и ломает тест
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({BookingServiceImpl.class, CustomerServiceImpl.class,
+        BookingMapperImpl.class, CustomerMapperImpl.class, CarMappingServiceImpl.class})
+class ReadPathQueryBudgetTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @MockitoBean
+    private CarService carService;
+    @MockitoBean
+    private BookingAvailabilityIndex bookingAvailabilityIndex;
+    @MockitoBean
+    private FleetSnapshotService fleetSnapshotService;
+    @MockitoBean
+    private CarLockStripes carLockStripes;
+    @MockitoBean
+    private ReservationHoldService reservationHoldService;
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+    @MockitoBean
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private BookingServiceImpl bookingService;
+    @Autowired
+    private CustomerServiceImpl customerService;
+
+    private Statistics statistics;
+    private Long bookingId;
+    private Long carId;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = entityManager.persist(new Role("ROLE_CUSTOMER"));
+        Customer anna = new Customer("Anna", "Schmidt", "secret", "anna@example.com", role);
+        anna.setActive(true);
+        Customer[] customers = {
+                entityManager.persist(anna),
+                entityManager.persist(new Customer("Ben", "Meyer", "secret", "ben@example.com", role))};
+        Car[] cars = {
+                entityManager.persist(new Car("BMW", "X5", 2021, CarType.SUV, CarFuelType.DIESEL,
+                        CarTransmissionType.AUTOMATIC, new BigDecimal("150.00"))),
+                entityManager.persist(new Car("Audi", "A4", 2020, CarType.SEDAN, CarFuelType.PETROL,
+                        CarTransmissionType.MANUAL, new BigDecimal("120.00")))};
+        for (int i = 0; i < 10; i++) {
+            Booking booking = new Booking();
+            booking.setCustomer(customers[i % 2]);
+            booking.setCar(cars[i % 2]);
+            booking.setRentalStartDate(START.plusDays(i));
+            booking.setRentalEndDate(START.plusDays(i + 3));
+            booking.setBookingStatus(i % 3 == 0 ? BookingStatus.ACTIVE : BookingStatus.PENDING);
+            booking.setTotalPrice(new BigDecimal("450.00"));
+            bookingId = entityManager.persist(booking).getId();
+        }
+        carId = cars[0].getId();
+        customerId = customers[0].getId();
+        entityManager.flush();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void bookingReadPathsStayWithinQueryBudget() {
+        assertQueryBudget("GET /bookings/{id}", 1,
+                () -> bookingService.getBookingByBookingId(bookingId));
+        assertQueryBudget("GET /bookings", 1,
+                () -> bookingService.getAllBookings(PageRequest.of(0, 20, Sort.by("id")), false));
+        assertQueryBudget("GET /bookings?with-total=true", 2,
+                () -> bookingService.getAllBookings(PageRequest.of(0, 4, Sort.by("id")), true));
+        assertQueryBudget("GET /bookings/filter/by-car", 1,
+                () -> bookingService.getBookingsByCarId(carId, PageRequest.of(0, 20), false));
+        assertQueryBudget("GET /bookings/filter/by-rental-dates-or-by-bookings-status", 1,
+                () -> bookingService.getBookingsByRentalDaysOrByBookingStatus(
+                        LocalDate.of(2025, 3, 4), null, BookingStatus.ACTIVE, PageRequest.of(0, 20), false));
+    }
+
+    @Test
+    void customerReadPathsStayWithinQueryBudget() {
+        assertQueryBudget("GET /customers", 1,
+                () -> customerService.getAllCustomers(PageRequest.of(0, 20), false));
+        assertQueryBudget("GET /customers/{id}", 1,
+                () -> customerService.getActiveCustomerById(customerId));
+        assertQueryBudget("GET /customers/find-me", 1,
+                () -> customerService.findByToken("anna@example.com"));
+        assertQueryBudget("GET /customers/all-customer-bookings/{id}", 2,
+                () -> customerService.getAllBookingsByCustomerId(customerId, PageRequest.of(0, 20), false));
+        assertQueryBudget("GET /customers/all-my-bookings", 2,
+                () -> customerService.getAllBookingsByCustomerEmail("ben@example.com", PageRequest.of(0, 20), false));
+    }
+
+    private void assertQueryBudget(String endpoint, long budget, Runnable readPath) {
+        entityManager.clear();
+        statistics.clear();
+        readPath.run();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= budget,
+                endpoint + " executed " + statements + " SQL statements, budget is " + budget);
+    }
+}
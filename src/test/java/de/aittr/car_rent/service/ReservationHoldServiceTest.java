@@ -0,0 +1,86 @@
+package de.aittr.car_rent.service;
+
+import de.aittr.car_rent.exception_handling.exceptions.RestApiException;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationHoldServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2030, 5, 1, 10, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2030, 5, 3, 10, 0);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2030-01-01T00:00:00.500Z"));
+    private final ReservationHoldService holdService = new ReservationHoldService(Duration.ofSeconds(10), clock);
+
+    @Test
+    void blocksOverlappingPeriodForOtherCustomersOnly() {
+        holdService.hold(1L, FROM, TO, "anna@mail.com");
+
+        assertTrue(holdService.hasConflictingHold(1L, FROM.plusDays(1), TO.plusDays(1), "bob@mail.com"));
+        assertFalse(holdService.hasConflictingHold(1L, FROM, TO, "Anna@mail.com"));
+        assertFalse(holdService.hasConflictingHold(1L, TO, TO.plusDays(1), "bob@mail.com"));
+        assertFalse(holdService.hasConflictingHold(2L, FROM, TO, "bob@mail.com"));
+        assertEquals(Set.of(1L), holdService.findHeldCarIds(FROM, TO));
+        assertThrows(RestApiException.class, () -> holdService.hold(1L, FROM.minusDays(1), FROM.plusHours(1), "bob@mail.com"));
+    }
+
+    @Test
+    void expiredHoldIsIgnoredAndReleasedByWheel() {
+        ReservationHoldService.ReservationHold hold = holdService.hold(1L, FROM, TO, "anna@mail.com");
+
+        clock.advance(Duration.ofSeconds(9));
+        holdService.releaseExpired();
+        assertTrue(holdService.findActive(hold.id()).isPresent());
+
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(holdService.findActive(hold.id()).isEmpty());
+        assertFalse(holdService.hasConflictingHold(1L, FROM, TO, "bob@mail.com"));
+
+        clock.advance(Duration.ofSeconds(1));
+        holdService.releaseExpired();
+        assertTrue(holdService.findHeldCarIds(FROM, TO).isEmpty());
+        assertDoesNotThrow(() -> holdService.hold(1L, FROM, TO, "bob@mail.com"));
+    }
+
+    @Test
+    void releasedHoldFreesCar() {
+        ReservationHoldService.ReservationHold hold = holdService.hold(1L, FROM, TO, "anna@mail.com");
+
+        holdService.release(hold.id());
+
+        assertTrue(holdService.findActive(hold.id()).isEmpty());
+        assertFalse(holdService.hasConflictingHold(1L, FROM, TO, "bob@mail.com"));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}